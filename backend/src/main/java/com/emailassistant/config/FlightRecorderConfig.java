@@ -0,0 +1,72 @@
+package com.emailassistant.config;
+
+import com.emailassistant.service.FlightRecorderEvents;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonValue;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration
+@ConditionalOnProperty(name = "diagnostics.flight-recorder.enabled", havingValue = "true", matchIfMissing = true)
+public class FlightRecorderConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoFlightRecorderListener() {
+        return settings -> settings.addCommandListener(new MongoCommandRecorder());
+    }
+
+    /**
+     * Emits a {@link FlightRecorderEvents.MongoCommand} per command. Handshakes are skipped; the
+     * event is begun when the driver sends the command and committed when the reply arrives.
+     */
+    static final class MongoCommandRecorder implements CommandListener {
+
+        private final Map<Integer, FlightRecorderEvents.MongoCommand> inFlight = new ConcurrentHashMap<>();
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            FlightRecorderEvents.MongoCommand command = new FlightRecorderEvents.MongoCommand();
+            if (!command.isEnabled() || "hello".equals(event.getCommandName()) || "isMaster".equals(event.getCommandName())) {
+                return;
+            }
+            command.begin();
+            command.command = event.getCommandName();
+            command.database = event.getDatabaseName();
+            command.requestId = event.getRequestId();
+            BsonValue target = event.getCommand().get(event.getCommandName());
+            command.collection = target != null && target.isString() ? target.asString().getValue() : null;
+            inFlight.put(event.getRequestId(), command);
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            commit(event.getRequestId(), true, null);
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+            commit(event.getRequestId(), false, event.getThrowable().getMessage());
+        }
+
+        private void commit(int requestId, boolean succeeded, String error) {
+            FlightRecorderEvents.MongoCommand command = inFlight.remove(requestId);
+            if (command == null) {
+                return;
+            }
+            command.end();
+            if (command.shouldCommit()) {
+                command.succeeded = succeeded;
+                command.error = error;
+                command.commit();
+            }
+        }
+    }
+}
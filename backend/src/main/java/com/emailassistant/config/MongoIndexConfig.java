@@ -0,0 +1,84 @@
+package com.emailassistant.config;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailBody;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexConfig {
+
+    public static final String EMAIL_TEXT_INDEX = "email_header_text";
+    public static final String EMAIL_BODY_TEXT_INDEX = "email_body_text";
+
+    // Covered the body too, before bodies moved to email_bodies
+    private static final String LEGACY_EMAIL_TEXT_INDEX = "email_text";
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        ensureQueryIndexes();
+        ensureTextIndexes();
+    }
+
+    /**
+     * Spring Data does not create @CompoundIndex indexes unless auto-index-creation is on, so the
+     * ones repository queries depend on are created here
+     */
+    private void ensureQueryIndexes() {
+        try {
+            IndexOperations emailIndexes = mongoTemplate.indexOps(Email.class);
+            // Thread view: findByThreadIdOrderByReceivedAtAsc
+            emailIndexes.ensureIndex(new Index().named("thread_received")
+                    .on("threadId", Sort.Direction.ASC).on("receivedAt", Sort.Direction.ASC));
+            // Cost report: findMostExpensiveLlmEmails
+            emailIndexes.ensureIndex(new Index().named("llm_cost_received")
+                    .on("metadata.llmCostUsd", Sort.Direction.DESC).on("receivedAt", Sort.Direction.ASC));
+            // Classifier retraining: streamIntentTrainingSamples, newest labels first
+            emailIndexes.ensureIndex(new Index().named("processed_received")
+                    .on("processedAt", Sort.Direction.DESC).on("receivedAt", Sort.Direction.DESC));
+            log.info("Ensured query indexes on emails");
+        } catch (Exception e) {
+            log.error("Failed to ensure query indexes: {}", e.getMessage(), e);
+        }
+    }
+
+    private void ensureTextIndexes() {
+        try {
+            // Header fields only; bodies have their own text index on email_bodies
+            IndexOperations emailIndexes = mongoTemplate.indexOps(Email.class);
+            if (emailIndexes.getIndexInfo().stream().anyMatch(index -> LEGACY_EMAIL_TEXT_INDEX.equals(index.getName()))) {
+                emailIndexes.dropIndex(LEGACY_EMAIL_TEXT_INDEX);
+                log.info("Dropped legacy text index {} on emails", LEGACY_EMAIL_TEXT_INDEX);
+            }
+            TextIndexDefinition textIndex = new TextIndexDefinition.TextIndexDefinitionBuilder()
+                    .named(EMAIL_TEXT_INDEX)
+                    .onField("subject", 10F)
+                    .onField("from", 5F)
+                    .onField("notes.content", 2F)
+                    .build();
+            emailIndexes.ensureIndex(textIndex);
+            log.info("Ensured text index {} on emails", EMAIL_TEXT_INDEX);
+            
+            TextIndexDefinition bodyIndex = new TextIndexDefinition.TextIndexDefinitionBuilder()
+                    .named(EMAIL_BODY_TEXT_INDEX)
+                    .onField("cleanBody")
+                    .build();
+            mongoTemplate.indexOps(EmailBody.class).ensureIndex(bodyIndex);
+            log.info("Ensured text index {} on email_bodies", EMAIL_BODY_TEXT_INDEX);
+        } catch (Exception e) {
+            log.error("Failed to ensure text indexes: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -47,18 +47,61 @@
 package com.emailassistant.config;
 
 import com.emailassistant.service.GeminiApiClient;
+import com.emailassistant.service.LlmRouter;
+import com.emailassistant.service.LocalIntentClassifier;
+import com.emailassistant.service.OpenAiCompatibleClient;
 import com.emailassistant.service.OpenAiServiceImpl;
+import com.emailassistant.service.PipelineMetrics;
+import com.emailassistant.service.ReplyRetrievalIndex;
+import com.emailassistant.service.SentimentScorer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.time.Duration;
+
 @Configuration
 public class OpenAiConfig {
 
     @Value("${GEMINI_API_KEY}")
     private String apiKey;
 
+    @Value("${llm.providers.gemini.base-url:" + GeminiApiClient.GEMINI_BASE_URL + "}")
+    private String geminiBaseUrl;
+
+    @Value("${llm.providers.gemini.max-concurrency:8}")
+    private int geminiMaxConcurrency;
+
+    @Value("${llm.providers.gemini.queue-capacity:64}")
+    private int geminiQueueCapacity;
+
+    @Value("${llm.providers.gemini.models.fast:gemini-1.5-flash-8b}")
+    private String geminiFastModel;
+
+    @Value("${llm.providers.gemini.models.standard:gemini-1.5-flash}")
+    private String geminiStandardModel;
+
+    @Value("${llm.providers.gemini.models.strong:gemini-1.5-pro}")
+    private String geminiStrongModel;
+
+    @Value("${llm.providers.gemini.context-cache.enabled:true}")
+    private boolean contextCacheEnabled;
+
+    @Value("${llm.providers.gemini.context-cache.ttl-seconds:3600}")
+    private long contextCacheTtlSeconds;
+
+    @Value("${llm.providers.gemini.context-cache.renew-before-seconds:300}")
+    private long contextCacheRenewBeforeSeconds;
+
+    @Value("${llm.providers.gemini.context-cache.idle-seconds:1800}")
+    private long contextCacheIdleSeconds;
+
+    // Gemini refuses to cache less than this; shorter instructions are sent as systemInstruction
+    @Value("${llm.providers.gemini.context-cache.min-tokens:32768}")
+    private int contextCacheMinTokens;
+
     @Bean
     public GeminiApiClient geminiApiClient() {
         String finalApiKey = apiKey;
@@ -71,12 +114,38 @@ public class OpenAiConfig {
         }
 
         System.out.println("Gemini API key loaded successfully");
-        return new GeminiApiClient(finalApiKey);
+        GeminiApiClient client = new GeminiApiClient(geminiBaseUrl, finalApiKey, geminiMaxConcurrency,
+                geminiQueueCapacity, geminiFastModel, geminiStandardModel, geminiStrongModel);
+        if (contextCacheEnabled) {
+            client.enableContextCache(Duration.ofSeconds(contextCacheTtlSeconds),
+                    Duration.ofSeconds(contextCacheRenewBeforeSeconds),
+                    Duration.ofSeconds(contextCacheIdleSeconds), contextCacheMinTokens);
+        }
+        return client;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "llm.providers.openai.enabled", havingValue = "true")
+    public OpenAiCompatibleClient openAiCompatibleClient(
+            @Value("${llm.providers.openai.base-url:https://api.openai.com/v1}") String baseUrl,
+            @Value("${llm.providers.openai.api-key:}") String openAiApiKey,
+            @Value("${llm.providers.openai.models.fast:gpt-4o-mini}") String fastModel,
+            @Value("${llm.providers.openai.models.standard:gpt-4o-mini}") String standardModel,
+            @Value("${llm.providers.openai.models.strong:gpt-4o}") String strongModel,
+            @Value("${llm.providers.openai.max-concurrency:8}") int maxConcurrency,
+            @Value("${llm.providers.openai.queue-capacity:64}") int queueCapacity) {
+        return new OpenAiCompatibleClient("openai", baseUrl, openAiApiKey,
+                fastModel, standardModel, strongModel, maxConcurrency, queueCapacity);
     }
 
     @Bean
     @Primary
-    public OpenAiServiceImpl openAiService(GeminiApiClient geminiApiClient) {
-        return new OpenAiServiceImpl(geminiApiClient);
+    public OpenAiServiceImpl openAiService(LlmRouter llmRouter,
+                                           LocalIntentClassifier localIntentClassifier,
+                                           SentimentScorer sentimentScorer,
+                                           ReplyRetrievalIndex replyRetrievalIndex,
+                                           PipelineMetrics pipelineMetrics) {
+        return new OpenAiServiceImpl(llmRouter, localIntentClassifier, sentimentScorer, replyRetrievalIndex,
+                pipelineMetrics);
     }
 }
@@ -0,0 +1,119 @@
+package com.emailassistant.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.opentelemetry.exporter.logging.otlp.OtlpJsonLoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Spans reach {@link com.emailassistant.service.RecentSpanExporter} in memory and, when enabled,
+ * an OTLP JSON file (one export request per line, the format the collector's otlpjsonfile
+ * receiver and most trace viewers import). Every Mongo command becomes a child span of whatever
+ * span is current on the calling thread.
+ */
+@Configuration
+@Slf4j
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.otlp-file.enabled", havingValue = "true")
+    public SpanExporter otlpFileSpanExporter(@Value("${tracing.otlp-file.path:traces/spans.jsonl}") String path,
+                                             @Value("${tracing.otlp-file.max-size-mb:100}") int maxSizeMb,
+                                             @Value("${tracing.otlp-file.max-files:5}") int maxFiles) throws IOException {
+        // The OTLP JSON exporter writes to java.util.logging; give its logger a file of its own
+        Path file = Path.of(path).toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        FileHandler handler = new FileHandler(file.toString().replace("%", "%%") + ".%g", maxSizeMb * 1024 * 1024, maxFiles, true);
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+        Logger logger = Logger.getLogger(OtlpJsonLoggingSpanExporter.class.getName());
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        log.info("Writing OTLP JSON spans to {}.0 (rolling over {} files of {} MB)", file, maxFiles, maxSizeMb);
+        return OtlpJsonLoggingSpanExporter.create();
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoTracingListener(Tracer tracer) {
+        return settings -> settings.addCommandListener(new MongoCommandTracer(tracer));
+    }
+
+    /**
+     * The synchronous driver reports a command on the thread that issued it, so the span started
+     * here nests under the caller's current span; it ends when the reply or failure arrives.
+     */
+    static final class MongoCommandTracer implements CommandListener {
+
+        private final Tracer tracer;
+        private final Map<Integer, Span> inFlight = new ConcurrentHashMap<>();
+
+        MongoCommandTracer(Tracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            Span parent = tracer.currentSpan();
+            if (parent == null) {
+                // Housekeeping outside any request or job; not worth a trace of its own
+                return;
+            }
+            BsonValue target = event.getCommand().get(event.getCommandName());
+            String collection = target != null && target.isString() ? target.asString().getValue() : null;
+            Span.Builder span = tracer.spanBuilder()
+                    .setParent(parent.context())
+                    .name("mongo " + event.getCommandName() + (collection != null ? " " + collection : ""))
+                    .kind(Span.Kind.CLIENT)
+                    .tag("db.system", "mongodb")
+                    .tag("db.name", event.getDatabaseName())
+                    .tag("db.operation", event.getCommandName())
+                    .remoteServiceName("mongodb");
+            if (collection != null) {
+                span.tag("db.mongodb.collection", collection);
+            }
+            inFlight.put(event.getRequestId(), span.start());
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            Span span = inFlight.remove(event.getRequestId());
+            if (span != null) {
+                span.end();
+            }
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+            Span span = inFlight.remove(event.getRequestId());
+            if (span != null) {
+                span.error(event.getThrowable());
+                span.end();
+            }
+        }
+    }
+}
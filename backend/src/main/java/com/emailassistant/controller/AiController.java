@@ -0,0 +1,123 @@
+package com.emailassistant.controller;
+
+import com.emailassistant.service.LlmRouter;
+import com.emailassistant.service.LlmScheduler;
+import com.emailassistant.service.LlmUsageService;
+import com.emailassistant.service.LocalIntentClassifier;
+import com.emailassistant.service.ReplyPregenerator;
+import com.emailassistant.service.ReplyRetrievalIndex;
+import com.emailassistant.service.SentimentScorerEvaluator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ai")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "AI Operations", description = "APIs for monitoring and managing the AI layer")
+public class AiController {
+
+    private final LocalIntentClassifier localIntentClassifier;
+    private final SentimentScorerEvaluator sentimentScorerEvaluator;
+    private final LlmRouter llmRouter;
+    private final ReplyRetrievalIndex replyRetrievalIndex;
+    private final ReplyPregenerator replyPregenerator;
+    private final LlmScheduler llmScheduler;
+    private final LlmUsageService llmUsageService;
+
+    @GetMapping("/classifier")
+    @Operation(summary = "Get local classifier statistics", description = "Model version and hit rate of the local intent classifier")
+    public ResponseEntity<Map<String, Object>> getClassifierStatistics() {
+        return ResponseEntity.ok(localIntentClassifier.getStatistics());
+    }
+
+    @PostMapping("/classifier/retrain")
+    @Operation(summary = "Retrain local classifier", description = "Retrain the local intent classifier from labelled emails")
+    public ResponseEntity<Map<String, Object>> retrainClassifier() {
+        log.info("Manual retraining of local intent classifier requested");
+        localIntentClassifier.retrain();
+        return ResponseEntity.ok(localIntentClassifier.getStatistics());
+    }
+
+    @GetMapping("/providers")
+    @Operation(summary = "Get LLM provider statistics", description = "Per-provider load, latency percentiles and hedging counters")
+    public ResponseEntity<Map<String, Object>> getProviderStatistics() {
+        return ResponseEntity.ok(llmRouter.getStatistics());
+    }
+
+    @GetMapping("/scheduler")
+    @Operation(summary = "Get LLM scheduler statistics", description = "Queue depth, grants, drops and waits per LLM work class")
+    public ResponseEntity<Map<String, Object>> getSchedulerStatistics() {
+        return ResponseEntity.ok(llmScheduler.getStatistics());
+    }
+
+    @GetMapping("/reply-cache")
+    @Operation(summary = "Get reply cache statistics", description = "Size and match counts of the similar-ticket reply index")
+    public ResponseEntity<Map<String, Object>> getReplyCacheStatistics() {
+        return ResponseEntity.ok(replyRetrievalIndex.getStatistics());
+    }
+
+    @PostMapping("/reply-cache/rebuild")
+    @Operation(summary = "Rebuild reply cache", description = "Rebuild the similar-ticket reply index from answered emails")
+    public ResponseEntity<Map<String, Object>> rebuildReplyCache() {
+        log.info("Manual rebuild of reply retrieval index requested");
+        replyRetrievalIndex.rebuild();
+        return ResponseEntity.ok(replyRetrievalIndex.getStatistics());
+    }
+
+    @GetMapping("/pregeneration")
+    @Operation(summary = "Get reply pre-generation statistics", description = "Queue size and outcome counters of speculative reply drafting")
+    public ResponseEntity<Map<String, Object>> getPregenerationStatistics() {
+        return ResponseEntity.ok(replyPregenerator.getStatistics());
+    }
+
+    @PostMapping("/sentiment/evaluate")
+    @Operation(summary = "Evaluate local sentiment scorer", description = "Compare the local sentiment scorer against past LLM labels")
+    public ResponseEntity<Map<String, Object>> evaluateSentimentScorer(@RequestParam(defaultValue = "5000") int limit) {
+        return ResponseEntity.ok(sentimentScorerEvaluator.evaluate(limit));
+    }
+
+    @GetMapping("/usage")
+    @Operation(summary = "Get LLM usage", description = "Calls, tokens and cost between two days (inclusive), grouped by any of day, team, provider, model, task and intent, most expensive first")
+    public ResponseEntity<List<Map<String, Object>>> getUsage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "team,model") List<String> groupBy) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        try {
+            return ResponseEntity.ok(llmUsageService.getUsage(start, end, groupBy));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/usage/emails")
+    @Operation(summary = "Get most expensive emails", description = "Emails received between two days (inclusive) whose LLM calls cost the most, with every call they made")
+    public ResponseEntity<List<Map<String, Object>>> getMostExpensiveEmails(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        return ResponseEntity.ok(llmUsageService.getMostExpensiveEmails(start.atStartOfDay(), end.plusDays(1).atStartOfDay(), limit));
+    }
+
+    @GetMapping("/usage/statistics")
+    @Operation(summary = "Get LLM usage aggregation statistics", description = "Pending and flushed rows of the buffered usage counters")
+    public ResponseEntity<Map<String, Object>> getUsageStatistics() {
+        return ResponseEntity.ok(llmUsageService.getStatistics());
+    }
+}
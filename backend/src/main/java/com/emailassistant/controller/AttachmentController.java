@@ -0,0 +1,100 @@
+package com.emailassistant.controller;
+
+import com.emailassistant.model.EmailAttachment;
+import com.emailassistant.service.AttachmentService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/attachments")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Attachments", description = "APIs for storing and downloading email attachments")
+public class AttachmentController {
+
+    private final AttachmentService attachmentService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Upload attachment (form)", description = "Store a multipart file part in GridFS; the container spools it to disk, never to heap")
+    public ResponseEntity<EmailAttachment> uploadMultipart(@RequestPart("file") MultipartFile file,
+                                                           @RequestParam(required = false) String emailId) {
+        try (InputStream content = file.getInputStream()) {
+            return ResponseEntity.ok(attachmentService.store(content, file.getOriginalFilename(), file.getContentType(), emailId));
+        } catch (IOException e) {
+            log.warn("Attachment upload failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            return uploadFailed(e);
+        }
+    }
+
+    @PostMapping
+    @Operation(summary = "Upload attachment (stream)", description = "Stream the raw request body into GridFS as the file, typed by the request's Content-Type")
+    public ResponseEntity<EmailAttachment> uploadStream(HttpServletRequest request,
+                                                        @RequestParam String filename,
+                                                        @RequestParam(required = false) String emailId) {
+        try (InputStream content = request.getInputStream()) {
+            return ResponseEntity.ok(attachmentService.store(content, filename, request.getContentType(), emailId));
+        } catch (IOException e) {
+            log.warn("Attachment upload failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            return uploadFailed(e);
+        }
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Download attachment", description = "Stream an attachment; Range requests are answered with 206 and seek straight to the requested chunks")
+    public ResponseEntity<Resource> download(@PathVariable String id) {
+        AttachmentService.Attachment attachment = attachmentService.open(id);
+        if (attachment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        EmailAttachment reference = attachment.reference();
+        MediaType contentType = MediaType.APPLICATION_OCTET_STREAM;
+        try {
+            if (reference.getContentType() != null) {
+                contentType = MediaType.parseMediaType(reference.getContentType());
+            }
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Serving attachment {} as octet-stream: {}", id, e.getMessage());
+        }
+        // Spring MVC turns a Range header on a Resource body into 206 partial content
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(reference.getFilename(), StandardCharsets.UTF_8).build().toString())
+                .eTag(id)
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                .body(attachment);
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete attachment", description = "Delete an attachment and remove it from its email")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+        return attachmentService.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static ResponseEntity<EmailAttachment> uploadFailed(RuntimeException e) {
+        // Unknown email, or the stream failed (e.g. over the size limit) and GridFS rolled it back
+        log.warn("Attachment upload rejected: {}", e.getMessage());
+        return ResponseEntity.badRequest().build();
+    }
+}
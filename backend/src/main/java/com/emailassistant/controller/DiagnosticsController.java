@@ -0,0 +1,96 @@
+package com.emailassistant.controller;
+
+import com.emailassistant.service.FlightRecorderService;
+import com.emailassistant.service.RecentSpanExporter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/diagnostics")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Diagnostics", description = "APIs for profiling the running service")
+public class DiagnosticsController {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final FlightRecorderService flightRecorderService;
+    private final RecentSpanExporter recentSpanExporter;
+
+    @GetMapping("/flight-recording")
+    @Operation(summary = "Get flight recording status", description = "Settings and size of the continuous JFR recording")
+    public ResponseEntity<Map<String, Object>> getFlightRecordingStatus() {
+        return ResponseEntity.ok(flightRecorderService.getStatistics());
+    }
+
+    @GetMapping("/flight-recording/dump")
+    @Operation(summary = "Dump flight recording", description = "Download the last N minutes of the continuous JFR recording as a .jfr file")
+    public ResponseEntity<StreamingResponseBody> dumpFlightRecording(@RequestParam(defaultValue = "5") int minutes) {
+        if (minutes <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        Path file;
+        try {
+            file = flightRecorderService.dump(minutes);
+        } catch (IOException e) {
+            log.error("Failed to dump flight recording: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+        String filename = "email-assistant-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr";
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @GetMapping("/traces")
+    @Operation(summary = "Get slowest recent traces", description = "Duration, email and slowest span of the slowest traces held in memory")
+    public ResponseEntity<List<Map<String, Object>>> getSlowestTraces(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(recentSpanExporter.getSlowestTraces(limit));
+    }
+
+    @GetMapping("/traces/statistics")
+    @Operation(summary = "Get trace store statistics", description = "Traces and emails held by the in-memory span exporter")
+    public ResponseEntity<Map<String, Object>> getTraceStatistics() {
+        return ResponseEntity.ok(recentSpanExporter.getStatistics());
+    }
+
+    @GetMapping("/traces/{traceId}")
+    @Operation(summary = "Get trace", description = "Spans of one trace ordered by start, with offsets and durations")
+    public ResponseEntity<List<Map<String, Object>>> getTrace(@PathVariable String traceId) {
+        List<Map<String, Object>> spans = recentSpanExporter.getTrace(traceId);
+        return spans != null ? ResponseEntity.ok(spans) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/traces/email")
+    @Operation(summary = "Get email trace", description = "Spans of the latest trace of an email, by email id or Message-ID")
+    public ResponseEntity<List<Map<String, Object>>> getEmailTrace(@RequestParam String id) {
+        List<Map<String, Object>> spans = recentSpanExporter.getEmailTrace(id);
+        return spans != null ? ResponseEntity.ok(spans) : ResponseEntity.notFound().build();
+    }
+}
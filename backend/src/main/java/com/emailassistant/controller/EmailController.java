@@ -4,9 +4,14 @@ import com.emailassistant.dto.AiReplyRequest;
 import com.emailassistant.dto.AiReplyResponse;
 import com.emailassistant.dto.EmailRequest;
 import com.emailassistant.dto.EmailResponse;
+import com.emailassistant.dto.EmailSearchRequest;
+import com.emailassistant.dto.EmailSearchResponse;
 import com.emailassistant.model.Email;
 import com.emailassistant.service.AiService;
 import com.emailassistant.service.EmailService;
+import com.emailassistant.service.ImapMailPoller;
+import com.emailassistant.service.LlmScheduler;
+import com.emailassistant.service.LlmWorkClass;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/emails")
@@ -26,6 +32,8 @@ public class EmailController {
 
     private final EmailService emailService;
     private final AiService aiService;
+    private final LlmScheduler llmScheduler;
+    private final ImapMailPoller imapMailPoller;
 
 
 
@@ -49,6 +57,16 @@ public class EmailController {
         return ResponseEntity.ok(emails);
     }
 
+    @GetMapping("/search")
+    @Operation(summary = "Search emails", description = "Full-text search over subject, body, sender and notes with relevance ranking, filters and highlighting")
+    public ResponseEntity<EmailSearchResponse> searchEmails(@Valid EmailSearchRequest request) {
+        try {
+            return ResponseEntity.ok(emailService.searchEmails(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get email by ID", description = "Retrieve a specific email by its ID")
     public ResponseEntity<EmailResponse> getEmailById(@PathVariable String id) {
@@ -90,6 +108,39 @@ public class EmailController {
         return ResponseEntity.ok(emails);
     }
 
+    @GetMapping("/clusters/{clusterId}")
+    @Operation(summary = "Get near-duplicate cluster", description = "Retrieve all emails grouped into a near-duplicate cluster")
+    public ResponseEntity<List<EmailResponse>> getEmailsInCluster(@PathVariable String clusterId) {
+        List<EmailResponse> emails = emailService.getEmailsInCluster(clusterId);
+        return ResponseEntity.ok(emails);
+    }
+
+    @PutMapping("/clusters/{clusterId}/status/{status}")
+    @Operation(summary = "Update cluster status", description = "Update the status of every email in a near-duplicate cluster")
+    public ResponseEntity<Long> updateClusterStatus(
+            @PathVariable String clusterId,
+            @PathVariable String status) {
+        try {
+            Email.EmailStatus emailStatus = Email.EmailStatus.valueOf(status.toUpperCase());
+            long updated = emailService.updateClusterStatus(clusterId, emailStatus);
+            return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/threads/{threadId}")
+    @Operation(summary = "Get conversation thread", description = "Retrieve all emails in a conversation thread, oldest first")
+    public ResponseEntity<List<EmailResponse>> getThread(@PathVariable String threadId) {
+        List<EmailResponse> emails = emailService.getThread(threadId);
+        if (emails.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emails);
+    }
+
     @PutMapping("/{id}/assign/team/{teamId}")
     @Operation(summary = "Assign email to team", description = "Assign an email to a specific team")
     public ResponseEntity<EmailResponse> assignEmailToTeam(
@@ -186,7 +237,11 @@ public class EmailController {
                 return ResponseEntity.notFound().build();
             }
             
-            AiReplyResponse response = aiService.generateReply(request, email);
+            AiReplyResponse response;
+            try (LlmScheduler.Scope scope = llmScheduler.open(LlmWorkClass.INTERACTIVE, "team:" + email.getAssignedTeam())) {
+                response = aiService.generateReply(request, email);
+            }
+            emailService.recordGeneratedReply(email.getId(), response);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             log.error("Error generating AI reply: {}", e.getMessage());
@@ -200,6 +255,12 @@ public class EmailController {
         EmailService.EmailStatistics statistics = emailService.getEmailStatistics();
         return ResponseEntity.ok(statistics);
     }
+
+    @GetMapping("/inbound")
+    @Operation(summary = "Get inbound mail status", description = "IMAP connection, IDLE or polling mode, high-water UID and ingestion counters")
+    public ResponseEntity<Map<String, Object>> getInboundStatus() {
+        return ResponseEntity.ok(imapMailPoller.getStatistics());
+    }
     //  public EmailController(EmailService emailService) {
     //     this.emailService = emailService;
     // }
@@ -210,10 +271,12 @@ public class EmailController {
         return EmailResponse.builder()
                 .id(email.getId())
                 .messageId(email.getMessageId())
+                .threadId(email.getThreadId())
                 .from(email.getFrom())
                 .to(email.getTo())
                 .subject(email.getSubject())
                 .body(email.getBody())
+                .attachments(email.getAttachments())
                 .status(email.getStatus())
                 .intent(email.getIntent())
                 .intentConfidence(email.getIntentConfidence())
@@ -224,6 +287,7 @@ public class EmailController {
                 .processedAt(email.getProcessedAt())
                 .aiGeneratedReply(email.getAiGeneratedReply())
                 .finalReply(email.getFinalReply())
+                .duplicateClusterId(email.getDuplicateClusterId())
                 .build();
     }
 }
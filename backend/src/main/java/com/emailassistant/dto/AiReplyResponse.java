@@ -4,6 +4,7 @@
 
 package com.emailassistant.dto;
 
+import com.emailassistant.model.LlmCallRecord;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -27,6 +28,9 @@ public class AiReplyResponse {
     private String modelUsed;
     private Long processingTimeMs;
     private String assignedTo;  // Added field for team member assignment
+    private List<LlmCallRecord> llmCalls;
+    private String reusedFromEmailId;  // set when an earlier reply was reused instead of calling the LLM
+    private Boolean precomputed;  // true when a pre-generated draft was served
     
     @Data
     @NoArgsConstructor
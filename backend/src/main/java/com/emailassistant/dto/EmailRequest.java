@@ -33,6 +33,9 @@ public class EmailRequest {
     private String body;
     
     private String htmlBody;
+    // Ids returned by POST /api/attachments; the files themselves are uploaded separately
     private List<String> attachments;
     private String messageId;
+    private String inReplyTo;
+    private List<String> references;
 }
@@ -5,8 +5,11 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailAttachment;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -16,10 +19,12 @@ public class EmailResponse {
     
     private String id;
     private String messageId;
+    private String threadId;
     private String from;
     private String to;
     private String subject;
     private String body;
+    private List<EmailAttachment> attachments;
     private Email.EmailStatus status;
     private Email.EmailIntent intent;
     private Double intentConfidence;
@@ -30,6 +35,7 @@ public class EmailResponse {
     private LocalDateTime processedAt;
     private String aiGeneratedReply;
     private String finalReply;
+    private String duplicateClusterId;
     private EmailMetadataResponse metadata;
     
     @Data
@@ -43,5 +49,6 @@ public class EmailResponse {
         private String urgency;
         private String customerTier;
         private String processingTime;
+        private Map<String, Long> stageDurationsMs;
     }
 }
@@ -0,0 +1,42 @@
+package com.emailassistant.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailSearchRequest {
+    
+    @NotBlank(message = "Search query is required")
+    private String q;
+    
+    private String status;
+    private String team;
+    private String intent;
+    private String priority;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime receivedAfter;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime receivedBefore;
+    
+    @Min(0)
+    @Builder.Default
+    private int page = 0;
+    
+    @Min(1)
+    @Max(100)
+    @Builder.Default
+    private int size = 20;
+}
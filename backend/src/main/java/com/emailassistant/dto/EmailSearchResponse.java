@@ -0,0 +1,32 @@
+package com.emailassistant.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailSearchResponse {
+    
+    private String query;
+    private int page;
+    private int size;
+    private long tookMs;
+    private List<SearchHit> results;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SearchHit {
+        private EmailResponse email;
+        private Float score;
+        private Map<String, String> highlights; // field -> snippet with <em> around matches
+    }
+}
@@ -5,7 +5,10 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 import java.time.LocalDateTime;
@@ -17,6 +20,9 @@ import java.util.Map;
 @AllArgsConstructor
 @Builder
 @Document(collection = "emails")
+@CompoundIndex(name = "thread_received", def = "{'threadId': 1, 'receivedAt': 1}")
+@CompoundIndex(name = "llm_cost_received", def = "{'metadata.llmCostUsd': -1, 'receivedAt': 1}")
+@CompoundIndex(name = "processed_received", def = "{'processedAt': -1, 'receivedAt': -1}")
 public class Email {
     
     @Id
@@ -25,14 +31,26 @@ public class Email {
     @Indexed
     private String messageId;
     
+    private String inReplyTo;
+    private List<String> references;
+    private String threadId;
+    
     private String from;
     private String to;
     private String cc;
     private String bcc;
     private String subject;
+    
+    // Stored in email_bodies and only loaded on demand, see EmailBodyService
+    @Transient
     private String body;
+    @Transient
     private String htmlBody;
     
+    // Body with markup, quoted history and signature removed; what the AI stages read
+    @Transient
+    private String cleanBody;
+    
     @Indexed
     private EmailStatus status;
     
@@ -49,20 +67,33 @@ public class Email {
     
     private Priority priority;
     
-    private List<String> attachments;
+    private List<EmailAttachment> attachments;
     
     private LocalDateTime receivedAt;
     private LocalDateTime processedAt;
     private LocalDateTime assignedAt;
     private LocalDateTime respondedAt;
     
+    @Indexed
+    private LocalDateTime slaDeadline;
+    
     private String aiGeneratedReply;
     private String finalReply;
+    private ReplyDraft speculativeDraft; // set while aiGeneratedReply is an unserved pre-generated draft
     
     private List<EmailNote> notes;
     
     private EmailMetadata metadata;
     
+    private Long simHash;
+    
+    @Indexed
+    private String duplicateClusterId;
+    
+    // Relevance of the last full-text search match; never persisted
+    @TextScore
+    private Float searchScore;
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -72,6 +103,9 @@ public class Email {
         private Double confidence;
         private String reasoning;
         private Map<String, Double> intentScores;
+        private String modelUsed;
+        private String modelVersion;
+        private List<LlmCallRecord> llmCalls;
     }
     
     @Data
@@ -84,6 +118,18 @@ public class Email {
         private String urgency; // low, medium, high, urgent
         private String language;
         private String customerTier;
+        private String modelUsed;
+        private List<LlmCallRecord> llmCalls;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ReplyDraft {
+        private String parametersKey; // tone|style the draft was generated with
+        private String modelUsed;
+        private LocalDateTime generatedAt;
     }
     
     public enum EmailStatus {
@@ -0,0 +1,24 @@
+package com.emailassistant.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reference to an attachment stored in GridFS; the content never sits in the email document
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailAttachment {
+    
+    private String fileId; // GridFS file id, null for attachments recorded by name only
+    private String filename;
+    private String contentType;
+    private Long size;
+    private LocalDateTime uploadedAt;
+}
@@ -0,0 +1,43 @@
+package com.emailassistant.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
+
+/**
+ * Text of an email, kept apart from the hot emails documents and read only where it is needed
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "email_bodies")
+public class EmailBody {
+    
+    // Same id as the email
+    @Id
+    private String id;
+    
+    // Never compressed: text-indexed for search and read by the AI stages
+    private String cleanBody;
+    
+    // Set when the raw bodies are stored as is
+    private String body;
+    private String htmlBody;
+    
+    // "deflate" when the raw bodies are in bodyData/htmlBodyData instead
+    private String compression;
+    private byte[] bodyData;
+    private byte[] htmlBodyData;
+    
+    private Integer originalBytes;
+    private Integer storedBytes;
+    
+    // Relevance of the last full-text search match; never persisted
+    @TextScore
+    private Float searchScore;
+}
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -24,6 +25,12 @@ public class EmailMetadata {
     private Map<String, Object> aiAnalysis;
     private Map<String, Object> customFields;
     private String processingTime;
+    private Map<String, Long> stageDurationsMs;
     private String aiModelUsed;
     private String aiModelVersion;
+    private String sentimentModelUsed;
+    private List<LlmCallRecord> llmCalls;
+    private Double llmCostUsd;
+    private Long llmInputTokens;
+    private Long llmOutputTokens;
 }
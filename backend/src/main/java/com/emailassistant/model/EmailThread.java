@@ -0,0 +1,36 @@
+package com.emailassistant.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "email_threads")
+public class EmailThread {
+    
+    // Normalized Message-ID of the thread's root email
+    @Id
+    private String id;
+    
+    private String subject;
+    private String rootEmailId;
+    private String lastEmailId;
+    private Integer emailCount;
+    
+    private Email.EmailIntent intent;
+    private Double intentConfidence;
+    private String intentModelUsed;
+    private String assignedTeam;
+    private String assignedUser;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.emailassistant.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LlmCallRecord {
+    
+    private String task; // intent, sentiment, reply, quality
+    private String tier;
+    private String provider;
+    private String model;
+    private Long latencyMs;
+    private Integer inputTokens; // cached tokens included
+    private Integer cachedTokens;
+    private Integer outputTokens;
+    private Boolean tokensEstimated; // provider reported no usage
+    private Double costUsd;
+    private Boolean hedged;
+    private Boolean escalated;
+    private String escalationReason;
+    private LocalDateTime calledAt;
+}
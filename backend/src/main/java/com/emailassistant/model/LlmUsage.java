@@ -0,0 +1,40 @@
+package com.emailassistant.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * LLM usage counters for one day, team, model, task and intent, incremented in place
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "llm_usage")
+public class LlmUsage {
+    
+    // day|team|provider|model|task|intent
+    @Id
+    private String id;
+    
+    @Indexed
+    private String day; // yyyy-MM-dd
+    private String team;
+    private String provider;
+    private String model;
+    private String task; // intent, sentiment, reply, quality
+    private String intent;
+    
+    private Long calls;
+    private Long inputTokens; // cached tokens included
+    private Long cachedTokens;
+    private Long outputTokens;
+    private Double costUsd;
+    private Long escalations;
+    private Long estimatedCalls; // provider reported no usage
+}
@@ -0,0 +1,32 @@
+package com.emailassistant.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far an IMAP folder has been ingested, so a restart resumes after the last message seen
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "mailbox_sync_state")
+public class MailboxSyncState {
+    
+    // username@host/folder
+    @Id
+    private String id;
+    
+    // UIDs are only comparable within one UIDVALIDITY
+    private Long uidValidity;
+    private Long lastUid; // high-water mark: every message up to it has been ingested
+    
+    private Long messagesIngested;
+    private LocalDateTime lastSyncAt;
+}
@@ -1,19 +1,26 @@
 package com.emailassistant.repository;
 
 import com.emailassistant.model.Email;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface EmailRepository extends MongoRepository<Email, String> {
+public interface EmailRepository extends MongoRepository<Email, String>, EmailSearchRepository {
     
     Optional<Email> findByMessageId(String messageId);
     
+    @Query(value = "{'messageId': {$in: ?0}}", fields = "{'messageId': 1}")
+    List<Email> findMessageIdsIn(Collection<String> messageIds);
+    
     List<Email> findByStatus(Email.EmailStatus status);
     
     List<Email> findByIntent(Email.EmailIntent intent);
@@ -42,6 +49,55 @@ public interface EmailRepository extends MongoRepository<Email, String> {
     @Query("{'assignedTeam': ?0, 'status': {$in: ['ASSIGNED', 'IN_PROGRESS']}}")
     List<Email> findActiveEmailsByTeam(String teamId);
     
+    @Query(value = "{'status': {$in: ['RECEIVED', 'PROCESSING', 'INTENT_DETECTED', 'ASSIGNED', 'IN_PROGRESS']}}",
+           fields = "{'_id': 1, 'priority': 1, 'intent': 1, 'receivedAt': 1, 'slaDeadline': 1}")
+    Stream<Email> streamOpenEmailsForSla();
+    
+    @Query("{'_id': {$in: ?0}, 'priority': ?1, 'status': {$in: ['RECEIVED', 'PROCESSING', 'INTENT_DETECTED', 'ASSIGNED', 'IN_PROGRESS']}}")
+    @Update("{'$set': {'status': 'ESCALATED'}}")
+    long escalateOpenEmails(Collection<String> ids, Email.Priority priority);
+    
+    @Query("{'_id': {$in: ?0}, 'priority': ?1, 'status': {$in: ['RECEIVED', 'PROCESSING', 'INTENT_DETECTED', 'ASSIGNED', 'IN_PROGRESS']}}")
+    @Update("{'$set': {'priority': ?2, 'slaDeadline': ?3}}")
+    long reprioritizeOpenEmails(Collection<String> ids, Email.Priority expected, Email.Priority priority, LocalDateTime slaDeadline);
+    
+    @Query(value = "{'_id': {$in: ?0}, 'priority': ?1, 'slaDeadline': ?2}", fields = "{'_id': 1}")
+    List<Email> findReprioritized(Collection<String> ids, Email.Priority priority, LocalDateTime slaDeadline);
+    
+    @Query(value = "{'intent': {$nin: [null, 'UNKNOWN']}, 'metadata.aiModelUsed': {$ne: ?0}}",
+           fields = "{'subject': 1, 'intent': 1}", sort = "{'processedAt': -1, 'receivedAt': -1}")
+    Stream<Email> streamIntentTrainingSamples(String excludedModel);
+    
+    @Query(value = "{'metadata.sentiment': {$ne: null}, 'metadata.sentimentModelUsed': {$ne: ?0}}",
+           fields = "{'metadata.sentiment': 1, 'metadata.urgency': 1}")
+    Stream<Email> streamSentimentLabelledSamples(String excludedModel);
+    
+    @Query(value = "{'receivedAt': {$gte: ?0}, 'simHash': {$ne: null}}",
+           fields = "{'_id': 1, 'simHash': 1, 'duplicateClusterId': 1, 'intent': 1, 'intentConfidence': 1, 'receivedAt': 1, 'metadata': 1}",
+           sort = "{'receivedAt': 1}")
+    Stream<Email> streamRecentForDeduplication(LocalDateTime since);
+    
+    @Query(value = "{'finalReply': {$nin: [null, '']}, 'status': {$in: ['RESPONDED', 'CLOSED']}}",
+           fields = "{'_id': 1, 'subject': 1, 'intent': 1}",
+           sort = "{'respondedAt': -1}")
+    Stream<Email> streamAnsweredEmails();
+    
+    @Query(value = "{'_id': ?0}", fields = "{'finalReply': 1}")
+    Optional<Email> findFinalReplyById(String id);
+    
+    @Query(value = "{'receivedAt': {$gte: ?0, $lt: ?1}, 'metadata.llmCostUsd': {$gt: 0}}",
+           fields = "{'subject': 1, 'intent': 1, 'assignedTeam': 1, 'status': 1, 'receivedAt': 1, 'metadata.llmCalls': 1, 'metadata.llmCostUsd': 1, 'metadata.llmInputTokens': 1, 'metadata.llmOutputTokens': 1}",
+           sort = "{'metadata.llmCostUsd': -1}")
+    List<Email> findMostExpensiveLlmEmails(LocalDateTime from, LocalDateTime to, Pageable pageable);
+    
+    List<Email> findByDuplicateClusterId(String clusterId);
+    
+    List<Email> findByThreadIdOrderByReceivedAtAsc(String threadId);
+    
+    @Query("{'duplicateClusterId': ?0}")
+    @Update("{'$set': {'status': ?1}}")
+    long updateStatusByDuplicateClusterId(String clusterId, Email.EmailStatus status);
+    
     long countByStatus(Email.EmailStatus status);
     
     long countByIntent(Email.EmailIntent intent);
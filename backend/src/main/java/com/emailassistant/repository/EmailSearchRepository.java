@@ -0,0 +1,18 @@
+package com.emailassistant.repository;
+
+import com.emailassistant.model.Email;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Full-text search over emails, backed by the {@code email_header_text} Mongo text index on emails
+ * and the {@code email_body_text} index on email_bodies. Hits come back with their clean body
+ * loaded, for highlighting.
+ */
+public interface EmailSearchRepository {
+    
+    List<Email> searchText(String text, Email.EmailStatus status, String team, Email.EmailIntent intent,
+                           Email.Priority priority, LocalDateTime receivedAfter, LocalDateTime receivedBefore,
+                           int page, int size);
+}
@@ -0,0 +1,115 @@
+package com.emailassistant.repository;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailBody;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class EmailSearchRepositoryImpl implements EmailSearchRepository {
+
+    // Body matches fetched per requested hit; they are filtered afterwards, so some are lost
+    private static final int BODY_CANDIDATES_PER_HIT = 5;
+    private static final int MAX_BODY_CANDIDATES = 2000;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Bodies live in their own collection with their own text index, and a query can only use one
+     * text index, so headers and bodies are searched separately and the hits merged by summed score.
+     */
+    @Override
+    public List<Email> searchText(String text, Email.EmailStatus status, String team, Email.EmailIntent intent,
+                                  Email.Priority priority, LocalDateTime receivedAfter, LocalDateTime receivedBefore,
+                                  int page, int size) {
+        TextCriteria matching = TextCriteria.forDefaultLanguage().matching(text);
+        int window = (page + 1) * size;
+
+        Query headerQuery = TextQuery.queryText(matching).sortByScore();
+        addFilters(headerQuery, status, team, intent, priority, receivedAfter, receivedBefore);
+        headerQuery.limit(window);
+        Map<String, Email> hits = new LinkedHashMap<>();
+        for (Email email : mongoTemplate.find(headerQuery, Email.class)) {
+            hits.put(email.getId(), email);
+        }
+
+        Query bodyQuery = TextQuery.queryText(matching).sortByScore();
+        bodyQuery.fields().include("_id");
+        bodyQuery.limit(Math.min(MAX_BODY_CANDIDATES, window * BODY_CANDIDATES_PER_HIT));
+        Map<String, Float> bodyScores = new LinkedHashMap<>();
+        for (EmailBody body : mongoTemplate.find(bodyQuery, EmailBody.class)) {
+            bodyScores.put(body.getId(), body.getSearchScore() != null ? body.getSearchScore() : 0F);
+        }
+
+        List<String> bodyOnly = new ArrayList<>();
+        bodyScores.keySet().forEach(id -> {
+            if (!hits.containsKey(id)) {
+                bodyOnly.add(id);
+            }
+        });
+        if (!bodyOnly.isEmpty()) {
+            Query filtered = Query.query(Criteria.where("_id").in(bodyOnly));
+            addFilters(filtered, status, team, intent, priority, receivedAfter, receivedBefore);
+            for (Email email : mongoTemplate.find(filtered, Email.class)) {
+                email.setSearchScore(0F);
+                hits.put(email.getId(), email);
+            }
+        }
+
+        List<Email> ranked = new ArrayList<>(hits.values());
+        for (Email email : ranked) {
+            float header = email.getSearchScore() != null ? email.getSearchScore() : 0F;
+            email.setSearchScore(header + bodyScores.getOrDefault(email.getId(), 0F));
+        }
+        ranked.sort(Comparator.comparing(Email::getSearchScore).reversed());
+        List<Email> results = ranked.subList(Math.min(page * size, ranked.size()), Math.min(window, ranked.size()));
+
+        if (!results.isEmpty()) {
+            Map<String, Email> byId = new LinkedHashMap<>();
+            results.forEach(email -> byId.put(email.getId(), email));
+            Query bodies = Query.query(Criteria.where("_id").in(byId.keySet()));
+            bodies.fields().include("cleanBody");
+            for (EmailBody body : mongoTemplate.find(bodies, EmailBody.class)) {
+                byId.get(body.getId()).setCleanBody(body.getCleanBody());
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    private static void addFilters(Query query, Email.EmailStatus status, String team, Email.EmailIntent intent,
+                                   Email.Priority priority, LocalDateTime receivedAfter, LocalDateTime receivedBefore) {
+        if (status != null) {
+            query.addCriteria(Criteria.where("status").is(status));
+        }
+        if (team != null) {
+            query.addCriteria(Criteria.where("assignedTeam").is(team));
+        }
+        if (intent != null) {
+            query.addCriteria(Criteria.where("intent").is(intent));
+        }
+        if (priority != null) {
+            query.addCriteria(Criteria.where("priority").is(priority));
+        }
+        if (receivedAfter != null || receivedBefore != null) {
+            Criteria received = Criteria.where("receivedAt");
+            if (receivedAfter != null) {
+                received = received.gte(receivedAfter);
+            }
+            if (receivedBefore != null) {
+                received = received.lt(receivedBefore);
+            }
+            query.addCriteria(received);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.emailassistant.repository;
+
+import com.emailassistant.model.EmailThread;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailThreadRepository extends MongoRepository<EmailThread, String> {
+}
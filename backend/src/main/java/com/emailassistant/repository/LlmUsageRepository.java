@@ -0,0 +1,16 @@
+package com.emailassistant.repository;
+
+import com.emailassistant.model.LlmUsage;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface LlmUsageRepository extends MongoRepository<LlmUsage, String> {
+    
+    // Both days inclusive; yyyy-MM-dd strings order like the dates they hold
+    @Query("{'day': {$gte: ?0, $lte: ?1}}")
+    List<LlmUsage> findByDayInRange(String from, String to);
+}
@@ -0,0 +1,9 @@
+package com.emailassistant.repository;
+
+import com.emailassistant.model.MailboxSyncState;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MailboxSyncStateRepository extends MongoRepository<MailboxSyncState, String> {
+}
@@ -0,0 +1,109 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.AiReplyResponse;
+import com.emailassistant.model.Email;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Binds JSON-mode LLM responses straight onto the analysis types.
+ *
+ * The mapper and readers are immutable and shared, so parsing costs one pass over the response
+ * with no intermediate tree. Replies wrapped in a Markdown fence or surrounded by prose (models
+ * not honouring JSON mode) are trimmed to the outermost object before a second attempt.
+ */
+public final class AiResponseParser {
+
+    public static final ObjectMapper MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .enable(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL)
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+            .build();
+
+    private static final ObjectReader INTENT_READER = MAPPER.readerFor(Email.IntentAnalysisResult.class);
+    private static final ObjectReader SENTIMENT_READER = MAPPER.readerFor(Email.SentimentAnalysisResult.class);
+    private static final ObjectReader QUALITY_READER = MAPPER.readerFor(QualityFeedback.class);
+
+    private AiResponseParser() {
+    }
+
+    /**
+     * Parse an intent analysis; unknown intents map to UNKNOWN and missing scores to an empty map
+     */
+    public static Email.IntentAnalysisResult parseIntent(String response) throws IOException {
+        Email.IntentAnalysisResult result = read(INTENT_READER, response);
+        if (result.getIntent() == null) {
+            result.setIntent(Email.EmailIntent.UNKNOWN);
+        }
+        if (result.getConfidence() == null) {
+            result.setConfidence(0.0);
+        }
+        if (result.getReasoning() == null || result.getReasoning().isBlank()) {
+            result.setReasoning("AI analysis completed");
+        }
+        if (result.getIntentScores() == null) {
+            result.setIntentScores(Map.of());
+        }
+        return result;
+    }
+
+    /**
+     * Parse a sentiment analysis with lower-cased labels
+     */
+    public static Email.SentimentAnalysisResult parseSentiment(String response) throws IOException {
+        Email.SentimentAnalysisResult result = read(SENTIMENT_READER, response);
+        result.setSentiment(lower(result.getSentiment(), "neutral"));
+        result.setUrgency(lower(result.getUrgency(), "low"));
+        result.setLanguage(lower(result.getLanguage(), "en"));
+        result.setCustomerTier(lower(result.getCustomerTier(), "standard"));
+        if (result.getScore() == null) {
+            result.setScore(0.0);
+        }
+        return result;
+    }
+
+    /**
+     * Parse tone and clarity feedback; missing lists come back empty
+     */
+    public static QualityFeedback parseQualityFeedback(String response) throws IOException {
+        QualityFeedback feedback = read(QUALITY_READER, response);
+        return new QualityFeedback(
+                feedback.toneFeedback() != null ? feedback.toneFeedback() : List.of(),
+                feedback.clarityFeedback() != null ? feedback.clarityFeedback() : List.of());
+    }
+
+    private static <T> T read(ObjectReader reader, String response) throws IOException {
+        if (response == null || response.isBlank()) {
+            throw new IOException("Empty AI response");
+        }
+        try {
+            return reader.readValue(response);
+        } catch (IOException e) {
+            int start = response.indexOf('{');
+            int end = response.lastIndexOf('}');
+            if (start < 0 || end <= start || (start == 0 && end == response.length() - 1)) {
+                throw e;
+            }
+            return reader.readValue(response.substring(start, end + 1));
+        }
+    }
+
+    private static String lower(String value, String fallback) {
+        return value != null && !value.isBlank() ? value.trim().toLowerCase(Locale.ROOT) : fallback;
+    }
+
+    /**
+     * Shape of the reply quality response
+     */
+    public record QualityFeedback(List<AiReplyResponse.FeedbackItem> toneFeedback,
+                                  List<AiReplyResponse.FeedbackItem> clarityFeedback) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+
+/**
+ * Gemini responseSchema definitions for JSON-mode calls, serialised once at class load
+ */
+public final class AiResponseSchemas {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final String INTENT = serialize(intentSchema());
+    public static final String SENTIMENT = serialize(sentimentSchema());
+    public static final String QUALITY = serialize(qualitySchema());
+
+    private AiResponseSchemas() {
+    }
+
+    private static ObjectNode intentSchema() {
+        String[] intents = Arrays.stream(Email.EmailIntent.values()).map(Enum::name).toArray(String[]::new);
+        ObjectNode scores = object();
+        ObjectNode scoreProperties = scores.putObject("properties");
+        for (String intent : intents) {
+            if (!intent.equals(Email.EmailIntent.UNKNOWN.name())) {
+                scoreProperties.set(intent, type("NUMBER"));
+            }
+        }
+        ObjectNode schema = object();
+        ObjectNode properties = schema.putObject("properties");
+        properties.set("intent", enumOf(intents));
+        properties.set("confidence", type("NUMBER"));
+        properties.set("reasoning", type("STRING"));
+        properties.set("intentScores", scores);
+        return required(schema, "intent", "confidence", "reasoning", "intentScores");
+    }
+
+    private static ObjectNode sentimentSchema() {
+        ObjectNode schema = object();
+        ObjectNode properties = schema.putObject("properties");
+        properties.set("sentiment", enumOf("positive", "negative", "neutral"));
+        properties.set("score", type("NUMBER"));
+        properties.set("urgency", enumOf("low", "medium", "high", "urgent"));
+        properties.set("language", type("STRING"));
+        properties.set("customerTier", enumOf("standard", "premium", "enterprise"));
+        return required(schema, "sentiment", "score", "urgency", "language", "customerTier");
+    }
+
+    private static ObjectNode qualitySchema() {
+        ObjectNode item = object();
+        ObjectNode itemProperties = item.putObject("properties");
+        itemProperties.set("category", type("STRING"));
+        itemProperties.set("suggestion", type("STRING"));
+        itemProperties.set("reason", type("STRING"));
+        itemProperties.set("severity", enumOf("low", "medium", "high"));
+        required(item, "category", "suggestion", "reason", "severity");
+
+        ObjectNode schema = object();
+        ObjectNode properties = schema.putObject("properties");
+        properties.set("toneFeedback", arrayOf(item));
+        properties.set("clarityFeedback", arrayOf(item));
+        return required(schema, "toneFeedback", "clarityFeedback");
+    }
+
+    private static ObjectNode object() {
+        return type("OBJECT");
+    }
+
+    private static ObjectNode type(String type) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("type", type);
+        return node;
+    }
+
+    private static ObjectNode enumOf(String... values) {
+        ObjectNode node = type("STRING");
+        ArrayNode array = node.putArray("enum");
+        for (String value : values) {
+            array.add(value);
+        }
+        return node;
+    }
+
+    private static ObjectNode arrayOf(ObjectNode items) {
+        ObjectNode node = type("ARRAY");
+        node.set("items", items);
+        return node;
+    }
+
+    private static ObjectNode required(ObjectNode schema, String... fields) {
+        ArrayNode array = schema.putArray("required");
+        for (String field : fields) {
+            array.add(field);
+        }
+        return schema;
+    }
+
+    private static String serialize(ObjectNode schema) {
+        try {
+            return MAPPER.writeValueAsString(schema);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize response schema", e);
+        }
+    }
+}
@@ -17,6 +17,11 @@ public interface AiService {
      */
     AiReplyResponse generateReply(AiReplyRequest request, Email email);
     
+    /**
+     * Generate a speculative reply draft; unlike {@link #generateReply} nobody is assigned the email
+     */
+    AiReplyResponse draftReply(AiReplyRequest request, Email email);
+    
     /**
      * Analyze email sentiment and urgency
      */
@@ -0,0 +1,80 @@
+package com.emailassistant.service;
+
+/**
+ * Static instruction blocks shared by every call for a task. They are sent as the system
+ * instruction, separately from the per-email text, so providers can cache them once instead of
+ * prefilling them on every call.
+ */
+public final class AiSystemInstructions {
+
+    public static final String INTENT = """
+            You classify customer support emails. Analyze the email you are given and determine the customer's intent.
+
+            Intent categories:
+            - REFUND_REQUEST: Customer wants a refund
+            - BUG_REPORT: Customer reports a bug or technical issue
+            - FEATURE_REQUEST: Customer asks for or about features or capabilities
+            - GENERAL_INQUIRY: General customer support questions
+            - BILLING_ISSUE: Billing or payment related issues
+            - TECHNICAL_SUPPORT: Technical problems or questions
+            - COMPLAINT: Customer complaints or dissatisfaction
+            - ACCOUNT_ACCESS: Login, password or account access problems
+
+            Respond strictly in JSON format, scoring every category in intentScores:
+            {
+                "intent": "INTENT_CATEGORY",
+                "confidence": 0.95,
+                "reasoning": "Brief explanation",
+                "intentScores": {
+                    "REFUND_REQUEST": 0.1,
+                    "BUG_REPORT": 0.8,
+                    "FEATURE_REQUEST": 0.05
+                }
+            }
+            """;
+
+    public static final String SENTIMENT = """
+            You analyze the sentiment and urgency of customer support text.
+
+            Respond in JSON format:
+            {
+                "sentiment": "positive|negative|neutral",
+                "score": 0.85,
+                "urgency": "low|medium|high|urgent",
+                "language": "en",
+                "customerTier": "standard|premium|enterprise"
+            }
+            """;
+
+    public static final String REPLY = """
+            You write replies to customer support emails on behalf of the support team.
+            Generate a helpful, professional, and empathetic reply that addresses the customer's needs,
+            following the tone, style and additional context given with each email.
+            """;
+
+    public static final String QUALITY = """
+            You review replies to customer support emails. Analyze the quality of the reply to the original email
+            and provide feedback on tone and clarity. Respond in JSON format:
+            {
+                "toneFeedback": [
+                    {
+                        "category": "professionalism",
+                        "suggestion": "Consider using more formal language",
+                        "reason": "The tone is too casual for a business context",
+                        "severity": "medium"
+                    }
+                ],
+                "clarityFeedback": [
+                    {
+                        "category": "structure",
+                        "suggestion": "Break down the response into bullet points",
+                        "reason": "The response is too long and dense",
+                        "severity": "high"
+                    }
+                ]
+            }
+            """;
+
+    private AiSystemInstructions() {
+    }
+}
@@ -0,0 +1,309 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailAttachment;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stores attachments in GridFS, streamed in 255 kB chunks so no file is ever held in memory, and
+ * keeps only {@link EmailAttachment} references on the email. Files can be uploaded before their
+ * email exists (the email then lists their ids) or added to an existing email. Files never linked
+ * to an email are removed after {@code attachments.orphan-ttl-hours}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentService {
+
+    static final String EMAIL_ID = "emailId";
+
+    private final GridFsTemplate gridFsTemplate;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${spring.data.mongodb.gridfs.bucket:fs}")
+    private String bucket;
+
+    @Value("${attachments.max-size-mb:50}")
+    private long maxSizeMb;
+
+    @Value("${attachments.orphan-ttl-hours:24}")
+    private long orphanTtlHours;
+
+    /**
+     * Stream an attachment into GridFS; when an email id is given the reference is added to it
+     */
+    public EmailAttachment store(InputStream content, String filename, String contentType, String emailId) {
+        if (emailId != null && !mongoTemplate.exists(Query.query(Criteria.where("_id").is(emailId)), Email.class)) {
+            throw new RuntimeException("Email not found: " + emailId);
+        }
+        String name = filename != null && !filename.isBlank() ? filename : "attachment";
+        CountingInputStream counted = new CountingInputStream(content, maxSizeMb * 1024 * 1024);
+        // The driver deletes the chunks written so far if the stream fails, e.g. past the size limit
+        ObjectId fileId = gridFsTemplate.store(counted, name, contentType, new Document(EMAIL_ID, emailId));
+        EmailAttachment attachment = EmailAttachment.builder()
+                .fileId(fileId.toHexString())
+                .filename(name)
+                .contentType(contentType)
+                .size(counted.count)
+                .uploadedAt(LocalDateTime.now())
+                .build();
+        if (emailId != null) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(emailId)),
+                    new Update().push("attachments", attachment), Email.class);
+        }
+        log.info("Stored attachment {} ({}, {} bytes){}", fileId, name, counted.count,
+                emailId != null ? " for email " + emailId : "");
+        return attachment;
+    }
+
+    /**
+     * References for previously uploaded files, in the order given; unknown ids are skipped
+     */
+    public List<EmailAttachment> find(Collection<String> fileIds) {
+        List<EmailAttachment> attachments = new ArrayList<>();
+        List<ObjectId> ids = objectIds(fileIds);
+        if (ids.isEmpty()) {
+            return attachments;
+        }
+        for (GridFSFile file : gridFsTemplate.find(Query.query(Criteria.where("_id").in(ids)))) {
+            attachments.add(toAttachment(file));
+        }
+        attachments.sort((a, b) -> ids.indexOf(new ObjectId(a.getFileId())) - ids.indexOf(new ObjectId(b.getFileId())));
+        return attachments;
+    }
+
+    /**
+     * Mark uploaded files as belonging to a saved email, so orphan cleanup leaves them alone
+     */
+    public void link(List<EmailAttachment> attachments, String emailId) {
+        List<String> fileIds = new ArrayList<>();
+        for (EmailAttachment attachment : attachments) {
+            if (attachment.getFileId() != null) {
+                fileIds.add(attachment.getFileId());
+            }
+        }
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(objectIds(fileIds))),
+                Update.update("metadata." + EMAIL_ID, emailId), bucket + ".files");
+    }
+
+    /**
+     * A resource that opens a fresh GridFS stream per read, so byte ranges can each seek to their
+     * first chunk instead of reading the file from the start; null if there is no such file
+     */
+    public Attachment open(String fileId) {
+        if (!ObjectId.isValid(fileId)) {
+            return null;
+        }
+        GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(fileId))));
+        return file != null ? new Attachment(toAttachment(file), file) : null;
+    }
+
+    /**
+     * Delete a file and its reference on the email; false if there is no such file
+     */
+    public boolean delete(String fileId) {
+        Attachment attachment = open(fileId);
+        if (attachment == null) {
+            return false;
+        }
+        Document metadata = attachment.file.getMetadata();
+        String emailId = metadata != null ? metadata.getString(EMAIL_ID) : null;
+        if (emailId != null) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(emailId)),
+                    new Update().pull("attachments", new Document("fileId", fileId)), Email.class);
+        }
+        gridFsTemplate.delete(Query.query(Criteria.where("_id").is(new ObjectId(fileId))));
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${attachments.orphan-sweep-interval-ms:3600000}")
+    public void deleteOrphans() {
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(orphanTtlHours));
+        Query orphans = Query.query(Criteria.where("metadata." + EMAIL_ID).is(null).and("uploadDate").lt(cutoff));
+        try {
+            gridFsTemplate.delete(orphans);
+        } catch (Exception e) {
+            log.error("Failed to delete orphaned attachments: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Emails written before GridFS storage listed attachments as plain names; keep them as
+     * references without a file
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateNamedAttachments() {
+        Query legacy = Query.query(Criteria.where("attachments").type(2));
+        legacy.fields().include("attachments");
+        long migrated = 0;
+        try (Stream<Document> documents = mongoTemplate.stream(legacy, Document.class, mongoTemplate.getCollectionName(Email.class))) {
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                List<EmailAttachment> attachments = new ArrayList<>();
+                for (Object entry : document.getList("attachments", Object.class)) {
+                    if (entry instanceof String name) {
+                        attachments.add(EmailAttachment.builder().filename(name).build());
+                    }
+                }
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(document.get("_id"))),
+                        Update.update("attachments", attachments), Email.class);
+                migrated++;
+            }
+        } catch (Exception e) {
+            log.error("Failed to migrate named attachments after {} emails: {}", migrated, e.getMessage(), e);
+            return;
+        }
+        if (migrated > 0) {
+            log.info("Migrated named attachments of {} emails", migrated);
+        }
+    }
+
+    private EmailAttachment toAttachment(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        return EmailAttachment.builder()
+                .fileId(file.getObjectId().toHexString())
+                .filename(file.getFilename())
+                .contentType(metadata != null ? metadata.getString("_contentType") : null)
+                .size(file.getLength())
+                .uploadedAt(LocalDateTime.ofInstant(file.getUploadDate().toInstant(), ZoneId.systemDefault()))
+                .build();
+    }
+
+    private static List<ObjectId> objectIds(Collection<String> fileIds) {
+        List<ObjectId> ids = new ArrayList<>();
+        if (fileIds == null) {
+            return ids;
+        }
+        for (String fileId : fileIds) {
+            if (fileId != null && ObjectId.isValid(fileId)) {
+                ids.add(new ObjectId(fileId));
+            } else {
+                log.warn("Ignoring invalid attachment id: {}", fileId);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * A stored file with its reference
+     */
+    public final class Attachment extends AbstractResource {
+
+        private final EmailAttachment reference;
+        private final GridFSFile file;
+
+        private Attachment(EmailAttachment reference, GridFSFile file) {
+            this.reference = reference;
+            this.file = file;
+        }
+
+        public EmailAttachment reference() {
+            return reference;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return gridFsTemplate.getResource(file).getInputStream();
+        }
+
+        @Override
+        public long contentLength() {
+            return file.getLength();
+        }
+
+        @Override
+        public long lastModified() {
+            return file.getUploadDate().getTime();
+        }
+
+        @Override
+        public String getFilename() {
+            return file.getFilename();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "GridFS file [" + file.getObjectId().toHexString() + "]";
+        }
+    }
+
+    /**
+     * Counts what passes through and fails the upload once it exceeds the size limit
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        private CountingInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        private void advance(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Attachment exceeds " + limit / (1024 * 1024) + " MB");
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailBody;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores email bodies in email_bodies so the emails documents every list, status update and
+ * assignment reads and rewrites stay small. The raw and HTML bodies are deflated above a size
+ * threshold; the clean body stays plain because search indexes it and the AI stages read it.
+ * Only the detail endpoint, reply generation and the AI stages load bodies, via {@link #load},
+ * {@link #loadText} or, for streams of emails, {@link #withText} in batches.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailBodyService implements SmartInitializingSingleton {
+
+    public static final String DEFLATE = "deflate";
+
+    private static final String[] INLINE_FIELDS = {"body", "htmlBody", "cleanBody"};
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${email.bodies.compression:deflate}")
+    private String compression;
+
+    @Value("${email.bodies.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${email.bodies.compression-min-bytes:1024}")
+    private int compressionMinBytes;
+
+    @Value("${email.bodies.batch-size:500}")
+    private int batchSize;
+
+    @Value("${email.bodies.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    /**
+     * Store the bodies held by a saved email
+     */
+    public void save(Email email) {
+        mongoTemplate.save(toBody(email.getId(), email.getBody(), email.getHtmlBody(), email.getCleanBody()));
+    }
+
+    /**
+     * Fill in every body of an email, for the detail view and reply generation
+     */
+    public Email load(Email email) {
+        if (email == null || email.getId() == null) {
+            return email;
+        }
+        EmailBody stored = mongoTemplate.findById(email.getId(), EmailBody.class);
+        if (stored != null) {
+            email.setCleanBody(stored.getCleanBody());
+            email.setBody(rawBody(stored));
+            email.setHtmlBody(htmlBody(stored));
+        }
+        return email;
+    }
+
+    /**
+     * Fill in only the text the AI stages read: the clean body, or the raw body if there is none
+     */
+    public Email loadText(Email email) {
+        if (email != null && email.getId() != null) {
+            loadText(List.of(email));
+        }
+        return email;
+    }
+
+    /**
+     * Load the AI text of a stream of emails, one query per batch instead of one per email
+     */
+    public Stream<Email> withText(Stream<Email> emails) {
+        Iterator<Email> source = emails.iterator();
+        Iterator<List<Email>> batches = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public List<Email> next() {
+                List<Email> batch = new ArrayList<>(batchSize);
+                while (source.hasNext() && batch.size() < batchSize) {
+                    batch.add(source.next());
+                }
+                loadText(batch);
+                return batch;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(emails::close);
+    }
+
+    private void loadText(List<Email> emails) {
+        Map<String, Email> byId = new HashMap<>();
+        for (Email email : emails) {
+            if (email.getId() != null && email.getCleanBody() == null && email.getBody() == null) {
+                byId.put(email.getId(), email);
+            }
+        }
+        if (byId.isEmpty()) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").in(byId.keySet()));
+        query.fields().exclude("htmlBody").exclude("htmlBodyData");
+        for (EmailBody stored : mongoTemplate.find(query, EmailBody.class)) {
+            Email email = byId.get(stored.getId());
+            if (stored.getCleanBody() != null) {
+                email.setCleanBody(stored.getCleanBody());
+            } else {
+                email.setBody(rawBody(stored));
+            }
+        }
+    }
+
+    /**
+     * Runs before the web server starts: bodies are transient on {@link Email}, so saving a legacy
+     * email that has not been migrated yet would delete its inline body
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrateInlineBodies();
+    }
+
+    /**
+     * Move bodies still stored inline on emails written before email_bodies existed
+     */
+    public void migrateInlineBodies() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        Criteria inline = new Criteria().orOperator(
+                Criteria.where("body").exists(true),
+                Criteria.where("htmlBody").exists(true),
+                Criteria.where("cleanBody").exists(true));
+        Query query = Query.query(inline);
+        query.fields().include(INLINE_FIELDS);
+        query.cursorBatchSize(batchSize);
+        long moved = 0;
+        List<Object> ids = new ArrayList<>(batchSize);
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(Email.class))) {
+            Iterator<Document> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+                Object id = document.get("_id");
+                mongoTemplate.save(toBody(id.toString(), document.getString("body"),
+                        document.getString("htmlBody"), document.getString("cleanBody")));
+                ids.add(id);
+                if (ids.size() == batchSize) {
+                    moved += unsetInline(ids);
+                }
+            }
+            moved += unsetInline(ids);
+        } catch (Exception e) {
+            log.error("Failed to move inline email bodies after {} emails: {}", moved, e.getMessage(), e);
+            return;
+        }
+        if (moved > 0) {
+            log.info("Moved bodies of {} emails to email_bodies", moved);
+        }
+    }
+
+    private long unsetInline(List<Object> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Update update = new Update();
+        for (String field : INLINE_FIELDS) {
+            update.unset(field);
+        }
+        long modified = mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)), update, Email.class)
+                .getModifiedCount();
+        ids.clear();
+        return modified;
+    }
+
+    private EmailBody toBody(String id, String body, String htmlBody, String cleanBody) {
+        byte[] raw = bytes(body);
+        byte[] html = bytes(htmlBody);
+        int originalBytes = raw.length + html.length + bytes(cleanBody).length;
+        EmailBody.EmailBodyBuilder stored = EmailBody.builder()
+                .id(id)
+                .cleanBody(cleanBody)
+                .originalBytes(originalBytes);
+        if (DEFLATE.equalsIgnoreCase(compression) && raw.length + html.length >= compressionMinBytes) {
+            byte[] bodyData = body != null ? deflate(raw) : null;
+            byte[] htmlBodyData = htmlBody != null ? deflate(html) : null;
+            return stored.compression(DEFLATE)
+                    .bodyData(bodyData)
+                    .htmlBodyData(htmlBodyData)
+                    .storedBytes(originalBytes - raw.length - html.length + length(bodyData) + length(htmlBodyData))
+                    .build();
+        }
+        return stored.body(body)
+                .htmlBody(htmlBody)
+                .storedBytes(originalBytes)
+                .build();
+    }
+
+    private static String rawBody(EmailBody stored) {
+        return DEFLATE.equals(stored.getCompression()) ? inflate(stored.getBodyData()) : stored.getBody();
+    }
+
+    private static String htmlBody(EmailBody stored) {
+        return DEFLATE.equals(stored.getCompression()) ? inflate(stored.getHtmlBodyData()) : stored.getHtmlBody();
+    }
+
+    private byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 3));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(byte[] input) {
+        if (input == null) {
+            return null;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new RuntimeException("Truncated compressed email body");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Corrupt compressed email body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private static int length(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+}
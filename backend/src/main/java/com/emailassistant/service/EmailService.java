@@ -1,7 +1,10 @@
 package com.emailassistant.service;
 
+import com.emailassistant.dto.AiReplyResponse;
 import com.emailassistant.dto.EmailRequest;
 import com.emailassistant.dto.EmailResponse;
+import com.emailassistant.dto.EmailSearchRequest;
+import com.emailassistant.dto.EmailSearchResponse;
 import com.emailassistant.model.Email;
 
 import java.util.List;
@@ -15,7 +18,12 @@ public interface EmailService {
     EmailResponse processIncomingEmail(EmailRequest request);
     
     /**
-     * Get email by ID
+     * Process a batch of incoming emails in order, skipping those already stored
+     */
+    List<EmailResponse> processIncomingEmails(List<EmailRequest> requests);
+    
+    /**
+     * Get email by ID, with its bodies loaded
      */
     Optional<Email> getEmailById(String id);
     
@@ -59,6 +67,26 @@ public interface EmailService {
      */
     List<EmailResponse> getHighPriorityPendingEmails();
     
+    /**
+     * Get emails in a near-duplicate cluster
+     */
+    List<EmailResponse> getEmailsInCluster(String clusterId);
+    
+    /**
+     * Update the status of every email in a near-duplicate cluster
+     */
+    long updateClusterStatus(String clusterId, Email.EmailStatus status);
+    
+    /**
+     * Get all emails in a conversation thread, oldest first
+     */
+    List<EmailResponse> getThread(String threadId);
+    
+    /**
+     * Full-text search over subject, body, sender and notes
+     */
+    EmailSearchResponse searchEmails(EmailSearchRequest request);
+    
     /**
      * Get email statistics
      */
@@ -74,6 +102,22 @@ public interface EmailService {
      */
     EmailResponse updateEmailPriority(String emailId, Email.Priority priority);
     
+    /**
+     * Store a generated AI reply as the email's draft and record its LLM calls
+     */
+    EmailResponse recordGeneratedReply(String emailId, AiReplyResponse reply);
+    
+    /**
+     * Store a speculatively pre-generated reply as the email's draft, unless it already has one.
+     * Returns whether the draft was stored.
+     */
+    boolean recordSpeculativeReply(String emailId, AiReplyResponse reply, String parametersKey);
+    
+    /**
+     * Record the LLM calls of a generated reply that is thrown away, so its cost is still accounted
+     */
+    void recordDiscardedReply(String emailId, AiReplyResponse reply);
+    
     /**
      * Send reply to email
      */
@@ -1,23 +1,36 @@
 package com.emailassistant.service;
 
+import com.emailassistant.dto.AiReplyResponse;
 import com.emailassistant.dto.EmailRequest;
 import com.emailassistant.dto.EmailResponse;
+import com.emailassistant.dto.EmailSearchRequest;
+import com.emailassistant.dto.EmailSearchResponse;
 import com.emailassistant.model.Email;
 import com.emailassistant.model.EmailNote;
 import com.emailassistant.model.EmailMetadata;
+import com.emailassistant.model.EmailThread;
+import com.emailassistant.model.LlmCallRecord;
 import com.emailassistant.model.Team;
 import com.emailassistant.model.User;
 import com.emailassistant.repository.EmailRepository;
+import com.emailassistant.repository.EmailThreadRepository;
 import com.emailassistant.repository.TeamRepository;
 import com.emailassistant.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -27,28 +40,68 @@ import java.util.stream.Collectors;
 public class EmailServiceImpl implements EmailService {
 
     private final EmailRepository emailRepository;
+    private final EmailThreadRepository emailThreadRepository;
     private final TeamRepository teamRepository;
     private final UserRepository userRepository;
     private final AiService aiService;
     private final TeamAssignmentService teamAssignmentService;
+    private final SlaService slaService;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final EmailTextNormalizer emailTextNormalizer;
+    private final ReplyRetrievalIndex replyRetrievalIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LlmScheduler llmScheduler;
+    private final PipelineMetrics pipelineMetrics;
+    private final LlmUsageService llmUsageService;
+    private final EmailBodyService emailBodyService;
+    private final AttachmentService attachmentService;
 
     @Override
     @Transactional
     public EmailResponse processIncomingEmail(EmailRequest request) {
         log.info("Processing incoming email from: {}", request.getFrom());
-        
-        // Check if email already exists
-        if (request.getMessageId() != null) {
-            Optional<Email> existingEmail = emailRepository.findByMessageId(request.getMessageId());
-            if (existingEmail.isPresent()) {
-                log.warn("Email with message ID {} already exists", request.getMessageId());
-                return convertToEmailResponse(existingEmail.get());
+        PipelineMetrics.Run run = pipelineMetrics.begin();
+        
+        String messageId;
+        String threadId;
+        EmailThread thread;
+        String cleanBody;
+        Long simHash;
+        NearDuplicateIndex.Match duplicate;
+        try (PipelineMetrics.Stage stage = run.stage(PipelineMetrics.DEDUP)) {
+            // Check if email already exists
+            if (request.getMessageId() != null) {
+                Optional<Email> existingEmail = emailRepository.findByMessageId(request.getMessageId());
+                if (existingEmail.isPresent()) {
+                    log.warn("Email with message ID {} already exists", request.getMessageId());
+                    stage.complete(null, 0, "existing");
+                    run.path("existing").finish(existingEmail.get().getIntent(), "existing");
+                    return convertToEmailResponse(existingEmail.get());
+                }
             }
+            
+            // Resolve the conversation this email belongs to
+            messageId = request.getMessageId() != null ? request.getMessageId() : UUID.randomUUID().toString();
+            run.messageId(messageId);
+            threadId = resolveThreadId(messageId, request.getInReplyTo(), request.getReferences());
+            thread = emailThreadRepository.findById(threadId).orElse(null);
+            
+            // Normalise once; every AI stage reuses the cleaned text
+            cleanBody = emailTextNormalizer.normalize(request.getBody(), request.getHtmlBody());
+            
+            // Look for a recent near-duplicate whose triage can be reused
+            simHash = nearDuplicateIndex.signature(request.getSubject(), cleanBody);
+            duplicate = simHash != null ? nearDuplicateIndex.findNearDuplicate(simHash) : null;
+            stage.complete();
         }
         
         // Create new email entity
+        LocalDateTime receivedAt = LocalDateTime.now();
         Email email = Email.builder()
-                .messageId(request.getMessageId() != null ? request.getMessageId() : UUID.randomUUID().toString())
+                .messageId(messageId)
+                .inReplyTo(request.getInReplyTo())
+                .references(request.getReferences())
+                .threadId(threadId)
                 .from(request.getFrom())
                 .to(request.getTo())
                 .cc(request.getCc())
@@ -56,25 +109,74 @@ public class EmailServiceImpl implements EmailService {
                 .subject(request.getSubject())
                 .body(request.getBody())
                 .htmlBody(request.getHtmlBody())
-                .attachments(request.getAttachments())
+                .cleanBody(cleanBody)
+                .attachments(attachmentService.find(request.getAttachments()))
                 .status(Email.EmailStatus.RECEIVED)
-                .receivedAt(LocalDateTime.now())
+                .receivedAt(receivedAt)
                 .priority(Email.Priority.MEDIUM)
+                .slaDeadline(slaService.computeDeadline(Email.Priority.MEDIUM, null, receivedAt))
+                .simHash(simHash)
+                .duplicateClusterId(duplicate != null ? duplicate.clusterId() : null)
                 .build();
         
         // Save email
-        email = emailRepository.save(email);
+        try (PipelineMetrics.Stage stage = run.stage(PipelineMetrics.SAVE)) {
+            email = emailRepository.save(email);
+            emailBodyService.save(email);
+            attachmentService.link(email.getAttachments(), email.getId());
+            run.emailId(email.getId());
+            stage.complete();
+        } catch (RuntimeException e) {
+            run.finish(null, "error");
+            throw e;
+        }
+        slaService.track(email);
         log.info("Email saved with ID: {}", email.getId());
         
+        if (simHash != null) {
+            if (email.getDuplicateClusterId() == null) {
+                // First email of its kind starts a new cluster; persisted by the next save
+                email.setDuplicateClusterId(email.getId());
+            }
+            nearDuplicateIndex.register(email.getId(), simHash, email.getDuplicateClusterId(), System.currentTimeMillis());
+        }
+        
         // Process email asynchronously
-        processEmailAsync(email);
+        processEmailAsync(email, duplicate, thread, run);
         
         return convertToEmailResponse(email);
     }
 
+    /**
+     * Known Message-IDs are looked up in one query rather than one per email. Emails are ingested
+     * one after another, so a reply in the batch finds the thread its parent just started.
+     */
+    @Override
+    public List<EmailResponse> processIncomingEmails(List<EmailRequest> requests) {
+        Set<String> messageIds = new HashSet<>();
+        for (EmailRequest request : requests) {
+            if (request.getMessageId() != null) {
+                messageIds.add(request.getMessageId());
+            }
+        }
+        Set<String> known = new HashSet<>();
+        if (!messageIds.isEmpty()) {
+            emailRepository.findMessageIdsIn(messageIds).forEach(email -> known.add(email.getMessageId()));
+        }
+        List<EmailResponse> responses = new ArrayList<>(requests.size());
+        for (EmailRequest request : requests) {
+            if (request.getMessageId() != null && !known.add(request.getMessageId())) {
+                log.debug("Skipping already stored email {}", request.getMessageId());
+                continue;
+            }
+            responses.add(processIncomingEmail(request));
+        }
+        return responses;
+    }
+
     @Override
     public Optional<Email> getEmailById(String id) {
-        return emailRepository.findById(id);
+        return emailRepository.findById(id).map(emailBodyService::load);
     }
 
     @Override
@@ -104,7 +206,7 @@ public class EmailServiceImpl implements EmailService {
         }
         
         return emails.stream()
-                .map(this::convertToEmailResponse)
+                .map(EmailServiceImpl::convertToEmailResponse)
                 .collect(Collectors.toList());
     }
 
@@ -127,6 +229,7 @@ public class EmailServiceImpl implements EmailService {
         email.setAssignedAt(LocalDateTime.now());
         
         email = emailRepository.save(email);
+        updateThread(email, null, false);
         
         // Add assignment note
         addNoteToEmail(emailId, "Email assigned to team: " + teamOpt.get().getName(), "system");
@@ -153,6 +256,7 @@ public class EmailServiceImpl implements EmailService {
         email.setAssignedAt(LocalDateTime.now());
         
         email = emailRepository.save(email);
+        updateThread(email, null, false);
         
         // Add assignment note
         addNoteToEmail(emailId, "Email assigned to user: " + userOpt.get().getDisplayName(), "system");
@@ -176,6 +280,7 @@ public class EmailServiceImpl implements EmailService {
         }
         
         email = emailRepository.save(email);
+        slaService.track(email);
         
         return convertToEmailResponse(email);
     }
@@ -184,7 +289,7 @@ public class EmailServiceImpl implements EmailService {
     public List<EmailResponse> getEmailsByStatus(Email.EmailStatus status) {
         return emailRepository.findByStatus(status)
                 .stream()
-                .map(this::convertToEmailResponse)
+                .map(EmailServiceImpl::convertToEmailResponse)
                 .collect(Collectors.toList());
     }
 
@@ -192,7 +297,7 @@ public class EmailServiceImpl implements EmailService {
     public List<EmailResponse> getEmailsByTeam(String teamId) {
         return emailRepository.findByAssignedTeam(teamId)
                 .stream()
-                .map(this::convertToEmailResponse)
+                .map(EmailServiceImpl::convertToEmailResponse)
                 .collect(Collectors.toList());
     }
 
@@ -200,7 +305,7 @@ public class EmailServiceImpl implements EmailService {
     public List<EmailResponse> getEmailsByUser(String userId) {
         return emailRepository.findByAssignedUser(userId)
                 .stream()
-                .map(this::convertToEmailResponse)
+                .map(EmailServiceImpl::convertToEmailResponse)
                 .collect(Collectors.toList());
     }
 
@@ -208,10 +313,77 @@ public class EmailServiceImpl implements EmailService {
     public List<EmailResponse> getHighPriorityPendingEmails() {
         return emailRepository.findHighPriorityPendingEmails(Email.Priority.HIGH)
                 .stream()
-                .map(this::convertToEmailResponse)
+                .map(EmailServiceImpl::convertToEmailResponse)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<EmailResponse> getEmailsInCluster(String clusterId) {
+        return emailRepository.findByDuplicateClusterId(clusterId)
+                .stream()
+                .map(EmailServiceImpl::convertToEmailResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public long updateClusterStatus(String clusterId, Email.EmailStatus status) {
+        List<Email> cluster = emailRepository.findByDuplicateClusterId(clusterId);
+        if (cluster.isEmpty()) {
+            throw new RuntimeException("Cluster not found: " + clusterId);
+        }
+        
+        long updated = emailRepository.updateStatusByDuplicateClusterId(clusterId, status);
+        cluster.forEach(email -> {
+            email.setStatus(status);
+            slaService.track(email);
+        });
+        log.info("Updated status of {} emails in cluster {} to {}", updated, clusterId, status);
+        
+        return updated;
+    }
+
+    @Override
+    public List<EmailResponse> getThread(String threadId) {
+        return emailRepository.findByThreadIdOrderByReceivedAtAsc(threadId)
+                .stream()
+                .map(EmailServiceImpl::convertToEmailResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public EmailSearchResponse searchEmails(EmailSearchRequest request) {
+        long start = System.currentTimeMillis();
+        
+        List<Email> emails = emailRepository.searchText(
+                request.getQ(),
+                parseEnum(Email.EmailStatus.class, request.getStatus()),
+                request.getTeam() != null && !request.getTeam().trim().isEmpty() ? request.getTeam() : null,
+                parseEnum(Email.EmailIntent.class, request.getIntent()),
+                parseEnum(Email.Priority.class, request.getPriority()),
+                request.getReceivedAfter(),
+                request.getReceivedBefore(),
+                request.getPage(),
+                request.getSize());
+        
+        List<String> terms = SearchHighlighter.terms(request.getQ());
+        List<EmailSearchResponse.SearchHit> hits = emails.stream()
+                .map(email -> EmailSearchResponse.SearchHit.builder()
+                        .email(convertToEmailResponse(email))
+                        .score(email.getSearchScore())
+                        .highlights(highlight(email, terms))
+                        .build())
+                .collect(Collectors.toList());
+        
+        return EmailSearchResponse.builder()
+                .query(request.getQ())
+                .page(request.getPage())
+                .size(request.getSize())
+                .tookMs(System.currentTimeMillis() - start)
+                .results(hits)
+                .build();
+    }
+
     @Override
     public EmailStatistics getEmailStatistics() {
         return new EmailStatistics() {
@@ -292,11 +464,116 @@ public class EmailServiceImpl implements EmailService {
         
         Email email = emailOpt.get();
         email.setPriority(priority);
+        // A manual re-prioritisation restarts the SLA clock
+        email.setSlaDeadline(slaService.computeDeadline(priority, email.getIntent(), LocalDateTime.now()));
         email = emailRepository.save(email);
+        slaService.track(email);
         
         return convertToEmailResponse(email);
     }
 
+    @Override
+    public EmailResponse recordGeneratedReply(String emailId, AiReplyResponse reply) {
+        Optional<Email> emailOpt = emailRepository.findById(emailId);
+        if (emailOpt.isEmpty()) {
+            throw new RuntimeException("Email not found: " + emailId);
+        }
+
+        Email email = emailOpt.get();
+        email.setAiGeneratedReply(reply.getGeneratedReply());
+        email.setSpeculativeDraft(null);
+        if (email.getMetadata() == null) {
+            email.setMetadata(EmailMetadata.builder().emailId(emailId).build());
+        }
+        recordLlmCalls(email.getMetadata(), reply.getLlmCalls());
+        email = emailRepository.save(email);
+        llmUsageService.record(email, reply.getLlmCalls());
+
+        return convertToEmailResponse(email);
+    }
+
+    @Override
+    public boolean recordSpeculativeReply(String emailId, AiReplyResponse reply, String parametersKey) {
+        Optional<Email> emailOpt = emailRepository.findById(emailId);
+        if (emailOpt.isEmpty()) {
+            return false;
+        }
+        if (emailOpt.get().getAiGeneratedReply() != null || emailOpt.get().getFinalReply() != null) {
+            // The email got a reply meanwhile; the draft is dropped but its calls were paid for
+            recordReplyCalls(emailOpt.get(), reply);
+            return false;
+        }
+
+        Email email = emailOpt.get();
+        email.setAiGeneratedReply(reply.getGeneratedReply());
+        email.setSpeculativeDraft(Email.ReplyDraft.builder()
+                .parametersKey(parametersKey)
+                .modelUsed(reply.getModelUsed())
+                .generatedAt(LocalDateTime.now())
+                .build());
+        if (email.getMetadata() == null) {
+            email.setMetadata(EmailMetadata.builder().emailId(emailId).build());
+        }
+        recordLlmCalls(email.getMetadata(), reply.getLlmCalls());
+        emailRepository.save(email);
+        llmUsageService.record(email, reply.getLlmCalls());
+        log.info("Stored pre-generated reply draft for email {}", emailId);
+        return true;
+    }
+
+    /**
+     * Charge the calls of a reply nobody will see to its email; a deleted email is not charged
+     */
+    @Override
+    public void recordDiscardedReply(String emailId, AiReplyResponse reply) {
+        emailRepository.findById(emailId).ifPresent(email -> recordReplyCalls(email, reply));
+    }
+
+    /**
+     * Add a reply's LLM calls to the email's metadata and to LLM usage without storing the reply
+     */
+    private void recordReplyCalls(Email email, AiReplyResponse reply) {
+        if (reply.getLlmCalls() == null || reply.getLlmCalls().isEmpty()) {
+            return;
+        }
+        if (email.getMetadata() == null) {
+            email.setMetadata(EmailMetadata.builder().emailId(email.getId()).build());
+        }
+        recordLlmCalls(email.getMetadata(), reply.getLlmCalls());
+        emailRepository.save(email);
+        llmUsageService.record(email, reply.getLlmCalls());
+    }
+
+    /**
+     * Append routed LLM calls to the email's metadata and keep the running cost and tokens in step
+     */
+    private static void recordLlmCalls(EmailMetadata metadata, List<LlmCallRecord> calls) {
+        if (calls == null || calls.isEmpty()) {
+            return;
+        }
+        List<LlmCallRecord> recorded = metadata.getLlmCalls() != null
+                ? new ArrayList<>(metadata.getLlmCalls()) : new ArrayList<>(calls.size());
+        double cost = metadata.getLlmCostUsd() != null ? metadata.getLlmCostUsd() : 0.0;
+        long inputTokens = metadata.getLlmInputTokens() != null ? metadata.getLlmInputTokens() : 0;
+        long outputTokens = metadata.getLlmOutputTokens() != null ? metadata.getLlmOutputTokens() : 0;
+        for (LlmCallRecord call : calls) {
+            recorded.add(call);
+            if (call.getCostUsd() != null) {
+                cost += call.getCostUsd();
+            }
+            if (call.getInputTokens() != null) {
+                inputTokens += call.getInputTokens();
+            }
+            if (call.getOutputTokens() != null) {
+                outputTokens += call.getOutputTokens();
+            }
+        }
+        metadata.setLlmCalls(recorded);
+        metadata.setLlmCostUsd(cost);
+        metadata.setLlmInputTokens(inputTokens);
+        metadata.setLlmOutputTokens(outputTokens);
+    }
+
     @Override
     @Transactional
     public EmailResponse sendReply(String emailId, String reply, String userId) {
@@ -311,6 +588,8 @@ public class EmailServiceImpl implements EmailService {
         email.setRespondedAt(LocalDateTime.now());
         
         email = emailRepository.save(email);
+        slaService.track(email);
+        replyRetrievalIndex.add(emailBodyService.loadText(email));
         
         // Add reply note
         addNoteToEmail(emailId, "Reply sent: " + reply.substring(0, Math.min(100, reply.length())) + "...", userId);
@@ -318,7 +597,8 @@ public class EmailServiceImpl implements EmailService {
         return convertToEmailResponse(email);
     }
 
-    private void processEmailAsync(Email email) {
+    private void processEmailAsync(Email email, NearDuplicateIndex.Match duplicate, EmailThread thread,
+                                   PipelineMetrics.Run run) {
         // This would typically be done asynchronously
         try {
             log.info("Starting to process email {} from: {}", email.getId(), email.getFrom());
@@ -326,21 +606,69 @@ public class EmailServiceImpl implements EmailService {
             // Update status to processing
             email.setStatus(Email.EmailStatus.PROCESSING);
             email.setProcessedAt(LocalDateTime.now());
-            emailRepository.save(email);
+            try (PipelineMetrics.Stage stage = run.stage(PipelineMetrics.SAVE)) {
+                emailRepository.save(email);
+                stage.complete();
+            }
             
-            // Analyze intent
-            log.info("Analyzing intent for email: {}", email.getId());
-            Email.IntentAnalysisResult intentResult = aiService.analyzeIntent(email.getSubject(), email.getBody());
+            Email.IntentAnalysisResult intentResult;
+            Email.SentimentAnalysisResult sentimentResult;
+            Map<String, Object> aiAnalysis = null;
+            boolean followUp = thread != null && thread.getIntent() != null;
+            boolean reusedTriage = false;
+            if (followUp) {
+                // Follow-up in a known conversation: keep the thread's intent, only re-check sentiment
+                intentResult = Email.IntentAnalysisResult.builder()
+                        .intent(thread.getIntent())
+                        .confidence(thread.getIntentConfidence())
+                        .reasoning("Inherited from thread " + thread.getId())
+                        .modelUsed(thread.getIntentModelUsed())
+                        .build();
+                try (LlmScheduler.Scope scope = llmScheduler.open(LlmWorkClass.TRIAGE, senderTenant(email));
+                     PipelineMetrics.Stage stage = run.stage(PipelineMetrics.SENTIMENT)) {
+                    sentimentResult = aiService.analyzeSentiment(textForAi(email));
+                    stage.complete(sentimentResult.getModelUsed(), size(sentimentResult.getLlmCalls()));
+                }
+                run.path("follow-up");
+                aiAnalysis = Map.of("inheritedFromThread", thread.getId());
+                log.info("Email {} continues thread {}, reusing intent {}", email.getId(), thread.getId(), thread.getIntent());
+            } else if (duplicate != null && duplicate.hasTriage()) {
+                // Near-duplicate of a recently triaged email: reuse its analysis instead of calling the AI
+                intentResult = duplicate.intent();
+                sentimentResult = duplicate.sentiment();
+                reusedTriage = true;
+                aiAnalysis = Map.of("inheritedFrom", duplicate.emailId(), "hammingDistance", duplicate.distance());
+                run.path("duplicate");
+                log.info("Email {} is a near-duplicate of {} (distance {}), reusing intent {} and sentiment {}",
+                        email.getId(), duplicate.emailId(), duplicate.distance(),
+                        intentResult.getIntent(), sentimentResult.getSentiment());
+            } else {
+                // Analyze sentiment first: its urgency decides how soon intent analysis gets the LLM
+                log.info("Analyzing sentiment for email: {}", email.getId());
+                try (LlmScheduler.Scope scope = llmScheduler.open(LlmWorkClass.TRIAGE, senderTenant(email));
+                     PipelineMetrics.Stage stage = run.stage(PipelineMetrics.SENTIMENT)) {
+                    sentimentResult = aiService.analyzeSentiment(textForAi(email));
+                    stage.complete(sentimentResult.getModelUsed(), size(sentimentResult.getLlmCalls()));
+                }
+                log.info("Sentiment analysis completed for email {}: {} (urgency: {})", 
+                        email.getId(), sentimentResult.getSentiment(), sentimentResult.getUrgency());
+                
+                // Analyze intent
+                log.info("Analyzing intent for email: {}", email.getId());
+                Email.Priority expected = determinePriority(sentimentResult);
+                LlmWorkClass intentClass = expected == Email.Priority.URGENT || expected == Email.Priority.HIGH
+                        ? LlmWorkClass.URGENT_TRIAGE : LlmWorkClass.TRIAGE;
+                try (LlmScheduler.Scope scope = llmScheduler.open(intentClass, senderTenant(email));
+                     PipelineMetrics.Stage stage = run.stage(PipelineMetrics.INTENT)) {
+                    intentResult = aiService.analyzeIntent(email.getSubject(), textForAi(email));
+                    stage.complete(intentResult.getModelUsed(), size(intentResult.getLlmCalls()));
+                }
+                log.info("Intent analysis completed for email {}: {} (confidence: {})", 
+                        email.getId(), intentResult.getIntent(), intentResult.getConfidence());
+            }
             email.setIntent(intentResult.getIntent());
             email.setIntentConfidence(intentResult.getConfidence());
-            log.info("Intent analysis completed for email {}: {} (confidence: {})", 
-                    email.getId(), intentResult.getIntent(), intentResult.getConfidence());
-            
-            // Analyze sentiment
-            log.info("Analyzing sentiment for email: {}", email.getId());
-            Email.SentimentAnalysisResult sentimentResult = aiService.analyzeSentiment(email.getBody());
-            log.info("Sentiment analysis completed for email {}: {} (urgency: {})", 
-                    email.getId(), sentimentResult.getSentiment(), sentimentResult.getUrgency());
+            nearDuplicateIndex.recordTriage(email.getId(), intentResult, sentimentResult);
             
             // Create metadata
             EmailMetadata metadata = EmailMetadata.builder()
@@ -350,19 +678,36 @@ public class EmailServiceImpl implements EmailService {
                     .sentimentScore(sentimentResult.getScore())
                     .urgency(sentimentResult.getUrgency())
                     .customerTier(sentimentResult.getCustomerTier())
-                    .aiModelUsed("gpt-4")
-                    .aiModelVersion("1.0")
+                    .aiModelUsed(intentResult.getModelUsed())
+                    .aiModelVersion(intentResult.getModelVersion())
+                    .sentimentModelUsed(sentimentResult.getModelUsed())
+                    .aiAnalysis(aiAnalysis)
                     .build();
+            if (!reusedTriage) {
+                // A reused analysis still carries the original email's calls; they were paid for once
+                recordLlmCalls(metadata, intentResult.getLlmCalls());
+                recordLlmCalls(metadata, sentimentResult.getLlmCalls());
+            }
             email.setMetadata(metadata);
             
             // Determine priority based on sentiment and urgency
             Email.Priority priority = determinePriority(sentimentResult);
             email.setPriority(priority);
-            log.info("Priority determined for email {}: {}", email.getId(), priority);
+            email.setSlaDeadline(slaService.computeDeadline(priority, email.getIntent(), email.getReceivedAt()));
+            log.info("Priority determined for email {}: {} (SLA deadline: {})", email.getId(), priority, email.getSlaDeadline());
             
-            // Auto-assign to team
+            // Auto-assign to team, keeping follow-ups with whoever already owns the thread
             log.info("Attempting to assign team for email {} with intent: {}", email.getId(), email.getIntent());
-            String assignedTeam = teamAssignmentService.assignTeam(email.getIntent());
+            String assignedTeam;
+            try (PipelineMetrics.Stage stage = run.stage(PipelineMetrics.ASSIGNMENT)) {
+                assignedTeam = followUp && thread.getAssignedTeam() != null
+                        ? thread.getAssignedTeam()
+                        : teamAssignmentService.assignTeam(email.getIntent());
+                stage.complete(null, 0, assignedTeam != null ? "assigned" : "unassigned");
+            }
+            if (followUp && thread.getAssignedUser() != null) {
+                email.setAssignedUser(thread.getAssignedUser());
+            }
             if (assignedTeam != null) {
                 email.setAssignedTeam(assignedTeam);
                 email.setStatus(Email.EmailStatus.ASSIGNED);
@@ -373,19 +718,167 @@ public class EmailServiceImpl implements EmailService {
                 log.warn("No team assigned for email {} with intent: {}", email.getId(), email.getIntent());
             }
             
-            emailRepository.save(email);
+            // Stages up to here; the final save's own time is only in the metrics
+            metadata.setStageDurationsMs(new LinkedHashMap<>(run.durationsMs()));
+            metadata.setProcessingTime(run.elapsedMs() + "ms");
+            try (PipelineMetrics.Stage stage = run.stage(PipelineMetrics.FINAL_SAVE)) {
+                emailRepository.save(email);
+                stage.complete();
+            }
+            slaService.track(email);
+            updateThread(email, thread, true);
+            // Counted once the team is known, so triage cost lands on whoever owns the email
+            if (!reusedTriage) {
+                llmUsageService.record(email, intentResult.getLlmCalls());
+                llmUsageService.record(email, sentimentResult.getLlmCalls());
+            }
+            run.finish(email.getIntent(), "success");
+            eventPublisher.publishEvent(new EmailTriagedEvent(email.getId(), priority));
             
             log.info("Email {} processed successfully. Intent: {}, Team: {}, Status: {}", 
                     email.getId(), email.getIntent(), email.getAssignedTeam(), email.getStatus());
                     
         } catch (Exception e) {
             log.error("Error processing email {}: {}", email.getId(), e.getMessage(), e);
+            run.finish(email.getIntent(), "error");
             email.setStatus(Email.EmailStatus.RECEIVED);
             emailRepository.save(email);
         }
     }
 
-    private Email.Priority determinePriority(Email.SentimentAnalysisResult sentimentResult) {
+    /**
+     * The thread root comes from the first References entry, else from the parent's thread,
+     * else the email starts a new thread keyed on its own Message-ID.
+     */
+    private String resolveThreadId(String messageId, String inReplyTo, List<String> references) {
+        if (references != null) {
+            for (String reference : references) {
+                String root = normalizeMessageId(reference);
+                if (root != null) {
+                    return root;
+                }
+            }
+        }
+        String parentId = normalizeMessageId(inReplyTo);
+        if (parentId != null) {
+            Optional<Email> parent = emailRepository.findByMessageId(inReplyTo.trim());
+            if (parent.isPresent() && parent.get().getThreadId() != null) {
+                return parent.get().getThreadId();
+            }
+            return parentId;
+        }
+        return normalizeMessageId(messageId);
+    }
+
+    private static String normalizeMessageId(String messageId) {
+        if (messageId == null) {
+            return null;
+        }
+        String normalized = messageId.trim();
+        if (normalized.startsWith("<")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.endsWith(">")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        normalized = normalized.trim().toLowerCase();
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    private void updateThread(Email email, EmailThread thread, boolean newEmail) {
+        if (email.getThreadId() == null) {
+            return;
+        }
+        try {
+            if (thread == null) {
+                thread = emailThreadRepository.findById(email.getThreadId()).orElse(null);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            if (thread == null) {
+                thread = EmailThread.builder()
+                        .id(email.getThreadId())
+                        .subject(email.getSubject())
+                        .rootEmailId(email.getId())
+                        .emailCount(0)
+                        .createdAt(now)
+                        .build();
+            }
+            if (newEmail) {
+                thread.setEmailCount((thread.getEmailCount() != null ? thread.getEmailCount() : 0) + 1);
+                thread.setLastEmailId(email.getId());
+            }
+            if (email.getIntent() != null && email.getIntent() != Email.EmailIntent.UNKNOWN) {
+                thread.setIntent(email.getIntent());
+                thread.setIntentConfidence(email.getIntentConfidence());
+                if (email.getMetadata() != null) {
+                    thread.setIntentModelUsed(email.getMetadata().getAiModelUsed());
+                }
+            }
+            if (email.getAssignedTeam() != null) {
+                thread.setAssignedTeam(email.getAssignedTeam());
+            }
+            if (email.getAssignedUser() != null) {
+                thread.setAssignedUser(email.getAssignedUser());
+            }
+            thread.setUpdatedAt(now);
+            emailThreadRepository.save(thread);
+        } catch (Exception e) {
+            log.error("Error updating thread {} for email {}: {}", email.getThreadId(), email.getId(), e.getMessage(), e);
+        }
+    }
+
+    private static String textForAi(Email email) {
+        return email.getCleanBody() != null ? email.getCleanBody() : email.getBody();
+    }
+
+    private Map<String, String> highlight(Email email, List<String> terms) {
+        Map<String, String> highlights = new LinkedHashMap<>();
+        putIfPresent(highlights, "subject", SearchHighlighter.highlight(email.getSubject(), terms));
+        putIfPresent(highlights, "from", SearchHighlighter.highlight(email.getFrom(), terms));
+        putIfPresent(highlights, "body", SearchHighlighter.highlight(textForAi(email), terms));
+        if (email.getNotes() != null) {
+            for (EmailNote note : email.getNotes()) {
+                String snippet = SearchHighlighter.highlight(note.getContent(), terms);
+                if (snippet != null) {
+                    highlights.put("notes", snippet);
+                    break;
+                }
+            }
+        }
+        return highlights;
+    }
+
+    private static void putIfPresent(Map<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + type.getSimpleName() + " value: " + value);
+        }
+    }
+
+    private static int size(List<?> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    /**
+     * Fair-queueing tenant for triage calls, so one sender domain cannot starve the others
+     */
+    private static String senderTenant(Email email) {
+        String from = email.getFrom();
+        int at = from != null ? from.lastIndexOf('@') : -1;
+        return at >= 0 ? "domain:" + from.substring(at + 1).replace(">", "").trim().toLowerCase(Locale.ROOT) : "domain:unknown";
+    }
+
+    static Email.Priority determinePriority(Email.SentimentAnalysisResult sentimentResult) {
         if ("urgent".equals(sentimentResult.getUrgency()) || 
             ("negative".equals(sentimentResult.getSentiment()) && sentimentResult.getScore() < -0.5)) {
             return Email.Priority.URGENT;
@@ -399,7 +892,7 @@ public class EmailServiceImpl implements EmailService {
         }
     }
 
-    private EmailResponse convertToEmailResponse(Email email) {
+    static EmailResponse convertToEmailResponse(Email email) {
         EmailResponse.EmailMetadataResponse metadataResponse = null;
         if (email.getMetadata() != null) {
             metadataResponse = EmailResponse.EmailMetadataResponse.builder()
@@ -409,15 +902,18 @@ public class EmailServiceImpl implements EmailService {
                     .urgency(email.getMetadata().getUrgency())
                     .customerTier(email.getMetadata().getCustomerTier())
                     .processingTime(email.getMetadata().getProcessingTime())
+                    .stageDurationsMs(email.getMetadata().getStageDurationsMs())
                     .build();
         }
         
         return EmailResponse.builder()
                 .id(email.getId())
                 .messageId(email.getMessageId())
+                .threadId(email.getThreadId())
                 .from(email.getFrom())
                 .to(email.getTo())
                 .subject(email.getSubject())
+                .attachments(email.getAttachments())
                 .status(email.getStatus())
                 .intent(email.getIntent())
                 .intentConfidence(email.getIntentConfidence())
@@ -428,6 +924,7 @@ public class EmailServiceImpl implements EmailService {
                 .processedAt(email.getProcessedAt())
                 .aiGeneratedReply(email.getAiGeneratedReply())
                 .finalReply(email.getFinalReply())
+                .duplicateClusterId(email.getDuplicateClusterId())
                 .metadata(metadataResponse)
                 .build();
     }
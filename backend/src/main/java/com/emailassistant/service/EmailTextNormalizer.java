@@ -0,0 +1,343 @@
+package com.emailassistant.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass clean-up of an inbound email into the text the AI stages actually need.
+ *
+ * HTML is reduced to text on the fly (tags, scripts and styles dropped, entities decoded,
+ * block elements turned into line breaks) and the resulting lines are filtered as they are
+ * produced: quoted lines and everything after a reply header or signature delimiter are cut,
+ * a trailing sign-off followed only by name, title or contact lines is dropped, and whitespace
+ * is collapsed. Nothing is buffered beyond the current line and a short pending signature.
+ */
+@Service
+@Slf4j
+public class EmailTextNormalizer {
+
+    private static final Pattern REPLY_HEADER = Pattern.compile(
+            "^(on|le|am|el|op|il)\\s.{4,200}\\s(wrote|a \u00e9crit|schrieb|escribi\u00f3|schreef|ha scritto)\\s?:$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SEPARATOR = Pattern.compile(
+            "^(-{2,}\\s*(original message|forwarded message)\\s*-{2,}|_{10,}|={10,})$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern MOBILE_FOOTER = Pattern.compile(
+            "^(sent from my |get outlook for |sent from (mail|yahoo mail|outlook) for ).*",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SIGN_OFF = Pattern.compile(
+            "^(best|best regards|kind regards|warm regards|regards|many thanks|thanks|thank you|thanks again"
+                    + "|cheers|sincerely|yours sincerely|yours truly|respectfully|br)[,.!]?$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONTACT = Pattern.compile(
+            "^.*(@|www\\.|https?://).*$|^(\\p{L}{1,10}\\.?:\\s?)?\\+?[\\d\\s().-]{7,}$",
+            Pattern.CASE_INSENSITIVE);
+    // Words a name, job title or company line may contain without a capital
+    private static final Pattern NAME_CONNECTOR = Pattern.compile(
+            "^(of|and|at|for|the|de|da|van|von|der|le|la|&|\\||-|\u2013)$");
+
+    @Value("${ai.prompt.max-input-chars:100000}")
+    private int maxInputChars;
+
+    @Value("${ai.prompt.max-signature-lines:6}")
+    private int maxSignatureLines;
+
+    @Value("${ai.prompt.max-signature-line-length:60}")
+    private int maxSignatureLineLength;
+
+    /**
+     * Clean text for an email, preferring the HTML part when present
+     */
+    public String normalize(String body, String htmlBody) {
+        boolean html = htmlBody != null && !htmlBody.isBlank();
+        String source = html ? htmlBody : body;
+        if (source == null || source.isBlank()) {
+            return body;
+        }
+        LineFilter filter = new LineFilter();
+        int limit = Math.min(source.length(), maxInputChars);
+        if (html) {
+            new HtmlScanner(source, limit, filter).run();
+        } else {
+            for (int i = 0; i < limit && !filter.done; i++) {
+                filter.accept(source.charAt(i));
+            }
+        }
+        String cleaned = filter.finish();
+        // Never hand the AI stages less than the sender wrote when filtering removes everything
+        if (cleaned.isEmpty()) {
+            return body != null ? body.strip() : "";
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Normalized email text from {} to {} chars", source.length(), cleaned.length());
+        }
+        return cleaned;
+    }
+
+    /**
+     * Receives text one character at a time and keeps only the lines worth sending to the LLM
+     */
+    private final class LineFilter {
+        private final StringBuilder out = new StringBuilder();
+        private final StringBuilder line = new StringBuilder(128);
+        private final StringBuilder pendingSignature = new StringBuilder();
+        private int pendingLines = -1;
+        private boolean blankPending;
+        private boolean done;
+
+        void accept(char ch) {
+            if (done) {
+                return;
+            }
+            if (ch == '\n') {
+                endLine();
+            } else if (ch == '\r') {
+                // Line breaks are normalised on '\n'
+            } else if (Character.isWhitespace(ch) || ch == '\u00a0') {
+                if (line.length() > 0 && line.charAt(line.length() - 1) != ' ') {
+                    line.append(' ');
+                }
+            } else if (!Character.isISOControl(ch) && ch != '\u200b' && ch != '\ufeff') {
+                line.append(ch);
+            }
+        }
+
+        void endLine() {
+            if (done) {
+                return;
+            }
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == ' ') {
+                line.setLength(length - 1);
+            }
+            String text = line.toString();
+            line.setLength(0);
+
+            if (text.isEmpty()) {
+                blankPending = true;
+                return;
+            }
+            if (text.charAt(0) == '>') {
+                return;
+            }
+            String lower = text.toLowerCase(Locale.ROOT);
+            if (text.equals("--") || REPLY_HEADER.matcher(text).matches() || SEPARATOR.matcher(text).matches()
+                    || MOBILE_FOOTER.matcher(lower).matches()
+                    || (blankPending && out.length() > 0 && lower.startsWith("from:") && text.contains("@"))) {
+                done = true;
+                return;
+            }
+
+            if (pendingLines >= 0) {
+                // Inside a suspected signature: give it back if it turns out to be real content
+                if (text.length() > maxSignatureLineLength || ++pendingLines > maxSignatureLines
+                        || !looksLikeSignature(text)) {
+                    appendLine(pendingSignature, false);
+                    pendingSignature.setLength(0);
+                    pendingLines = -1;
+                } else {
+                    if (pendingSignature.length() > 0) {
+                        pendingSignature.append('\n');
+                    }
+                    pendingSignature.append(text);
+                    blankPending = false;
+                    return;
+                }
+            }
+            if (out.length() > 0 && SIGN_OFF.matcher(text).matches()) {
+                pendingSignature.append(text);
+                pendingLines = 0;
+                blankPending = false;
+                return;
+            }
+            appendLine(text, blankPending);
+            blankPending = false;
+        }
+
+        /**
+         * A name, job title, company or contact line, as found under a sign-off
+         */
+        private static boolean looksLikeSignature(String text) {
+            if (CONTACT.matcher(text).matches()) {
+                return true;
+            }
+            String[] words = text.split(" ");
+            if (words.length > 6) {
+                return false;
+            }
+            for (String word : words) {
+                String bare = word.replaceAll("[,.]+$", "");
+                if (bare.isEmpty() || NAME_CONNECTOR.matcher(bare).matches()) {
+                    continue;
+                }
+                if (!Character.isUpperCase(bare.codePointAt(0)) || !bare.chars().allMatch(ch -> Character.isLetter(ch)
+                        || ch == '.' || ch == '\'' || ch == '-' || ch == '&' || ch == '/')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void appendLine(CharSequence text, boolean paragraphBreak) {
+            if (out.length() > 0) {
+                out.append(paragraphBreak ? "\n\n" : "\n");
+            }
+            out.append(text);
+        }
+
+        String finish() {
+            if (line.length() > 0) {
+                endLine();
+            }
+            // A pending block only ever holds a sign-off and signature-like lines, so it is dropped
+            return out.toString();
+        }
+    }
+
+    /**
+     * Minimal HTML-to-text reader feeding a {@link LineFilter}; tolerant of malformed markup
+     */
+    private static final class HtmlScanner {
+        private final String html;
+        private final int limit;
+        private final LineFilter sink;
+        private int pos;
+        private int quoteDepth;
+
+        HtmlScanner(String html, int limit, LineFilter sink) {
+            this.html = html;
+            this.limit = limit;
+            this.sink = sink;
+        }
+
+        void run() {
+            while (pos < limit && !sink.done) {
+                char ch = html.charAt(pos);
+                if (ch == '<') {
+                    readTag();
+                } else if (ch == '&') {
+                    emit(readEntity());
+                } else {
+                    // Source line breaks inside HTML are just whitespace
+                    emit(ch == '\n' || ch == '\r' ? ' ' : ch);
+                    pos++;
+                }
+            }
+        }
+
+        private void emit(char ch) {
+            if (quoteDepth == 0) {
+                sink.accept(ch);
+            }
+        }
+
+        private void readTag() {
+            if (html.startsWith("<!--", pos)) {
+                int end = html.indexOf("-->", pos + 4);
+                pos = end < 0 ? limit : end + 3;
+                return;
+            }
+            int end = html.indexOf('>', pos);
+            if (end < 0) {
+                pos = limit;
+                return;
+            }
+            String tag = html.substring(pos + 1, end).toLowerCase(Locale.ROOT);
+            pos = end + 1;
+
+            boolean closing = tag.startsWith("/");
+            String name = tagName(closing ? tag.substring(1) : tag);
+            switch (name) {
+                case "script", "style", "head", "title" -> {
+                    if (!closing) {
+                        pos = indexOfClosingTag(name);
+                    }
+                }
+                case "blockquote" -> {
+                    quoteDepth = Math.max(0, quoteDepth + (closing ? -1 : 1));
+                    newline();
+                }
+                case "br" -> newline();
+                case "p", "div", "tr", "li", "ul", "ol", "table", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "pre" -> {
+                    // Quoted history and client signatures are marked by well-known classes
+                    if (!closing && (tag.contains("gmail_quote") || tag.contains("gmail_signature")
+                            || tag.contains("moz-cite-prefix") || tag.contains("moz-signature")
+                            || tag.contains("divrplyfwdmsg") || tag.contains("outlook_signature"))) {
+                        sink.endLine();
+                        sink.done = true;
+                        return;
+                    }
+                    newline();
+                }
+                case "td", "th" -> emit(' ');
+                default -> {
+                }
+            }
+        }
+
+        private void newline() {
+            if (quoteDepth == 0) {
+                sink.endLine();
+            }
+        }
+
+        private char readEntity() {
+            int end = html.indexOf(';', pos);
+            if (end < 0 || end - pos > 10) {
+                pos++;
+                return '&';
+            }
+            String entity = html.substring(pos + 1, end);
+            pos = end + 1;
+            switch (entity) {
+                case "amp":
+                    return '&';
+                case "lt":
+                    return '<';
+                case "gt":
+                    return '>';
+                case "quot":
+                    return '"';
+                case "apos", "#39":
+                    return '\'';
+                case "nbsp":
+                    return ' ';
+                default:
+                    break;
+            }
+            try {
+                if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                    return (char) Integer.parseInt(entity.substring(2), 16);
+                }
+                if (entity.startsWith("#")) {
+                    return (char) Integer.parseInt(entity.substring(1));
+                }
+            } catch (NumberFormatException ignored) {
+                // Fall through to a plain space
+            }
+            return ' ';
+        }
+
+        private int indexOfClosingTag(String name) {
+            String closing = "</" + name;
+            for (int i = pos; i + closing.length() <= limit; i++) {
+                if (html.regionMatches(true, i, closing, 0, closing.length())) {
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        private static String tagName(String tag) {
+            int i = 0;
+            while (i < tag.length() && Character.isLetterOrDigit(tag.charAt(i))) {
+                i++;
+            }
+            return tag.substring(0, i);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+
+/**
+ * Published once an email has been analysed, prioritised and saved
+ */
+public record EmailTriagedEvent(String emailId, Email.Priority priority) {
+}
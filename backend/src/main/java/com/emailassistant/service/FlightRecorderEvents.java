@@ -0,0 +1,107 @@
+package com.emailassistant.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom JDK Flight Recorder events, recorded next to the JVM's own GC, lock and I/O events so a
+ * slow email can be lined up against what else the process was doing at the time. Each event is
+ * timed with {@code begin()}/{@code commit()} on the thread doing the work; none carries email text.
+ */
+public final class FlightRecorderEvents {
+
+    private static final String CATEGORY = "Email Assistant";
+
+    private FlightRecorderEvents() {
+    }
+
+    @Name("com.emailassistant.LlmCall")
+    @Label("LLM Call")
+    @Description("One attempt against an LLM provider, hedges included")
+    @Category({CATEGORY, "LLM"})
+    @StackTrace(false)
+    public static class LlmCall extends Event {
+
+        @Label("Provider")
+        public String provider;
+
+        @Label("Model")
+        public String model;
+
+        @Label("Tier")
+        public String tier;
+
+        @Label("Hedge")
+        public boolean hedge;
+
+        @Label("Prompt Characters")
+        @Description("System instruction and prompt")
+        public int promptChars;
+
+        @Label("Input Tokens")
+        public int inputTokens;
+
+        @Label("Output Tokens")
+        public int outputTokens;
+
+        @Label("Status")
+        @Description("success, failed, or superseded when another attempt answered first")
+        public String status;
+
+        @Label("Error")
+        public String error;
+    }
+
+    @Name("com.emailassistant.MongoCommand")
+    @Label("Mongo Command")
+    @Description("A command sent to MongoDB by a repository or template")
+    @Category({CATEGORY, "MongoDB"})
+    @StackTrace(false)
+    public static class MongoCommand extends Event {
+
+        @Label("Command")
+        public String command;
+
+        @Label("Collection")
+        public String collection;
+
+        @Label("Database")
+        public String database;
+
+        @Label("Request Id")
+        public int requestId;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+
+        @Label("Error")
+        public String error;
+    }
+
+    @Name("com.emailassistant.PipelineStage")
+    @Label("Pipeline Stage")
+    @Description("One stage of an email's triage, or a reply generation")
+    @Category({CATEGORY, "Pipeline"})
+    @StackTrace(false)
+    public static class PipelineStage extends Event {
+
+        @Label("Stage")
+        public String stage;
+
+        @Label("Message Id")
+        public String messageId;
+
+        @Label("Model")
+        public String model;
+
+        @Label("Outcome")
+        public String outcome;
+
+        @Label("LLM Calls")
+        public int llmCalls;
+    }
+}
@@ -0,0 +1,131 @@
+package com.emailassistant.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Always-on JDK Flight Recorder recording, rolled on disk by age and size, so the minutes around a
+ * latency spike can be pulled out after the fact instead of reproducing it under a profiler.
+ *
+ * The JDK's "default" settings cost around one percent; the custom {@link FlightRecorderEvents}
+ * are added on top, with Mongo commands below a threshold left out to keep the volume down.
+ */
+@Service
+@Slf4j
+public class FlightRecorderService {
+
+    private static final String RECORDING_NAME = "email-assistant-continuous";
+
+    @Value("${diagnostics.flight-recorder.enabled:true}")
+    private boolean enabled;
+
+    // JDK settings file: "default" (continuous use) or "profile" (more detail, more overhead)
+    @Value("${diagnostics.flight-recorder.settings:default}")
+    private String settings;
+
+    @Value("${diagnostics.flight-recorder.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    @Value("${diagnostics.flight-recorder.max-size-mb:250}")
+    private long maxSizeMb;
+
+    @Value("${diagnostics.flight-recorder.mongo-threshold-ms:5}")
+    private long mongoThresholdMs;
+
+    private volatile Recording recording;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Continuous flight recording disabled");
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("Flight recorder is not available in this JVM; continuous recording not started");
+            return;
+        }
+        try {
+            Recording continuous = new Recording(Configuration.getConfiguration(settings));
+            continuous.setName(RECORDING_NAME);
+            continuous.setToDisk(true);
+            continuous.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+            continuous.setMaxSize(maxSizeMb * 1024 * 1024);
+            continuous.enable(FlightRecorderEvents.LlmCall.class);
+            continuous.enable(FlightRecorderEvents.PipelineStage.class);
+            continuous.enable(FlightRecorderEvents.MongoCommand.class).withThreshold(Duration.ofMillis(mongoThresholdMs));
+            continuous.start();
+            recording = continuous;
+            log.info("Continuous flight recording started with {} settings, keeping {} minutes / {} MB",
+                    settings, maxAgeMinutes, maxSizeMb);
+        } catch (IOException | ParseException e) {
+            log.warn("Could not load flight recorder settings {}: {}", settings, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Recording current = recording;
+        recording = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Copy the last {@code minutes} of the recording to a temporary .jfr file, for JDK Mission
+     * Control or {@code jfr print}. The caller deletes the file.
+     */
+    public Path dump(int minutes) throws IOException {
+        if (recording == null) {
+            throw new RuntimeException("Continuous flight recording is not running");
+        }
+        Instant end = Instant.now();
+        Instant start = end.minus(Duration.ofMinutes(Math.min(minutes, maxAgeMinutes)));
+        Path file = Files.createTempFile("email-assistant-", ".jfr");
+        // A snapshot is a stopped copy of the chunks on disk, so it can be read while recording goes on
+        try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot();
+             InputStream stream = snapshot.getStream(start, end)) {
+            if (stream != null) {
+                Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        log.info("Dumped last {} minutes of flight recording ({} bytes)", minutes, Files.size(file));
+        return file;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        Recording current = recording;
+        statistics.put("running", current != null);
+        if (current != null) {
+            statistics.put("name", current.getName());
+            statistics.put("settings", settings);
+            statistics.put("startedAt", current.getStartTime());
+            statistics.put("maxAgeMinutes", maxAgeMinutes);
+            statistics.put("maxSizeMb", maxSizeMb);
+            statistics.put("sizeBytes", current.getSize());
+            statistics.put("mongoThresholdMs", mongoThresholdMs);
+        }
+        return statistics;
+    }
+}
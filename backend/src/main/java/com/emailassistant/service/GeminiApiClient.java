@@ -1,54 +1,343 @@
 package com.emailassistant.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
 @Component
-public class GeminiApiClient {
+public class GeminiApiClient implements LlmProvider, AutoCloseable {
+
+    private static final int INITIAL_BUFFER_BYTES = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_BYTES = 256 * 1024;
 
+    public static final String GEMINI_BASE_URL = "https://generativelanguage.googleapis.com/v1beta/";
+
+    private final String baseUrl;
     private final String apiKey;
-    private final String geminiUrl = "https://generativelanguage.googleapis.com/v1beta/models/gemini-1.5-flash:generateContent?key=";
+    private final Map<ModelTier, String> models = new EnumMap<>(ModelTier.class);
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private volatile GeminiContextCache contextCache;
+
+    // Request bodies are serialised into a per-thread buffer that is reused across calls
+    private final ThreadLocal<RequestBuffer> requestBuffers = ThreadLocal.withInitial(RequestBuffer::new);
 
     public GeminiApiClient(String apiKey) {
+        this(apiKey, 8, 64, "gemini-1.5-flash-8b", "gemini-1.5-flash", "gemini-1.5-pro");
+    }
+
+    public GeminiApiClient(String apiKey, int maxConcurrency, int queueCapacity,
+                           String fastModel, String standardModel, String strongModel) {
+        this(GEMINI_BASE_URL, apiKey, maxConcurrency, queueCapacity, fastModel, standardModel, strongModel);
+    }
+
+    /**
+     * Client against another generateContent endpoint, e.g. a regional proxy or a local fake server
+     */
+    public GeminiApiClient(String baseUrl, String apiKey, int maxConcurrency, int queueCapacity,
+                           String fastModel, String standardModel, String strongModel) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
         this.apiKey = apiKey;
+        this.models.put(ModelTier.FAST, fastModel);
+        this.models.put(ModelTier.STANDARD, standardModel);
+        this.models.put(ModelTier.STRONG, strongModel);
         this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
+        this.jsonFactory = AiResponseParser.MAPPER.getFactory();
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public String getName() {
+        return "gemini";
+    }
+
+    @Override
+    public String getModel(ModelTier tier) {
+        return models.get(tier);
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
     }
 
-    public String getChatCompletion(String prompt) {
-        String url = geminiUrl + apiKey;
+    /**
+     * Register static system instructions as Gemini cachedContents, renewed in the background
+     */
+    public void enableContextCache(Duration ttl, Duration renewBefore, Duration idleTimeout, int minTokens) {
+        contextCache = new GeminiContextCache(baseUrl, apiKey, ttl, renewBefore, idleTimeout, minTokens);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        GeminiContextCache cache = contextCache;
+        return cache != null ? cache.getStatistics() : Map.of();
+    }
+
+    @Override
+    public LlmCompletion getChatCompletion(ModelTier tier, String systemInstruction, String prompt) {
+        return generateContent(models.get(tier), systemInstruction, prompt, null);
+    }
 
-        String requestBody = "{ \"contents\": [ { \"parts\": [ { \"text\": \"" 
-                + prompt.replace("\"", "\\\"") + "\" } ] } ] }";
+    /**
+     * Call Gemini in JSON mode, constraining the answer to the given responseSchema
+     */
+    @Override
+    public LlmCompletion getJsonCompletion(ModelTier tier, String systemInstruction, String prompt, String responseSchema) {
+        return generateContent(models.get(tier), systemInstruction, prompt, responseSchema);
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    private LlmCompletion generateContent(String model, String systemInstruction, String prompt, String responseSchema) {
+        GeminiContextCache cache = contextCache;
+        String cachedContent = cache != null ? cache.lookup(model, systemInstruction) : null;
+        if (cachedContent == null) {
+            return generateContent(model, null, systemInstruction, prompt, responseSchema);
+        }
+        try {
+            return generateContent(model, cachedContent, null, prompt, responseSchema);
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.Forbidden
+                 | HttpClientErrorException.BadRequest e) {
+            // The cache expired or was deleted under us; send the instruction inline this time
+            cache.invalidate(model, systemInstruction);
+            return generateContent(model, null, systemInstruction, prompt, responseSchema);
+        }
+    }
 
-        HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
+    private LlmCompletion generateContent(String model, String cachedContent, String systemInstruction,
+                                          String prompt, String responseSchema) {
+        String url = baseUrl + "models/" + model + ":generateContent?key=" + apiKey;
+        RequestBuffer body = requestBuffers.get();
+        try {
+            writeRequest(body, cachedContent, systemInstruction, prompt, responseSchema);
+            LlmCompletion completion = restTemplate.execute(url, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        request.getHeaders().setContentLength(body.size());
+                        body.writeTo(request.getBody());
+                    },
+                    response -> {
+                        if (response.getStatusCode() != HttpStatus.OK) {
+                            throw new RuntimeException("Gemini API call failed: " + response.getStatusCode());
+                        }
+                        return readResponse(response.getBody());
+                    });
+            if (completion == null || completion.text() == null) {
+                throw new RuntimeException("Gemini response contained no candidate text");
+            }
+            return completion;
+        } finally {
+            body.release();
+        }
+    }
 
-        ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
+    /**
+     * Serialise the generateContent request; the schema is already JSON and is written raw.
+     * A cached content reference replaces the inline system instruction.
+     */
+    void writeRequest(RequestBuffer body, String cachedContent, String systemInstruction,
+                      String prompt, String responseSchema) {
+        body.reset();
+        try (JsonGenerator generator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            if (cachedContent != null) {
+                generator.writeStringField("cachedContent", cachedContent);
+            } else if (systemInstruction != null) {
+                generator.writeObjectFieldStart("systemInstruction");
+                generator.writeArrayFieldStart("parts");
+                generator.writeStartObject();
+                generator.writeStringField("text", systemInstruction);
+                generator.writeEndObject();
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeArrayFieldStart("contents");
+            generator.writeStartObject();
+            generator.writeStringField("role", "user");
+            generator.writeArrayFieldStart("parts");
+            generator.writeStartObject();
+            generator.writeStringField("text", prompt);
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            if (responseSchema != null) {
+                generator.writeObjectFieldStart("generationConfig");
+                generator.writeStringField("responseMimeType", "application/json");
+                generator.writeFieldName("responseSchema");
+                generator.writeRawValue(responseSchema);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize Gemini request", e);
+        }
+    }
 
-        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-            try {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode candidates = root.path("candidates");
-                if (candidates.isArray() && candidates.size() > 0) {
-                    JsonNode textNode = candidates.get(0).path("content").path("parts").get(0).path("text");
-                    if (!textNode.isMissingNode()) {
-                        return textNode.asText();
+    String readCandidateText(InputStream in) throws IOException {
+        return readResponse(in).text();
+    }
+
+    /**
+     * Stream through the response, keeping only candidates[0].content.parts[*].text and the
+     * usageMetadata token counts. Thinking tokens are billed as output, so they count as completion.
+     */
+    LlmCompletion readResponse(InputStream in) throws IOException {
+        StringBuilder text = null;
+        Integer promptTokens = null;
+        Integer cachedTokens = null;
+        Integer completionTokens = null;
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected Gemini response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("candidates".equals(field) && value == JsonToken.START_ARRAY) {
+                    if (parser.nextToken() == JsonToken.START_OBJECT) {
+                        text = readCandidate(parser);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if ("usageMetadata".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String usageField = parser.currentName();
+                        JsonToken usageValue = parser.nextToken();
+                        if (usageValue != JsonToken.VALUE_NUMBER_INT) {
+                            parser.skipChildren();
+                        } else if ("promptTokenCount".equals(usageField)) {
+                            promptTokens = parser.getIntValue();
+                        } else if ("cachedContentTokenCount".equals(usageField)) {
+                            cachedTokens = parser.getIntValue();
+                        } else if ("candidatesTokenCount".equals(usageField) || "thoughtsTokenCount".equals(usageField)) {
+                            completionTokens = (completionTokens != null ? completionTokens : 0) + parser.getIntValue();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (promptTokens != null && completionTokens == null) {
+            // A response cut off before any candidate token still reports its prompt
+            completionTokens = 0;
+        }
+        return new LlmCompletion(text != null ? text.toString() : null, promptTokens, cachedTokens, completionTokens);
+    }
+
+    private static StringBuilder readCandidate(JsonParser parser) throws IOException {
+        StringBuilder text = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String contentField = parser.currentName();
+                    JsonToken contentValue = parser.nextToken();
+                    if ("parts".equals(contentField) && contentValue == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String partField = parser.currentName();
+                                JsonToken partValue = parser.nextToken();
+                                if ("text".equals(partField) && partValue == JsonToken.VALUE_STRING) {
+                                    if (text == null) {
+                                        text = new StringBuilder(parser.getTextLength());
+                                    }
+                                    text.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
                     }
                 }
-                return response.getBody(); // fallback raw JSON
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to parse Gemini response", e);
+            } else {
+                parser.skipChildren();
             }
         }
+        return text;
+    }
+
+    @Override
+    public void close() {
+        GeminiContextCache cache = contextCache;
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Growable byte buffer that hands its backing array straight to the HTTP body
+     */
+    static final class RequestBuffer extends OutputStream {
+        private byte[] bytes = new byte[INITIAL_BUFFER_BYTES];
+        private int size;
 
-        throw new RuntimeException("Gemini API call failed: " + response.getStatusCode());
+        @Override
+        public void write(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        /**
+         * Drop an unusually large array so one huge prompt does not pin memory on the thread
+         */
+        void release() {
+            size = 0;
+            if (bytes.length > MAX_RETAINED_BUFFER_BYTES) {
+                bytes = new byte[INITIAL_BUFFER_BYTES];
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
     }
 }
@@ -0,0 +1,245 @@
+package com.emailassistant.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gemini cachedContents for the static system instructions. Lookups never block on the network:
+ * the first call for an instruction registers the cache in the background and is sent with an
+ * inline systemInstruction meanwhile. A daemon thread extends caches that are still in use shortly
+ * before they expire and deletes the ones that have gone idle.
+ *
+ * Gemini rejects caches below a minimum token count, so shorter instructions are never registered
+ * and always go inline.
+ */
+@Slf4j
+final class GeminiContextCache implements AutoCloseable {
+
+    private static final int MAX_ENTRIES = 64;
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(30);
+    private static final Duration FAILURE_BACKOFF = Duration.ofMinutes(10);
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final Duration ttl;
+    private final Duration renewBefore;
+    private final Duration idleTimeout;
+    private final int minTokens;
+    private final RestTemplate restTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong renewed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    GeminiContextCache(String baseUrl, String apiKey, Duration ttl, Duration renewBefore,
+                       Duration idleTimeout, int minTokens) {
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.ttl = ttl;
+        this.renewBefore = renewBefore;
+        this.idleTimeout = idleTimeout;
+        this.minTokens = minTokens;
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory();
+        requestFactory.setReadTimeout(Duration.ofSeconds(30));
+        // The JDK client is used because renewal needs PATCH
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gemini-context-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(10, Math.min(60, renewBefore.toSeconds() / 2));
+        scheduler.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Name of a live cache holding this instruction for the model, or null to send it inline
+     */
+    String lookup(String model, String systemInstruction) {
+        if (systemInstruction == null) {
+            return null;
+        }
+        Key key = new Key(model, systemInstruction);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= MAX_ENTRIES) {
+                return null;
+            }
+            entry = entries.computeIfAbsent(key,
+                    k -> new Entry(TokenEstimator.estimate(systemInstruction) >= minTokens));
+        }
+        if (!entry.cacheable) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        entry.lastUsedAt = now;
+        String name = entry.name;
+        if (name != null && now < entry.expiresAt - EXPIRY_MARGIN.toMillis()) {
+            hits.incrementAndGet();
+            return name;
+        }
+        misses.incrementAndGet();
+        if (now >= entry.retryAfter && entry.creating.compareAndSet(false, true)) {
+            Entry pending = entry;
+            scheduler.execute(() -> create(key, pending));
+        }
+        return null;
+    }
+
+    /**
+     * Forget a cache Gemini no longer recognises; the next lookup registers a new one
+     */
+    void invalidate(String model, String systemInstruction) {
+        Entry entry = entries.get(new Key(model, systemInstruction));
+        if (entry != null) {
+            entry.name = null;
+        }
+    }
+
+    Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("contextCaches", entries.values().stream().filter(entry -> entry.name != null).count());
+        statistics.put("contextCacheHits", hits.get());
+        statistics.put("contextCacheMisses", misses.get());
+        statistics.put("contextCachesCreated", created.get());
+        statistics.put("contextCachesRenewed", renewed.get());
+        statistics.put("contextCacheFailures", failures.get());
+        return statistics;
+    }
+
+    private void create(Key key, Entry entry) {
+        try {
+            ObjectNode body = AiResponseParser.MAPPER.createObjectNode();
+            body.put("model", "models/" + key.model());
+            body.putObject("systemInstruction").putArray("parts").addObject().put("text", key.instruction());
+            body.put("ttl", ttl.toSeconds() + "s");
+            JsonNode response = restTemplate.exchange(baseUrl + "cachedContents?key=" + apiKey, HttpMethod.POST,
+                    jsonEntity(body), JsonNode.class).getBody();
+            if (response == null || !response.hasNonNull("name")) {
+                throw new RestClientException("cachedContents response without a name");
+            }
+            entry.expiresAt = expiryOf(response);
+            entry.name = response.get("name").asText();
+            created.incrementAndGet();
+            log.info("Registered Gemini context cache {} for {} ({} tokens)",
+                    entry.name, key.model(), TokenEstimator.estimate(key.instruction()));
+        } catch (RestClientException e) {
+            failures.incrementAndGet();
+            entry.retryAfter = System.currentTimeMillis() + FAILURE_BACKOFF.toMillis();
+            log.warn("Could not register Gemini context cache for {}, sending the instruction inline: {}",
+                    key.model(), e.getMessage());
+        } finally {
+            entry.creating.set(false);
+        }
+    }
+
+    /**
+     * Extend caches that are about to expire and drop the ones nobody has used for a while
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        entries.forEach((key, entry) -> {
+            String name = entry.name;
+            if (name == null) {
+                return;
+            }
+            try {
+                if (now - entry.lastUsedAt > idleTimeout.toMillis()) {
+                    entry.name = null;
+                    delete(name);
+                    log.info("Deleted idle Gemini context cache {}", name);
+                } else if (entry.expiresAt - now < renewBefore.toMillis()) {
+                    ObjectNode body = AiResponseParser.MAPPER.createObjectNode().put("ttl", ttl.toSeconds() + "s");
+                    JsonNode response = restTemplate.exchange(
+                            baseUrl + name + "?updateMask=ttl&key=" + apiKey,
+                            HttpMethod.PATCH, jsonEntity(body), JsonNode.class).getBody();
+                    entry.expiresAt = expiryOf(response);
+                    renewed.incrementAndGet();
+                }
+            } catch (HttpClientErrorException.NotFound e) {
+                entry.name = null;
+            } catch (RestClientException e) {
+                failures.incrementAndGet();
+                log.warn("Gemini context cache maintenance failed for {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    private void delete(String name) {
+        // Cache names are already resource paths, e.g. cachedContents/abc123
+        restTemplate.delete(baseUrl + name + "?key=" + apiKey);
+    }
+
+    private long expiryOf(JsonNode response) {
+        if (response != null && response.hasNonNull("expireTime")) {
+            return Instant.parse(response.get("expireTime").asText()).toEpochMilli();
+        }
+        return System.currentTimeMillis() + ttl.toMillis();
+    }
+
+    private static HttpEntity<String> jsonEntity(ObjectNode body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body.toString(), headers);
+    }
+
+    /**
+     * Stop renewing and delete the caches this instance registered, so they stop accruing storage
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        entries.values().forEach(entry -> {
+            String name = entry.name;
+            if (name != null) {
+                entry.name = null;
+                try {
+                    delete(name);
+                } catch (RestClientException e) {
+                    log.debug("Could not delete Gemini context cache {}: {}", name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private record Key(String model, String instruction) {
+    }
+
+    private static final class Entry {
+        private final boolean cacheable;
+        private final AtomicBoolean creating = new AtomicBoolean();
+        private volatile String name;
+        private volatile long expiresAt;
+        private volatile long lastUsedAt;
+        private volatile long retryAfter;
+
+        private Entry(boolean cacheable) {
+            this.cacheable = cacheable;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.emailassistant.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hashed hierarchical timing wheel (Varghese &amp; Lauck).
+ *
+ * Level {@code i} has {@code wheelSize} slots, each spanning {@code wheelSize^i} ticks.
+ * Scheduling and cancellation are O(1); advancing the clock costs O(levels) per tick plus
+ * the number of timers that cascade or expire. Timers beyond the top level's horizon are
+ * parked in its furthest slot and re-placed when that slot cascades.
+ *
+ * Not thread-safe; callers are expected to guard access.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] spans;
+    private final Slot<T>[][] levels;
+    private final Map<String, Timer<T>> timersByKey = new HashMap<>();
+
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, int levelCount, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2 || levelCount < 1) {
+            throw new IllegalArgumentException("Invalid timing wheel dimensions");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.spans = new long[levelCount];
+        this.levels = new Slot[levelCount][wheelSize];
+
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            spans[level] = span;
+            for (int slot = 0; slot < wheelSize; slot++) {
+                levels[level][slot] = new Slot<>();
+            }
+            span = Math.multiplyExact(span, wheelSize);
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    /**
+     * Schedule (or reschedule) a timer for the given key. Returns false if the deadline has
+     * already passed, in which case nothing is stored and the caller should act immediately.
+     */
+    public boolean schedule(String key, long deadlineMs, T payload) {
+        cancel(key);
+        long deadlineTick = Math.floorDiv(deadlineMs, tickMs);
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+        Timer<T> timer = new Timer<>(key, deadlineTick, payload);
+        timersByKey.put(key, timer);
+        place(timer);
+        return true;
+    }
+
+    /**
+     * Cancel the timer for the given key, if any
+     */
+    public boolean cancel(String key) {
+        Timer<T> timer = timersByKey.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        if (timer.slot != null) {
+            timer.slot.unlink(timer);
+        }
+        return true;
+    }
+
+    /**
+     * Advance the clock to {@code nowMs}, handing every expired payload to {@code expired}.
+     * The callback must not schedule or cancel timers on this wheel.
+     */
+    public void advanceTo(long nowMs, Consumer<T> expired) {
+        long targetTick = Math.floorDiv(nowMs, tickMs);
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade from the top down so timers land in the right lower slot this tick
+            for (int level = spans.length - 1; level > 0; level--) {
+                if (currentTick % spans[level] == 0) {
+                    Timer<T> timer = levels[level][slotIndex(currentTick, level)].drain();
+                    while (timer != null) {
+                        Timer<T> next = timer.next;
+                        timer.next = null;
+                        if (timer.deadlineTick <= currentTick) {
+                            expire(timer, expired);
+                        } else {
+                            place(timer);
+                        }
+                        timer = next;
+                    }
+                }
+            }
+            Timer<T> timer = levels[0][slotIndex(currentTick, 0)].drain();
+            while (timer != null) {
+                Timer<T> next = timer.next;
+                timer.next = null;
+                expire(timer, expired);
+                timer = next;
+            }
+        }
+    }
+
+    public boolean contains(String key) {
+        return timersByKey.containsKey(key);
+    }
+
+    public int size() {
+        return timersByKey.size();
+    }
+
+    public long getCurrentTimeMs() {
+        return currentTick * tickMs;
+    }
+
+    private void expire(Timer<T> timer, Consumer<T> expired) {
+        timersByKey.remove(timer.key);
+        timer.slot = null;
+        expired.accept(timer.payload);
+    }
+
+    private void place(Timer<T> timer) {
+        int top = spans.length - 1;
+        for (int level = 0; level <= top; level++) {
+            long distance = timer.deadlineTick / spans[level] - currentTick / spans[level];
+            if (distance < wheelSize) {
+                levels[level][slotIndex(timer.deadlineTick, level)].link(timer);
+                return;
+            }
+        }
+        // Beyond the horizon: park in the furthest top-level slot and re-place on cascade
+        long parkedTick = (currentTick / spans[top] + wheelSize - 1) * spans[top];
+        levels[top][slotIndex(parkedTick, top)].link(timer);
+    }
+
+    private int slotIndex(long tick, int level) {
+        return (int) ((tick / spans[level]) % wheelSize);
+    }
+
+    private static final class Timer<T> {
+        private final String key;
+        private final long deadlineTick;
+        private final T payload;
+        private Slot<T> slot;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(String key, long deadlineTick, T payload) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Slot<T> {
+        private Timer<T> head;
+
+        private void link(Timer<T> timer) {
+            timer.slot = this;
+            timer.prev = null;
+            timer.next = head;
+            if (head != null) {
+                head.prev = timer;
+            }
+            head = timer;
+        }
+
+        private void unlink(Timer<T> timer) {
+            if (timer.prev != null) {
+                timer.prev.next = timer.next;
+            } else {
+                head = timer.next;
+            }
+            if (timer.next != null) {
+                timer.next.prev = timer.prev;
+            }
+            timer.prev = null;
+            timer.next = null;
+            timer.slot = null;
+        }
+
+        /**
+         * Detach and return the whole chain; entries keep their {@code next} links
+         */
+        private Timer<T> drain() {
+            Timer<T> chain = head;
+            head = null;
+            for (Timer<T> timer = chain; timer != null; timer = timer.next) {
+                timer.slot = null;
+                timer.prev = null;
+            }
+            return chain;
+        }
+    }
+}
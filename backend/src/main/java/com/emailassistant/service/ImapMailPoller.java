@@ -0,0 +1,371 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.EmailRequest;
+import com.emailassistant.model.MailboxSyncState;
+import com.emailassistant.repository.MailboxSyncStateRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pulls mail from an IMAP folder into the ingestion pipeline. After catching up from the folder's
+ * high-water UID it waits in IMAP IDLE for new mail, re-issuing IDLE before servers drop it, and
+ * falls back to polling every {@code email.processing.poll-interval} ms when the server has no
+ * IDLE. New messages are fetched by UID range in batches of {@code email.processing.batch-size}:
+ * envelope and structure in one round trip, then each part as it is parsed. Each batch is
+ * ingested in order and the high-water UID is saved after it, so a restart resumes after the last
+ * ingested batch and a batch retried after a crash is deduplicated by Message-ID.
+ *
+ * Works against any IMAP server, e.g. a local GreenMail on port 3143 with protocol imap.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ImapMailPoller {
+
+    private final MimeMessageParser mimeMessageParser;
+    private final EmailService emailService;
+    private final MailboxSyncStateRepository mailboxSyncStateRepository;
+
+    @Value("${email.imap.enabled:false}")
+    private boolean enabled;
+
+    @Value("${email.imap.protocol:imaps}")
+    private String protocol;
+
+    @Value("${email.imap.host:localhost}")
+    private String host;
+
+    @Value("${email.imap.port:993}")
+    private int port;
+
+    @Value("${email.imap.username:}")
+    private String username;
+
+    @Value("${email.imap.password:}")
+    private String password;
+
+    @Value("${email.imap.folder:INBOX}")
+    private String folderName;
+
+    @Value("${email.imap.idle:true}")
+    private boolean idle;
+
+    // Servers may drop an IDLE after 30 minutes of silence (RFC 2177)
+    @Value("${email.imap.idle-refresh-minutes:9}")
+    private long idleRefreshMinutes;
+
+    // new = only mail arriving from the first start on, all = the whole folder
+    @Value("${email.imap.initial-sync:new}")
+    private String initialSync;
+
+    @Value("${email.imap.reconnect-delay-ms:5000}")
+    private long reconnectDelayMs;
+
+    @Value("${email.processing.poll-interval:30000}")
+    private long pollIntervalMs;
+
+    @Value("${email.processing.batch-size:10}")
+    private int batchSize;
+
+    private volatile boolean running;
+    private Thread worker;
+    private ScheduledExecutorService keepAlive;
+    private volatile IMAPFolder openFolder;
+
+    private volatile boolean connected;
+    private volatile boolean idleSupported;
+    private volatile String lastError;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong ingested = new AtomicLong();
+    private final AtomicLong parseFailures = new AtomicLong();
+    private final AtomicLong ingestFailures = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "imap-idle-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker = new Thread(this::run, "imap-poller");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Inbound IMAP connector started for {}@{}:{}/{}", username, host, port, folderName);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        IMAPFolder folder = openFolder;
+        if (folder != null) {
+            // Ends a pending IDLE so the worker sees the flag
+            interruptIdle(folder);
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+        if (keepAlive != null) {
+            keepAlive.shutdownNow();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                session();
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                lastError = e.getMessage();
+                reconnects.incrementAndGet();
+                log.error("IMAP connector failed, reconnecting in {} ms: {}", reconnectDelayMs, e.getMessage(), e);
+                sleep(reconnectDelayMs);
+            }
+        }
+    }
+
+    private void session() throws MessagingException {
+        Properties properties = new Properties();
+        properties.put("mail." + protocol + ".connectiontimeout", "30000");
+        // Reads block for the whole IDLE, so the socket timeout has to outlast a refresh period
+        properties.put("mail." + protocol + ".timeout", String.valueOf(TimeUnit.MINUTES.toMillis(idleRefreshMinutes + 1)));
+        properties.put("mail." + protocol + ".partialfetch", "true");
+        properties.put("mail." + protocol + ".fetchsize", "65536");
+        properties.put("mail." + protocol + ".peek", "true");
+        Session session = Session.getInstance(properties);
+
+        try (IMAPStore store = (IMAPStore) session.getStore(protocol)) {
+            store.connect(host, port, username, password);
+            idleSupported = store.hasCapability("IDLE");
+            IMAPFolder folder = (IMAPFolder) store.getFolder(folderName);
+            folder.open(Folder.READ_ONLY);
+            openFolder = folder;
+            connected = true;
+            lastError = null;
+            log.info("Connected to {}/{} (IDLE {})", host, folderName, idleSupported ? "supported" : "not supported, polling");
+            try {
+                while (running) {
+                    sync(folder);
+                    waitForMail(folder);
+                }
+            } finally {
+                connected = false;
+                openFolder = null;
+                if (folder.isOpen()) {
+                    folder.close(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ingest everything above the high-water UID, batch by batch, until the folder is drained
+     */
+    private void sync(IMAPFolder folder) throws MessagingException {
+        MailboxSyncState state = syncState(folder);
+        while (running) {
+            // "n:*" always matches the newest message, even below n
+            Message[] candidates = folder.getMessagesByUID(state.getLastUid() + 1, UIDFolder.LASTUID);
+            List<Message> fresh = new ArrayList<>(candidates.length);
+            for (Message message : candidates) {
+                if (message != null && folder.getUID(message) > state.getLastUid()) {
+                    fresh.add(message);
+                }
+            }
+            if (fresh.isEmpty()) {
+                return;
+            }
+            for (int from = 0; from < fresh.size() && running; from += batchSize) {
+                ingestBatch(folder, fresh.subList(from, Math.min(from + batchSize, fresh.size())), state);
+            }
+        }
+    }
+
+    private void ingestBatch(IMAPFolder folder, List<Message> batch, MailboxSyncState state) throws MessagingException {
+        Message[] messages = batch.toArray(new Message[0]);
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.ENVELOPE);
+        profile.add(FetchProfile.Item.CONTENT_INFO);
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        profile.add("Message-ID");
+        profile.add("In-Reply-To");
+        profile.add("References");
+        folder.fetch(messages, profile);
+
+        List<EmailRequest> requests = new ArrayList<>(messages.length);
+        long highestUid = state.getLastUid();
+        for (Message message : messages) {
+            long uid = folder.getUID(message);
+            highestUid = Math.max(highestUid, uid);
+            try {
+                String fallbackMessageId = "<" + uid + "." + state.getUidValidity() + "." + username + "@" + host + ">";
+                requests.add(mimeMessageParser.parse((MimeMessage) message, fallbackMessageId));
+            } catch (Exception e) {
+                // A message that cannot be parsed now never will be; skip it rather than stall the folder
+                parseFailures.incrementAndGet();
+                log.error("Skipping unparseable message UID {} in {}: {}", uid, folderName, e.getMessage(), e);
+            }
+        }
+
+        ingest(requests);
+        batches.incrementAndGet();
+        state.setLastUid(highestUid);
+        state.setMessagesIngested(state.getMessagesIngested() + requests.size());
+        state.setLastSyncAt(LocalDateTime.now());
+        mailboxSyncStateRepository.save(state);
+        log.info("Ingested {} messages from {} up to UID {}", requests.size(), folderName, highestUid);
+    }
+
+    /**
+     * Ingest a batch; if it fails, retry message by message and skip the ones that still fail,
+     * unless every one does, which points at the pipeline rather than the messages
+     */
+    private void ingest(List<EmailRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        try {
+            emailService.processIncomingEmails(requests);
+            ingested.addAndGet(requests.size());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} messages failed, retrying one by one: {}", requests.size(), e.getMessage());
+        }
+        RuntimeException lastFailure = null;
+        int failures = 0;
+        for (EmailRequest request : requests) {
+            try {
+                emailService.processIncomingEmails(List.of(request));
+                ingested.incrementAndGet();
+            } catch (RuntimeException e) {
+                failures++;
+                lastFailure = e;
+                log.error("Skipping message {} that failed ingestion: {}", request.getMessageId(), e.getMessage(), e);
+            }
+        }
+        ingestFailures.addAndGet(failures);
+        if (failures == requests.size()) {
+            // Keep the high-water UID where it is; the batch is retried after reconnecting
+            throw lastFailure;
+        }
+    }
+
+    private void waitForMail(IMAPFolder folder) throws MessagingException {
+        if (!running) {
+            return;
+        }
+        if (!idle || !idleSupported) {
+            sleep(pollIntervalMs);
+            return;
+        }
+        ScheduledFuture<?> refresh = keepAlive.schedule(() -> interruptIdle(folder), idleRefreshMinutes, TimeUnit.MINUTES);
+        try {
+            // Returns on the first untagged response, e.g. EXISTS for new mail, or when interrupted
+            folder.idle(true);
+        } finally {
+            refresh.cancel(false);
+        }
+    }
+
+    /**
+     * Any command on the folder from another thread makes the IDLE end first
+     */
+    private void interruptIdle(IMAPFolder folder) {
+        try {
+            folder.doCommand(imap -> {
+                imap.simpleCommand("NOOP", null);
+                return null;
+            });
+        } catch (MessagingException e) {
+            log.debug("Could not interrupt IMAP IDLE: {}", e.getMessage());
+        }
+    }
+
+    private MailboxSyncState syncState(IMAPFolder folder) throws MessagingException {
+        String id = username + "@" + host + "/" + folderName;
+        long uidValidity = folder.getUIDValidity();
+        MailboxSyncState state = mailboxSyncStateRepository.findById(id).orElse(null);
+        if (state != null && state.getUidValidity() != null && state.getUidValidity() == uidValidity) {
+            return state;
+        }
+        long lastUid;
+        if (state != null) {
+            // The server renumbered the folder; rescan it and let Message-ID deduplication skip what is stored
+            log.warn("UIDVALIDITY of {} changed from {} to {}, rescanning the folder", id, state.getUidValidity(), uidValidity);
+            lastUid = 0;
+        } else {
+            lastUid = "all".equalsIgnoreCase(initialSync) ? 0 : Math.max(0, folder.getUIDNext() - 1);
+        }
+        MailboxSyncState fresh = MailboxSyncState.builder()
+                .id(id)
+                .uidValidity(uidValidity)
+                .lastUid(lastUid)
+                .messagesIngested(state != null && state.getMessagesIngested() != null ? state.getMessagesIngested() : 0L)
+                .lastSyncAt(LocalDateTime.now())
+                .build();
+        return mailboxSyncStateRepository.save(fresh);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("mailbox", username + "@" + host + "/" + folderName);
+        statistics.put("connected", connected);
+        statistics.put("mode", idle && idleSupported ? "idle" : "poll");
+        statistics.put("batches", batches.get());
+        statistics.put("ingested", ingested.get());
+        statistics.put("parseFailures", parseFailures.get());
+        statistics.put("ingestFailures", ingestFailures.get());
+        statistics.put("reconnects", reconnects.get());
+        statistics.put("lastError", lastError);
+        if (enabled) {
+            mailboxSyncStateRepository.findById(username + "@" + host + "/" + folderName).ifPresent(state -> {
+                statistics.put("uidValidity", state.getUidValidity());
+                statistics.put("lastUid", state.getLastUid());
+                statistics.put("lastSyncAt", state.getLastSyncAt());
+            });
+        }
+        return statistics;
+    }
+}
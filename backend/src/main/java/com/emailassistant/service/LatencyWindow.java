@@ -0,0 +1,54 @@
+package com.emailassistant.service;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the most recent call latencies with cheap percentile lookups.
+ *
+ * Percentiles come from a sorted snapshot that is refreshed only after a batch of new samples,
+ * so reading the p95 on every call does not sort on every call.
+ */
+final class LatencyWindow {
+
+    private static final int RESORT_EVERY = 16;
+
+    private final long[] samples;
+    private long[] sorted = new long[0];
+    private int next;
+    private int count;
+    private int unsorted;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long latencyMs) {
+        samples[next] = latencyMs;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        unsorted++;
+    }
+
+    /**
+     * Latency at the given percentile (0..1), or -1 when nothing has been recorded yet
+     */
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        // Re-sort after a batch of new samples, or on every call while the window is still warming up
+        if (unsorted >= RESORT_EVERY || (sorted.length < RESORT_EVERY && sorted.length < count)) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            unsorted = 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    synchronized int count() {
+        return count;
+    }
+}
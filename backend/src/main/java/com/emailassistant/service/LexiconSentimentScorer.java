@@ -0,0 +1,225 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sentiment and urgency scorer backed by a compact lexicon compiled into a single
+ * {@link PhraseAutomaton}. Scanning keeps its state in a per-thread accumulator, so the
+ * hot path allocates nothing but the returned result.
+ */
+@Service
+@Slf4j
+public class LexiconSentimentScorer implements SentimentScorer {
+
+    public static final String MODEL_NAME = "lexicon-v1";
+
+    private static final int SENTIMENT = 0;
+    private static final int NEGATOR = 1;
+    private static final int INTENSIFIER = 2;
+    private static final int URGENT = 3;
+    private static final int DEADLINE = 4;
+    private static final int LEGAL = 5;
+    private static final int REPEAT = 6;
+
+    private static final List<String> CATEGORY_NAMES =
+            List.of("SENTIMENT", "NEGATOR", "INTENSIFIER", "URGENT", "DEADLINE", "LEGAL", "REPEAT");
+
+    @Value("${ai.local-sentiment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.local-sentiment.lexicon:lexicon/sentiment-urgency.txt}")
+    private String lexiconPath;
+
+    @Value("${ai.local-sentiment.ambiguity-margin:0.3}")
+    private double ambiguityMargin;
+
+    private PhraseAutomaton automaton;
+    private int[] categories;
+    private double[] weights;
+    private int[] phraseWords;
+
+    private final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(Accumulator::new);
+
+    @PostConstruct
+    public void init() throws IOException {
+        List<String> phrases = new ArrayList<>();
+        List<Integer> categoryList = new ArrayList<>();
+        List<Double> weightList = new ArrayList<>();
+
+        ClassPathResource resource = new ClassPathResource(lexiconPath);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\|");
+                if (parts.length != 3) {
+                    log.warn("Skipping malformed lexicon line: {}", line);
+                    continue;
+                }
+                int category = CATEGORY_NAMES.indexOf(parts[1].trim());
+                if (category < 0) {
+                    log.warn("Skipping lexicon line with unknown category: {}", line);
+                    continue;
+                }
+                phrases.add(parts[0].trim());
+                categoryList.add(category);
+                weightList.add(Double.parseDouble(parts[2].trim()));
+            }
+        }
+
+        automaton = PhraseAutomaton.compile(phrases);
+        categories = categoryList.stream().mapToInt(Integer::intValue).toArray();
+        weights = weightList.stream().mapToDouble(Double::doubleValue).toArray();
+        phraseWords = phrases.stream().mapToInt(phrase -> phrase.trim().split("[^\\p{L}\\p{N}'\u2019]+").length).toArray();
+        log.info("Loaded sentiment lexicon with {} phrases ({} automaton states)", phrases.size(), automaton.stateCount());
+    }
+
+    @Override
+    public Email.SentimentAnalysisResult score(String content) {
+        if (!enabled || content == null || content.isBlank()) {
+            return null;
+        }
+
+        Accumulator acc = accumulators.get();
+        acc.reset();
+        automaton.scan(content, acc);
+
+        int letters = 0;
+        int upper = 0;
+        int nonAscii = 0;
+        int exclamations = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char ch = content.charAt(i);
+            if (Character.isLetter(ch)) {
+                letters++;
+                if (Character.isUpperCase(ch)) {
+                    upper++;
+                }
+                if (ch > 127) {
+                    nonAscii++;
+                }
+            } else if (ch == '!') {
+                exclamations++;
+            }
+        }
+
+        // Non-English text and mixed signals are left to the LLM
+        if (letters > 0 && nonAscii * 10 > letters * 3) {
+            return null;
+        }
+        double score = Math.tanh(acc.sentiment / 4.0);
+        if (acc.positiveHits > 0 && acc.negativeHits > 0 && Math.abs(score) < ambiguityMargin) {
+            return null;
+        }
+        // Nothing in the lexicon matched: no evidence either way, whatever the length
+        if (acc.positiveHits + acc.negativeHits == 0 && acc.urgencyPoints == 0) {
+            return null;
+        }
+
+        double urgencyPoints = acc.urgencyPoints;
+        if (exclamations >= 3) {
+            urgencyPoints += 1;
+        }
+        if (letters >= 20 && upper * 10 >= letters * 6) {
+            urgencyPoints += 1;
+        }
+
+        String sentiment = score >= 0.2 ? "positive" : score <= -0.2 ? "negative" : "neutral";
+        String urgency = urgencyPoints >= 6 ? "urgent"
+                : urgencyPoints >= 3 ? "high"
+                : urgencyPoints >= 1 ? "medium"
+                : "low";
+
+        return Email.SentimentAnalysisResult.builder()
+                .sentiment(sentiment)
+                .score(score)
+                .urgency(urgency)
+                .modelUsed(MODEL_NAME)
+                .build();
+    }
+
+    @Override
+    public String getModelName() {
+        return MODEL_NAME;
+    }
+
+    /**
+     * Per-thread scan state; reused across calls so matching does not allocate
+     */
+    private final class Accumulator implements PhraseAutomaton.MatchListener {
+        private double sentiment;
+        private double urgencyPoints;
+        private int positiveHits;
+        private int negativeHits;
+        private int lastNegator;
+        private int lastIntensifier;
+        private double intensity;
+
+        private void reset() {
+            sentiment = 0.0;
+            urgencyPoints = 0.0;
+            positiveHits = 0;
+            negativeHits = 0;
+            lastNegator = Integer.MIN_VALUE / 2;
+            lastIntensifier = Integer.MIN_VALUE / 2;
+            intensity = 1.0;
+        }
+
+        @Override
+        public void onMatch(int phraseId, int wordIndex) {
+            int start = wordIndex - phraseWords[phraseId] + 1;
+            boolean negated = start - lastNegator >= 1 && start - lastNegator <= 3;
+            switch (categories[phraseId]) {
+                case NEGATOR -> lastNegator = wordIndex;
+                case INTENSIFIER -> {
+                    lastIntensifier = wordIndex;
+                    intensity = weights[phraseId];
+                }
+                case SENTIMENT -> {
+                    double weight = weights[phraseId];
+                    if (lastIntensifier == start - 1) {
+                        weight *= intensity;
+                    }
+                    if (negated) {
+                        weight *= -0.5;
+                    }
+                    if (weight > 0) {
+                        positiveHits++;
+                    } else if (weight < 0) {
+                        negativeHits++;
+                    }
+                    sentiment += weight;
+                }
+                case URGENT, DEADLINE -> {
+                    if (!negated) {
+                        urgencyPoints += weights[phraseId];
+                    }
+                }
+                case LEGAL -> {
+                    urgencyPoints += weights[phraseId];
+                    sentiment -= 1.5;
+                    negativeHits++;
+                }
+                case REPEAT -> urgencyPoints += weights[phraseId];
+                default -> {
+                }
+            }
+        }
+    }
+}
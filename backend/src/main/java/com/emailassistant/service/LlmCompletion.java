@@ -0,0 +1,16 @@
+package com.emailassistant.service;
+
+/**
+ * Text of a completion with the token counts the provider reported for it. Counts are null when
+ * the response carried none; cached tokens are the part of the prompt served from a context cache.
+ */
+public record LlmCompletion(String text, Integer promptTokens, Integer cachedTokens, Integer completionTokens) {
+
+    public static LlmCompletion of(String text) {
+        return new LlmCompletion(text, null, null, null);
+    }
+
+    public boolean hasUsage() {
+        return promptTokens != null && completionTokens != null;
+    }
+}
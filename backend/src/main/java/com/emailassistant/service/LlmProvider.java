@@ -0,0 +1,60 @@
+package com.emailassistant.service;
+
+import java.util.Map;
+
+/**
+ * A large language model backend that the AI layer can route prompts to
+ */
+public interface LlmProvider {
+
+    /**
+     * Short provider name used in configuration and metrics, e.g. "gemini"
+     */
+    String getName();
+
+    /**
+     * Model this provider uses for the given tier
+     */
+    String getModel(ModelTier tier);
+
+    /**
+     * Free-text completion. The system instruction is the static part of the prompt, shared by
+     * every call for the same task, which providers may cache; it can be null. The result carries
+     * the token usage the provider reported, if any.
+     */
+    LlmCompletion getChatCompletion(ModelTier tier, String systemInstruction, String prompt);
+
+    /**
+     * Completion constrained to JSON matching the given (Gemini-style) response schema
+     */
+    LlmCompletion getJsonCompletion(ModelTier tier, String systemInstruction, String prompt, String responseSchema);
+
+    default String getModel() {
+        return getModel(ModelTier.STANDARD);
+    }
+
+    default String getChatCompletion(String prompt) {
+        return getChatCompletion(ModelTier.STANDARD, null, prompt).text();
+    }
+
+    default String getJsonCompletion(String prompt, String responseSchema) {
+        return getJsonCompletion(ModelTier.STANDARD, null, prompt, responseSchema).text();
+    }
+
+    /**
+     * Maximum number of calls in flight against this provider
+     */
+    int getMaxConcurrency();
+
+    /**
+     * Calls allowed to wait for a free slot before the provider is treated as saturated
+     */
+    int getQueueCapacity();
+
+    /**
+     * Provider-specific counters merged into the router statistics
+     */
+    default Map<String, Object> getStatistics() {
+        return Map.of();
+    }
+}
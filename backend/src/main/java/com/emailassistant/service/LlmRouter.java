@@ -0,0 +1,472 @@
+package com.emailassistant.service;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Function;
+
+/**
+ * Routes LLM calls across the configured {@link LlmProvider}s.
+ *
+ * Every provider gets its own bounded pool, so a slow or saturated provider cannot starve the
+ * others. Calls go to the primary provider first; if it has not answered by its recent p95
+ * latency a hedge is fired at the next provider (or, with a single provider, at a second
+ * replica of it) and whichever answers first wins. Failures and rejections fail over to the
+ * next provider straight away. Hedges are capped at a fraction of all calls so that a slow
+ * period cannot double the load on the providers.
+ *
+ * Callers pick a {@link ModelTier}; each provider maps it to its own model, and latency is
+ * tracked per provider and tier so a slow strong model does not skew the fast tier's hedge delay.
+ * Results carry the token counts the provider reported (estimated when it reported none) and
+ * their cost from the configured per-model pricing, with cached prompt tokens at a discount.
+ * Every call first takes a permit from the {@link LlmScheduler}, which orders waiting calls by
+ * priority class and tenant. A call is traced as one span covering the permit wait, with a child
+ * span per attempt carried over to the provider's pool thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LlmRouter {
+
+    private final List<LlmProvider> providers;
+    private final LlmScheduler scheduler;
+    private final Tracer tracer;
+
+    @Value("${llm.primary:gemini}")
+    private String primaryProvider;
+
+    @Value("${llm.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${llm.hedging.enabled:true}")
+    private boolean hedgingEnabled;
+
+    @Value("${llm.hedging.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${llm.hedging.min-delay-ms:250}")
+    private long minHedgeDelayMs;
+
+    @Value("${llm.hedging.max-delay-ms:10000}")
+    private long maxHedgeDelayMs;
+
+    @Value("${llm.hedging.min-samples:20}")
+    private int minSamples;
+
+    @Value("${llm.hedging.max-hedge-ratio:0.1}")
+    private double maxHedgeRatio;
+
+    @Value("${llm.hedging.same-provider-replica:true}")
+    private boolean sameProviderReplica;
+
+    // model=inputUsdPerMillionTokens/outputUsdPerMillionTokens, comma separated
+    @Value("${llm.pricing:gemini-1.5-flash-8b=0.0375/0.15,gemini-1.5-flash=0.075/0.30,gemini-1.5-pro=1.25/5.00,gpt-4o-mini=0.15/0.60,gpt-4o=2.50/10.00}")
+    private String pricing;
+
+    // Share of the input price charged for prompt tokens served from a context cache
+    @Value("${llm.cached-input-price-factor:0.25}")
+    private double cachedInputPriceFactor;
+
+    private final Map<String, double[]> pricePerMillionTokens = new HashMap<>();
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    // Answers that lost the race are billed all the same
+    private final AtomicLong supersededTokens = new AtomicLong();
+    private final DoubleAdder supersededCostUsd = new DoubleAdder();
+
+    @PostConstruct
+    public void init() {
+        for (LlmProvider provider : providers) {
+            Lane lane = new Lane(provider);
+            if (provider.getName().equals(primaryProvider)) {
+                lanes.add(0, lane);
+            } else {
+                lanes.add(lane);
+            }
+        }
+        if (lanes.isEmpty()) {
+            throw new IllegalStateException("No LLM providers configured");
+        }
+        for (String entry : pricing.split(",")) {
+            String[] parts = entry.trim().split("[=/]");
+            if (parts.length == 3) {
+                pricePerMillionTokens.put(parts[0].trim(),
+                        new double[] {Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim())});
+            } else if (!entry.isBlank()) {
+                log.warn("Ignoring malformed LLM pricing entry: {}", entry);
+            }
+        }
+        scheduler.start(lanes.get(0).provider.getMaxConcurrency());
+        log.info("LLM router initialised with providers {} (primary: {}, hedging: {})",
+                lanes.stream().map(lane -> lane.provider.getName()).toList(), lanes.get(0).provider.getName(), hedgingEnabled);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(lane -> lane.executor.shutdownNow());
+    }
+
+    /**
+     * Free-text completion at the given tier from whichever provider answers first
+     */
+    public Result chat(ModelTier tier, String systemInstruction, String prompt) {
+        return execute(tier, systemInstruction, prompt,
+                provider -> provider.getChatCompletion(tier, systemInstruction, prompt));
+    }
+
+    /**
+     * JSON-mode completion at the given tier from whichever provider answers first
+     */
+    public Result json(ModelTier tier, String systemInstruction, String prompt, String responseSchema) {
+        return execute(tier, systemInstruction, prompt,
+                provider -> provider.getJsonCompletion(tier, systemInstruction, prompt, responseSchema));
+    }
+
+    private Result execute(ModelTier tier, String systemInstruction, String prompt,
+                           Function<LlmProvider, LlmCompletion> request) {
+        Span span = tracer.nextSpan().name("llm.call").tag("llm.tier", tier.name()).start();
+        try (Tracer.SpanInScope scope = tracer.withSpan(span);
+             LlmScheduler.Permit permit = scheduler.acquire()) {
+            span.event("permit-acquired");
+            Result result = dispatch(tier, systemInstruction, prompt, request);
+            span.tag("llm.provider", result.provider())
+                    .tag("llm.model", result.model())
+                    .tag("llm.hedged", result.hedged())
+                    .tag("llm.input_tokens", result.inputTokens())
+                    .tag("llm.cached_tokens", result.cachedTokens())
+                    .tag("llm.output_tokens", result.outputTokens());
+            return result;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private Result dispatch(ModelTier tier, String systemInstruction, String prompt,
+                            Function<LlmProvider, LlmCompletion> request) {
+        long callNumber = calls.incrementAndGet();
+        int inputTokens = TokenEstimator.estimate(prompt)
+                + (systemInstruction != null ? TokenEstimator.estimate(systemInstruction) : 0);
+        int promptChars = prompt.length() + (systemInstruction != null ? systemInstruction.length() : 0);
+        Call call = new Call(tier, inputTokens, promptChars, request, tracer.currentSpan());
+        if (!call.launchNext()) {
+            throw new RuntimeException("All LLM providers are saturated");
+        }
+        try {
+            long hedgeDelay = hedgeDelayMs(tier);
+            if (hedgingEnabled && hedgeDelay < requestTimeoutMs) {
+                try {
+                    return call.winner.get(hedgeDelay, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (hedgesFired.get() < maxHedgeRatio * callNumber && call.launchHedge()) {
+                        hedgesFired.incrementAndGet();
+                        log.debug("LLM call exceeded {} ms, hedging", hedgeDelay);
+                    }
+                }
+                return call.winner.get(requestTimeoutMs - hedgeDelay, TimeUnit.MILLISECONDS);
+            }
+            return call.winner.get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            call.cancelAll();
+            throw new RuntimeException("LLM call timed out after " + requestTimeoutMs + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            call.cancelAll();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for LLM", e);
+        }
+    }
+
+    /**
+     * Whether the primary provider is using less than the given share of its slots with nothing
+     * queued; background work checks this so it never competes with live traffic
+     */
+    public boolean hasSpareCapacity(double maxUtilisation) {
+        Lane primary = lanes.get(0);
+        return primary.executor.getQueue().isEmpty()
+                && primary.executor.getActiveCount() < primary.provider.getMaxConcurrency() * maxUtilisation;
+    }
+
+    /**
+     * Hedge once the primary passes its recent tail latency; before enough samples exist, wait the maximum
+     */
+    private long hedgeDelayMs(ModelTier tier) {
+        LatencyWindow window = lanes.get(0).latencies.get(tier);
+        if (window.count() < minSamples) {
+            return maxHedgeDelayMs;
+        }
+        return Math.max(minHedgeDelayMs, Math.min(maxHedgeDelayMs, window.percentile(hedgePercentile)));
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("calls", calls.get());
+        statistics.put("hedgesFired", hedgesFired.get());
+        statistics.put("hedgesWon", hedgesWon.get());
+        statistics.put("supersededTokens", supersededTokens.get());
+        statistics.put("supersededCostUsd", supersededCostUsd.sum());
+        Map<ModelTier, Long> hedgeDelays = new EnumMap<>(ModelTier.class);
+        for (ModelTier tier : ModelTier.values()) {
+            hedgeDelays.put(tier, hedgeDelayMs(tier));
+        }
+        statistics.put("currentHedgeDelayMs", hedgeDelays);
+        List<Map<String, Object>> providerStatistics = new ArrayList<>();
+        for (Lane lane : lanes) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", lane.provider.getName());
+            entry.put("maxConcurrency", lane.provider.getMaxConcurrency());
+            entry.put("active", lane.executor.getActiveCount());
+            entry.put("queued", lane.executor.getQueue().size());
+            entry.put("succeeded", lane.succeeded.get());
+            entry.put("failed", lane.failed.get());
+            entry.put("rejected", lane.rejected.get());
+            Map<ModelTier, Map<String, Object>> tiers = new EnumMap<>(ModelTier.class);
+            for (ModelTier tier : ModelTier.values()) {
+                LatencyWindow window = lane.latencies.get(tier);
+                Map<String, Object> tierEntry = new LinkedHashMap<>();
+                tierEntry.put("model", lane.provider.getModel(tier));
+                tierEntry.put("samples", window.count());
+                tierEntry.put("p50Ms", window.percentile(0.5));
+                tierEntry.put("p95Ms", window.percentile(0.95));
+                tiers.put(tier, tierEntry);
+            }
+            entry.put("tiers", tiers);
+            entry.putAll(lane.provider.getStatistics());
+            providerStatistics.add(entry);
+        }
+        statistics.put("providers", providerStatistics);
+        return statistics;
+    }
+
+    private double cost(String model, int inputTokens, int cachedTokens, int outputTokens) {
+        double[] price = pricePerMillionTokens.get(model);
+        if (price == null) {
+            return 0.0;
+        }
+        double input = (inputTokens - cachedTokens) * price[0] + cachedTokens * price[0] * cachedInputPriceFactor;
+        return (input + outputTokens * price[1]) / 1_000_000.0;
+    }
+
+    /**
+     * Answer of a routed call, the provider and model that produced it, its token counts and cost.
+     * {@code inputTokens} includes {@code cachedTokens}; {@code usageReported} is false when the
+     * counts are estimates because the provider sent none.
+     */
+    public record Result(String text, String provider, String model, ModelTier tier, long latencyMs,
+                         boolean hedged, int inputTokens, int cachedTokens, int outputTokens,
+                         boolean usageReported, double costUsd) {
+    }
+
+    /**
+     * One provider with its own bounded worker pool and latency history
+     */
+    private static final class Lane {
+        private final LlmProvider provider;
+        private final ThreadPoolExecutor executor;
+        private final Map<ModelTier, LatencyWindow> latencies = new EnumMap<>(ModelTier.class);
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Lane(LlmProvider provider) {
+            this.provider = provider;
+            for (ModelTier tier : ModelTier.values()) {
+                latencies.put(tier, new LatencyWindow(512));
+            }
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    provider.getMaxConcurrency(), provider.getMaxConcurrency(), 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, provider.getQueueCapacity())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "llm-" + provider.getName() + "-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Attempts belonging to one logical call; the first successful attempt completes {@code winner}
+     */
+    private final class Call {
+        private final ModelTier tier;
+        private final int inputTokens;
+        private final int promptChars;
+        private final Function<LlmProvider, LlmCompletion> request;
+        // Span of the caller; attempts run on pool threads, so their spans are parented explicitly
+        private final Span parent;
+        private final CompletableFuture<Result> winner = new CompletableFuture<>();
+        private final List<Future<?>> attempts = new ArrayList<>(2);
+        private int nextLane;
+        private int pending;
+        private boolean replicaUsed;
+        private Throwable lastError;
+
+        private Call(ModelTier tier, int inputTokens, int promptChars, Function<LlmProvider, LlmCompletion> request,
+                     Span parent) {
+            this.tier = tier;
+            this.inputTokens = inputTokens;
+            this.promptChars = promptChars;
+            this.request = request;
+            this.parent = parent;
+        }
+
+        /**
+         * Start an attempt on the next provider that accepts work
+         */
+        private synchronized boolean launchNext() {
+            while (nextLane < lanes.size()) {
+                if (submit(lanes.get(nextLane++), false)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Start a hedge: the next provider, or a second request to the primary if it is the only one
+         */
+        private synchronized boolean launchHedge() {
+            if (winner.isDone()) {
+                return false;
+            }
+            while (nextLane < lanes.size()) {
+                if (submit(lanes.get(nextLane++), true)) {
+                    return true;
+                }
+            }
+            if (sameProviderReplica && !replicaUsed && lanes.size() == 1) {
+                replicaUsed = true;
+                return submit(lanes.get(0), true);
+            }
+            return false;
+        }
+
+        private boolean submit(Lane lane, boolean hedge) {
+            try {
+                attempts.add(lane.executor.submit(() -> run(lane, hedge)));
+                pending++;
+                return true;
+            } catch (RejectedExecutionException e) {
+                lane.rejected.incrementAndGet();
+                log.warn("LLM provider {} is saturated, skipping", lane.provider.getName());
+                return false;
+            }
+        }
+
+        private void run(Lane lane, boolean hedge) {
+            if (winner.isDone()) {
+                // Another attempt already answered while this one was queued
+                return;
+            }
+            long start = System.nanoTime();
+            String model = lane.provider.getModel(tier);
+            FlightRecorderEvents.LlmCall event = new FlightRecorderEvents.LlmCall();
+            event.begin();
+            event.inputTokens = inputTokens;
+            Span.Builder builder = tracer.spanBuilder();
+            if (parent != null) {
+                builder.setParent(parent.context());
+            }
+            Span span = builder
+                    .name("llm " + lane.provider.getName())
+                    .kind(Span.Kind.CLIENT)
+                    .remoteServiceName(lane.provider.getName())
+                    .tag("llm.model", model)
+                    .tag("llm.hedge", hedge)
+                    .start();
+            try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+                LlmCompletion completion = request.apply(lane.provider);
+                long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                lane.latencies.get(tier).record(latencyMs);
+                lane.succeeded.incrementAndGet();
+                boolean reported = completion.hasUsage();
+                int input = reported ? completion.promptTokens() : inputTokens;
+                int cached = reported && completion.cachedTokens() != null ? completion.cachedTokens() : 0;
+                int output = reported ? completion.completionTokens() : TokenEstimator.estimate(completion.text());
+                Result result = new Result(completion.text(), lane.provider.getName(), model, tier, latencyMs, hedge,
+                        input, cached, output, reported, cost(model, input, cached, output));
+                boolean won = winner.complete(result);
+                if (won) {
+                    if (hedge) {
+                        hedgesWon.incrementAndGet();
+                    }
+                    cancelAll();
+                } else {
+                    supersededTokens.addAndGet(input + output);
+                    supersededCostUsd.add(result.costUsd());
+                }
+                event.inputTokens = input;
+                event.outputTokens = output;
+                event.status = won ? "success" : "superseded";
+            } catch (Exception e) {
+                lane.failed.incrementAndGet();
+                log.warn("LLM provider {} failed: {}", lane.provider.getName(), e.getMessage());
+                event.status = "failed";
+                event.error = e.getMessage();
+                span.error(e);
+                onFailure(e);
+            } finally {
+                span.tag("llm.status", event.status).end();
+                event.end();
+                if (event.shouldCommit()) {
+                    event.provider = lane.provider.getName();
+                    event.model = model;
+                    event.tier = tier.name();
+                    event.hedge = hedge;
+                    event.promptChars = promptChars;
+                    event.commit();
+                }
+            }
+        }
+
+        private synchronized void onFailure(Throwable error) {
+            pending--;
+            lastError = error;
+            // Fail over immediately instead of waiting for the hedge timer
+            if (pending == 0 && !winner.isDone() && !launchNext()) {
+                winner.completeExceptionally(lastError);
+            }
+        }
+
+        /**
+         * Drop attempts still waiting in a pool queue; running HTTP calls are left to finish
+         */
+        private synchronized void cancelAll() {
+            for (Future<?> attempt : attempts) {
+                attempt.cancel(false);
+            }
+        }
+    }
+}
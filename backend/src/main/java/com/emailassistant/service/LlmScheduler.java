@@ -0,0 +1,372 @@
+package com.emailassistant.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for LLM calls. Every routed call takes a permit; when permits run out,
+ * waiting calls are granted strictly by {@link LlmWorkClass}, so an agent waiting on a reply is
+ * never queued behind backlog triage.
+ *
+ * Within a class, tenants (sender domains for triage, teams for replies) share capacity by
+ * start-time fair queueing: each call is tagged {@code max(virtualTime, tenant's last tag) + 1/weight}
+ * and the smallest tag goes first, so one customer flooding the inbox cannot starve the others.
+ * Lower classes only start while total occupancy is below their share of the permits, keeping
+ * slots free for higher ones.
+ *
+ * Callers describe their work with {@link #open}; a call whose deadline passes while queued, or
+ * whose estimated wait already exceeds it, is dropped rather than run late.
+ */
+@Service
+@Slf4j
+public class LlmScheduler {
+
+    private static final LlmWorkClass[] CLASSES = LlmWorkClass.values();
+    private static final Context DEFAULT_CONTEXT = new Context(LlmWorkClass.TRIAGE, "default", Long.MAX_VALUE);
+
+    @Value("${llm.scheduler.enabled:true}")
+    private boolean enabled;
+
+    // 0 uses the primary provider's max concurrency
+    @Value("${llm.scheduler.permits:0}")
+    private int configuredPermits;
+
+    @Value("${llm.scheduler.max-queued:10000}")
+    private int maxQueued;
+
+    @Value("${llm.scheduler.deadline-ms.interactive:30000}")
+    private long interactiveDeadlineMs;
+
+    @Value("${llm.scheduler.deadline-ms.urgent-triage:120000}")
+    private long urgentTriageDeadlineMs;
+
+    @Value("${llm.scheduler.deadline-ms.triage:900000}")
+    private long triageDeadlineMs;
+
+    @Value("${llm.scheduler.deadline-ms.batch:3600000}")
+    private long batchDeadlineMs;
+
+    @Value("${llm.scheduler.max-share.triage:0.75}")
+    private double triageMaxShare;
+
+    @Value("${llm.scheduler.max-share.batch:0.5}")
+    private double batchMaxShare;
+
+    // tenant=weight, comma separated, e.g. team:billing=2,domain:example.com=0.5
+    @Value("${llm.scheduler.weights:}")
+    private String weightsConfig;
+
+    private final ThreadLocal<Context> context = new ThreadLocal<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<LlmWorkClass, PriorityQueue<Ticket>> queues = new EnumMap<>(LlmWorkClass.class);
+    private final Map<LlmWorkClass, Map<String, Double>> lastFinishTags = new EnumMap<>(LlmWorkClass.class);
+    private final Map<LlmWorkClass, ClassState> states = new EnumMap<>(LlmWorkClass.class);
+    private final Map<String, Double> weights = new HashMap<>();
+    private int permits = 8;
+    private int inUse;
+    private long sequence;
+    // Smoothed permit hold time, used to predict queueing delay
+    private double averageHoldMs = 1000.0;
+
+    public LlmScheduler() {
+        Comparator<Ticket> order = Comparator.comparingDouble((Ticket ticket) -> ticket.finishTag)
+                .thenComparingLong(ticket -> ticket.sequence);
+        for (LlmWorkClass workClass : CLASSES) {
+            queues.put(workClass, new PriorityQueue<>(order));
+            lastFinishTags.put(workClass, new HashMap<>());
+            states.put(workClass, new ClassState());
+        }
+    }
+
+    /**
+     * Size the permit pool; called by the router once the primary provider is known
+     */
+    void start(int primaryMaxConcurrency) {
+        permits = configuredPermits > 0 ? configuredPermits : Math.max(1, primaryMaxConcurrency);
+        for (String entry : weightsConfig.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator > 0) {
+                weights.put(entry.substring(0, separator).trim(), Double.parseDouble(entry.substring(separator + 1).trim()));
+            } else if (!entry.isBlank()) {
+                log.warn("Ignoring malformed LLM scheduler weight: {}", entry);
+            }
+        }
+        log.info("LLM scheduler started with {} permits (enabled: {})", permits, enabled);
+    }
+
+    /**
+     * Run the LLM calls made on this thread until the scope is closed under the given class and tenant
+     */
+    public Scope open(LlmWorkClass workClass, String tenant) {
+        Context previous = context.get();
+        long deadline = System.currentTimeMillis() + deadlineMs(workClass);
+        context.set(new Context(workClass, tenant != null ? tenant : "default", deadline));
+        states.get(workClass).lastOpenedAt = System.currentTimeMillis();
+        return () -> {
+            if (previous != null) {
+                context.set(previous);
+            } else {
+                context.remove();
+            }
+        };
+    }
+
+    /**
+     * Wait for a permit under the current scope's class, tenant and deadline
+     */
+    Permit acquire() {
+        if (!enabled) {
+            return () -> { };
+        }
+        Context current = context.get() != null ? context.get() : DEFAULT_CONTEXT;
+        ClassState state = states.get(current.workClass);
+        long enqueuedAt = System.currentTimeMillis();
+        lock.lock();
+        try {
+            if (canGrant(current.workClass) && !hasWaitingAtOrAbove(current.workClass)) {
+                return grant(current.workClass, enqueuedAt);
+            }
+
+            PriorityQueue<Ticket> queue = queues.get(current.workClass);
+            if (queue.size() >= maxQueued) {
+                state.rejected.incrementAndGet();
+                throw new RuntimeException("LLM scheduler queue for " + current.workClass + " is full");
+            }
+            long estimatedWaitMs = (long) ((waitingAtOrAbove(current.workClass) + 1) * averageHoldMs / permits);
+            if (enqueuedAt + estimatedWaitMs > current.deadline) {
+                state.dropped.incrementAndGet();
+                throw new RuntimeException("LLM call dropped: estimated wait of " + estimatedWaitMs
+                        + " ms exceeds the " + current.workClass + " deadline");
+            }
+
+            Ticket ticket = new Ticket(current, finishTag(current), sequence++, lock.newCondition());
+            queue.add(ticket);
+            try {
+                while (!ticket.granted) {
+                    long remaining = current.deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        queue.remove(ticket);
+                        state.dropped.incrementAndGet();
+                        throw new RuntimeException("LLM call dropped: " + current.workClass + " deadline passed while queued");
+                    }
+                    ticket.signal.await(remaining, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                if (ticket.granted) {
+                    release(current.workClass, enqueuedAt);
+                } else {
+                    queue.remove(ticket);
+                }
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for an LLM permit", e);
+            }
+            state.waitedMs.addAndGet(System.currentTimeMillis() - enqueuedAt);
+            long grantedAt = System.currentTimeMillis();
+            return () -> release(current.workClass, grantedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calls of this class that are queued or holding a permit
+     */
+    public int demand(LlmWorkClass workClass) {
+        lock.lock();
+        try {
+            return queues.get(workClass).size() + states.get(workClass).inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * When a scope of this class was last opened, in epoch milliseconds
+     */
+    public long lastOpenedAt(LlmWorkClass workClass) {
+        return states.get(workClass).lastOpenedAt;
+    }
+
+    /**
+     * Scheduler statistics for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            statistics.put("enabled", enabled);
+            statistics.put("permits", permits);
+            statistics.put("inUse", inUse);
+            statistics.put("averageHoldMs", Math.round(averageHoldMs));
+            Map<LlmWorkClass, Map<String, Object>> classes = new EnumMap<>(LlmWorkClass.class);
+            for (LlmWorkClass workClass : CLASSES) {
+                ClassState state = states.get(workClass);
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("queued", queues.get(workClass).size());
+                entry.put("inUse", state.inUse);
+                entry.put("granted", state.granted.get());
+                entry.put("dropped", state.dropped.get());
+                entry.put("rejected", state.rejected.get());
+                long granted = state.granted.get();
+                entry.put("averageWaitMs", granted > 0 ? state.waitedMs.get() / granted : 0);
+                classes.put(workClass, entry);
+            }
+            statistics.put("classes", classes);
+        } finally {
+            lock.unlock();
+        }
+        return statistics;
+    }
+
+    private Permit grant(LlmWorkClass workClass, long grantedAt) {
+        inUse++;
+        states.get(workClass).inUse++;
+        states.get(workClass).granted.incrementAndGet();
+        return () -> release(workClass, grantedAt);
+    }
+
+    private void release(LlmWorkClass workClass, long grantedAt) {
+        lock.lock();
+        try {
+            inUse--;
+            states.get(workClass).inUse--;
+            averageHoldMs = 0.9 * averageHoldMs + 0.1 * (System.currentTimeMillis() - grantedAt);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand free permits to the head of the highest class allowed to take one; expired heads are skipped
+     */
+    private void dispatch() {
+        long now = System.currentTimeMillis();
+        while (inUse < permits) {
+            boolean granted = false;
+            for (LlmWorkClass workClass : CLASSES) {
+                PriorityQueue<Ticket> queue = queues.get(workClass);
+                while (!queue.isEmpty() && queue.peek().context.deadline <= now) {
+                    // Wake it so it can observe its deadline and drop itself
+                    queue.poll().signal.signal();
+                }
+                if (queue.isEmpty() || !canGrant(workClass)) {
+                    continue;
+                }
+                Ticket ticket = queue.poll();
+                states.get(workClass).virtualTime = ticket.finishTag;
+                grant(workClass, now);
+                ticket.granted = true;
+                ticket.signal.signal();
+                granted = true;
+                break;
+            }
+            if (!granted) {
+                return;
+            }
+        }
+    }
+
+    private boolean canGrant(LlmWorkClass workClass) {
+        // Lower classes only start while total occupancy is under their share, so the rest stays free for higher ones
+        return inUse < Math.max(1, (int) (permits * maxShare(workClass)));
+    }
+
+    private boolean hasWaitingAtOrAbove(LlmWorkClass workClass) {
+        return waitingAtOrAbove(workClass) > 0;
+    }
+
+    private int waitingAtOrAbove(LlmWorkClass workClass) {
+        int waiting = 0;
+        for (int c = 0; c <= workClass.ordinal(); c++) {
+            waiting += queues.get(CLASSES[c]).size();
+        }
+        return waiting;
+    }
+
+    private double finishTag(Context current) {
+        ClassState state = states.get(current.workClass);
+        Map<String, Double> tags = lastFinishTags.get(current.workClass);
+        double start = Math.max(state.virtualTime, tags.getOrDefault(current.tenant, 0.0));
+        double tag = start + 1.0 / weights.getOrDefault(current.tenant, 1.0);
+        tags.put(current.tenant, tag);
+        if (tags.size() > 10_000) {
+            // Tenants behind the virtual clock carry no state worth keeping
+            tags.values().removeIf(value -> value <= state.virtualTime);
+        }
+        return tag;
+    }
+
+    private double maxShare(LlmWorkClass workClass) {
+        return switch (workClass) {
+            case INTERACTIVE, URGENT_TRIAGE -> 1.0;
+            case TRIAGE -> triageMaxShare;
+            case BATCH -> batchMaxShare;
+        };
+    }
+
+    private long deadlineMs(LlmWorkClass workClass) {
+        return switch (workClass) {
+            case INTERACTIVE -> interactiveDeadlineMs;
+            case URGENT_TRIAGE -> urgentTriageDeadlineMs;
+            case TRIAGE -> triageDeadlineMs;
+            case BATCH -> batchDeadlineMs;
+        };
+    }
+
+    /**
+     * Work description for the LLM calls made inside it; closing restores the enclosing scope
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * A held LLM permit
+     */
+    interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Context(LlmWorkClass workClass, String tenant, long deadline) {
+    }
+
+    private static final class Ticket {
+        private final Context context;
+        private final double finishTag;
+        private final long sequence;
+        private final Condition signal;
+        private boolean granted;
+
+        private Ticket(Context context, double finishTag, long sequence, Condition signal) {
+            this.context = context;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.signal = signal;
+        }
+    }
+
+    private static final class ClassState {
+        private int inUse;
+        private double virtualTime;
+        private volatile long lastOpenedAt;
+        private final AtomicLong granted = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong waitedMs = new AtomicLong();
+    }
+}
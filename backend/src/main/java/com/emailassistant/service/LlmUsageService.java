@@ -0,0 +1,278 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.LlmCallRecord;
+import com.emailassistant.model.LlmUsage;
+import com.emailassistant.repository.EmailRepository;
+import com.emailassistant.repository.LlmUsageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Aggregates LLM token usage and cost per day, team, provider, model, task and intent. Calls are
+ * summed in memory and flushed as one unordered bulk of {@code $inc} upserts into llm_usage, so
+ * recording a call never costs a round trip and the counters never need a read-modify-write.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LlmUsageService {
+
+    public static final List<String> DIMENSIONS = List.of("day", "team", "provider", "model", "task", "intent");
+
+    private static final String NONE = "none";
+    private static final String UNASSIGNED = "unassigned";
+
+    private static final Map<String, Function<LlmUsage, String>> DIMENSION_GETTERS = Map.of(
+            "day", LlmUsage::getDay,
+            "team", LlmUsage::getTeam,
+            "provider", LlmUsage::getProvider,
+            "model", LlmUsage::getModel,
+            "task", LlmUsage::getTask,
+            "intent", LlmUsage::getIntent);
+
+    private final MongoTemplate mongoTemplate;
+    private final LlmUsageRepository llmUsageRepository;
+    private final EmailRepository emailRepository;
+
+    @Value("${llm.usage.enabled:true}")
+    private boolean enabled;
+
+    // Counters not yet flushed, swapped out whole by each flush
+    private Map<String, Pending> pending = new HashMap<>();
+    private long flushedRows;
+    private long failedFlushes;
+
+    /**
+     * Count an email's calls towards its team and intent
+     */
+    public void record(Email email, List<LlmCallRecord> calls) {
+        if (!enabled || calls == null || calls.isEmpty()) {
+            return;
+        }
+        String team = email.getAssignedTeam() != null ? email.getAssignedTeam() : UNASSIGNED;
+        String intent = email.getIntent() != null ? email.getIntent().name() : NONE;
+        synchronized (this) {
+            for (LlmCallRecord call : calls) {
+                LocalDate day = call.getCalledAt() != null ? call.getCalledAt().toLocalDate() : LocalDate.now();
+                LlmUsage key = LlmUsage.builder()
+                        .day(day.toString())
+                        .team(team)
+                        .provider(orNone(call.getProvider()))
+                        .model(orNone(call.getModel()))
+                        .task(orNone(call.getTask()))
+                        .intent(intent)
+                        .build();
+                pending.computeIfAbsent(id(key), id -> new Pending(key)).add(call);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${llm.usage.flush-interval-ms:10000}")
+    public void flush() {
+        Map<String, Pending> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LlmUsage.class);
+            batch.forEach((id, counters) -> bulk.upsert(Query.query(Criteria.where("_id").is(id)), counters.toUpdate()));
+            bulk.execute();
+            synchronized (this) {
+                flushedRows += batch.size();
+            }
+        } catch (Exception e) {
+            // Put the counters back so the next flush retries them
+            log.error("Failed to flush {} LLM usage rows: {}", batch.size(), e.getMessage(), e);
+            synchronized (this) {
+                failedFlushes++;
+                batch.forEach((id, counters) -> pending.merge(id, counters, Pending::merge));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Usage between two days inclusive, summed over the given dimensions and most expensive first
+     */
+    public List<Map<String, Object>> getUsage(LocalDate from, LocalDate to, List<String> groupBy) {
+        for (String dimension : groupBy) {
+            if (!DIMENSION_GETTERS.containsKey(dimension)) {
+                throw new IllegalArgumentException("Unknown usage dimension: " + dimension + ", expected one of " + DIMENSIONS);
+            }
+        }
+        flush();
+        Map<List<String>, Pending> groups = new HashMap<>();
+        for (LlmUsage row : llmUsageRepository.findByDayInRange(from.toString(), to.toString())) {
+            List<String> group = groupBy.stream().map(dimension -> DIMENSION_GETTERS.get(dimension).apply(row)).toList();
+            groups.computeIfAbsent(group, g -> new Pending(null)).add(row);
+        }
+        List<Map<String, Object>> usage = new ArrayList<>(groups.size());
+        groups.forEach((group, counters) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.size(); i++) {
+                entry.put(groupBy.get(i), group.get(i));
+            }
+            entry.putAll(counters.describe());
+            usage.add(entry);
+        });
+        usage.sort(Comparator.comparingDouble((Map<String, Object> entry) -> (Double) entry.get("costUsd")).reversed());
+        return usage;
+    }
+
+    /**
+     * The emails received in a window whose LLM calls cost the most, with their calls
+     */
+    public List<Map<String, Object>> getMostExpensiveEmails(LocalDateTime from, LocalDateTime to, int limit) {
+        List<Email> emails = emailRepository.findMostExpensiveLlmEmails(from, to, PageRequest.of(0, limit));
+        List<Map<String, Object>> result = new ArrayList<>(emails.size());
+        for (Email email : emails) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("emailId", email.getId());
+            entry.put("subject", email.getSubject());
+            entry.put("intent", email.getIntent());
+            entry.put("team", email.getAssignedTeam());
+            entry.put("status", email.getStatus());
+            entry.put("receivedAt", email.getReceivedAt());
+            entry.put("costUsd", email.getMetadata().getLlmCostUsd());
+            entry.put("inputTokens", email.getMetadata().getLlmInputTokens());
+            entry.put("outputTokens", email.getMetadata().getLlmOutputTokens());
+            entry.put("calls", email.getMetadata().getLlmCalls());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("pendingRows", pending.size());
+        statistics.put("flushedRows", flushedRows);
+        statistics.put("failedFlushes", failedFlushes);
+        return statistics;
+    }
+
+    private static String id(LlmUsage key) {
+        return String.join("|", key.getDay(), key.getTeam(), key.getProvider(), key.getModel(), key.getTask(), key.getIntent());
+    }
+
+    private static String orNone(String value) {
+        return value != null && !value.isBlank() ? value : NONE;
+    }
+
+    private static long value(Long value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Counters for one row; {@code key} carries the dimensions written on insert
+     */
+    private static final class Pending {
+
+        private final LlmUsage key;
+        private long calls;
+        private long inputTokens;
+        private long cachedTokens;
+        private long outputTokens;
+        private double costUsd;
+        private long escalations;
+        private long estimatedCalls;
+
+        private Pending(LlmUsage key) {
+            this.key = key;
+        }
+
+        private void add(LlmCallRecord call) {
+            calls++;
+            inputTokens += call.getInputTokens() != null ? call.getInputTokens() : 0;
+            cachedTokens += call.getCachedTokens() != null ? call.getCachedTokens() : 0;
+            outputTokens += call.getOutputTokens() != null ? call.getOutputTokens() : 0;
+            costUsd += call.getCostUsd() != null ? call.getCostUsd() : 0.0;
+            if (Boolean.TRUE.equals(call.getEscalated())) {
+                escalations++;
+            }
+            if (Boolean.TRUE.equals(call.getTokensEstimated())) {
+                estimatedCalls++;
+            }
+        }
+
+        private void add(LlmUsage row) {
+            calls += value(row.getCalls());
+            inputTokens += value(row.getInputTokens());
+            cachedTokens += value(row.getCachedTokens());
+            outputTokens += value(row.getOutputTokens());
+            costUsd += row.getCostUsd() != null ? row.getCostUsd() : 0.0;
+            escalations += value(row.getEscalations());
+            estimatedCalls += value(row.getEstimatedCalls());
+        }
+
+        private Pending merge(Pending other) {
+            calls += other.calls;
+            inputTokens += other.inputTokens;
+            cachedTokens += other.cachedTokens;
+            outputTokens += other.outputTokens;
+            costUsd += other.costUsd;
+            escalations += other.escalations;
+            estimatedCalls += other.estimatedCalls;
+            return this;
+        }
+
+        private Update toUpdate() {
+            return new Update()
+                    .setOnInsert("day", key.getDay())
+                    .setOnInsert("team", key.getTeam())
+                    .setOnInsert("provider", key.getProvider())
+                    .setOnInsert("model", key.getModel())
+                    .setOnInsert("task", key.getTask())
+                    .setOnInsert("intent", key.getIntent())
+                    .inc("calls", calls)
+                    .inc("inputTokens", inputTokens)
+                    .inc("cachedTokens", cachedTokens)
+                    .inc("outputTokens", outputTokens)
+                    .inc("costUsd", costUsd)
+                    .inc("escalations", escalations)
+                    .inc("estimatedCalls", estimatedCalls);
+        }
+
+        private Map<String, Object> describe() {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("calls", calls);
+            entry.put("inputTokens", inputTokens);
+            entry.put("cachedTokens", cachedTokens);
+            entry.put("outputTokens", outputTokens);
+            entry.put("costUsd", costUsd);
+            entry.put("costPerCallUsd", calls > 0 ? costUsd / calls : 0.0);
+            entry.put("escalations", escalations);
+            entry.put("estimatedCalls", estimatedCalls);
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.emailassistant.service;
+
+/**
+ * Scheduling class of LLM work, highest priority first
+ */
+public enum LlmWorkClass {
+    INTERACTIVE,
+    URGENT_TRIAGE,
+    TRIAGE,
+    BATCH
+}
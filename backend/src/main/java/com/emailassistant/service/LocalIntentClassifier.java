@@ -0,0 +1,285 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.repository.EmailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * In-process multinomial naive Bayes intent classifier over hashed unigram/bigram features.
+ *
+ * Trained from historical LLM-labelled emails; used as a first pass so that obvious emails
+ * never reach Gemini. Only predictions above the confidence threshold are returned.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LocalIntentClassifier {
+
+    public static final String MODEL_NAME = "local-naive-bayes";
+
+    private static final Email.EmailIntent[] LABELS = Arrays.stream(Email.EmailIntent.values())
+            .filter(intent -> intent != Email.EmailIntent.UNKNOWN)
+            .toArray(Email.EmailIntent[]::new);
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int SUBJECT_SEED = 0x5bd1e995;
+    private static final int NUMBER_TOKEN = 0x2f6b1a3d;
+
+    private final EmailRepository emailRepository;
+    private final EmailBodyService emailBodyService;
+
+    @Value("${ai.local-classifier.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.local-classifier.confidence-threshold:0.97}")
+    private double confidenceThreshold;
+
+    @Value("${ai.local-classifier.feature-bits:17}")
+    private int featureBits;
+
+    @Value("${ai.local-classifier.min-samples:200}")
+    private int minSamples;
+
+    @Value("${ai.local-classifier.min-samples-per-intent:20}")
+    private int minSamplesPerIntent;
+
+    @Value("${ai.local-classifier.max-training-samples:200000}")
+    private int maxTrainingSamples;
+
+    private volatile Model model;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Classify an email locally. Returns null when no model is trained yet or the
+     * prediction is not confident enough, in which case the caller should ask the LLM.
+     */
+    public Email.IntentAnalysisResult classify(String subject, String body) {
+        Model current = model;
+        if (!enabled || current == null) {
+            return null;
+        }
+
+        double[] scores = current.logPrior.clone();
+        int mask = current.mask;
+        FeatureSink sink = feature -> {
+            int bucket = feature & mask;
+            for (int c = 0; c < scores.length; c++) {
+                scores[c] += current.logLikelihood[c][bucket];
+            }
+        };
+        extractFeatures(subject, SUBJECT_SEED, sink);
+        extractFeatures(body, 0, sink);
+
+        int best = 0;
+        for (int c = 1; c < scores.length; c++) {
+            if (scores[c] > scores[best]) {
+                best = c;
+            }
+        }
+        double normalizer = 0.0;
+        for (double score : scores) {
+            normalizer += Math.exp(score - scores[best]);
+        }
+        double confidence = 1.0 / normalizer;
+
+        if (confidence < confidenceThreshold) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+
+        Map<String, Double> intentScores = new LinkedHashMap<>();
+        for (int c = 0; c < scores.length; c++) {
+            intentScores.put(current.labels[c].name(), Math.exp(scores[c] - scores[best]) / normalizer);
+        }
+        return Email.IntentAnalysisResult.builder()
+                .intent(current.labels[best])
+                .confidence(confidence)
+                .reasoning("Local classifier match")
+                .intentScores(intentScores)
+                .modelUsed(MODEL_NAME)
+                .modelVersion(current.version)
+                .build();
+    }
+
+    /**
+     * Retrain from LLM-labelled emails. Rows labelled by this classifier are excluded so it
+     * never learns from its own output.
+     */
+    @Scheduled(initialDelayString = "${ai.local-classifier.initial-delay-ms:30000}",
+               fixedDelayString = "${ai.local-classifier.retrain-interval-ms:21600000}")
+    public synchronized void retrain() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int buckets = 1 << featureBits;
+        int mask = buckets - 1;
+        Map<Email.EmailIntent, Integer> labelIndex = new EnumMap<>(Email.EmailIntent.class);
+        for (int c = 0; c < LABELS.length; c++) {
+            labelIndex.put(LABELS[c], c);
+        }
+
+        double[][] counts = new double[LABELS.length][buckets];
+        double[] totals = new double[LABELS.length];
+        int[] docs = new int[LABELS.length];
+        int[] seen = {0};
+
+        try (Stream<Email> samples = emailBodyService.withText(emailRepository.streamIntentTrainingSamples(MODEL_NAME))) {
+            // Samples arrive newest first, so the cap keeps the most recent labels
+            samples.limit(maxTrainingSamples).forEach(email -> {
+                Integer c = labelIndex.get(email.getIntent());
+                if (c == null) {
+                    return;
+                }
+                FeatureSink sink = feature -> {
+                    counts[c][feature & mask]++;
+                    totals[c]++;
+                };
+                extractFeatures(email.getSubject(), SUBJECT_SEED, sink);
+                extractFeatures(email.getCleanBody() != null ? email.getCleanBody() : email.getBody(), 0, sink);
+                docs[c]++;
+                seen[0]++;
+            });
+        } catch (Exception e) {
+            log.error("Failed to load intent training samples: {}", e.getMessage(), e);
+            return;
+        }
+
+        if (seen[0] < minSamples) {
+            log.info("Skipping local classifier training: {} labelled emails, need {}", seen[0], minSamples);
+            return;
+        }
+
+        // Only keep intents with enough examples; the rest always fall through to the LLM
+        int kept = 0;
+        for (int doc : docs) {
+            if (doc >= minSamplesPerIntent) {
+                kept++;
+            }
+        }
+        if (kept < 2) {
+            log.info("Skipping local classifier training: fewer than two intents have {} examples", minSamplesPerIntent);
+            return;
+        }
+
+        Email.EmailIntent[] labels = new Email.EmailIntent[kept];
+        double[] logPrior = new double[kept];
+        float[][] logLikelihood = new float[kept][];
+        int k = 0;
+        for (int c = 0; c < LABELS.length; c++) {
+            if (docs[c] < minSamplesPerIntent) {
+                continue;
+            }
+            labels[k] = LABELS[c];
+            logPrior[k] = Math.log((double) docs[c] / seen[0]);
+            float[] row = new float[buckets];
+            double denominator = Math.log(totals[c] + buckets);
+            for (int f = 0; f < buckets; f++) {
+                row[f] = (float) (Math.log(counts[c][f] + 1.0) - denominator);
+            }
+            logLikelihood[k++] = row;
+        }
+
+        String version = "nb-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + "-" + seen[0];
+        model = new Model(version, labels, logPrior, logLikelihood, mask);
+        log.info("Local intent classifier {} trained on {} emails ({} intents) in {} ms",
+                version, seen[0], kept, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Classifier statistics for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Model current = model;
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("modelVersion", current != null ? current.version : null);
+        stats.put("confidenceThreshold", confidenceThreshold);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return stats;
+    }
+
+    /**
+     * Hash lower-cased alphanumeric tokens and adjacent-token bigrams without allocating.
+     * Digit runs collapse to a single token so "order #123" and "order #456" look alike.
+     */
+    static void extractFeatures(String text, int seed, FeatureSink sink) {
+        if (text == null) {
+            return;
+        }
+        int previous = 0;
+        int hash = FNV_OFFSET ^ seed;
+        boolean inToken = false;
+        boolean numeric = true;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char ch = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                if (!Character.isDigit(ch)) {
+                    numeric = false;
+                }
+                hash = (hash ^ Character.toLowerCase(ch)) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                int token = numeric ? NUMBER_TOKEN ^ seed : hash;
+                sink.accept(mix(token));
+                if (previous != 0) {
+                    sink.accept(mix(previous * 31 + token));
+                }
+                previous = token;
+                hash = FNV_OFFSET ^ seed;
+                inToken = false;
+                numeric = true;
+            }
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    @FunctionalInterface
+    interface FeatureSink {
+        void accept(int feature);
+    }
+
+    private static final class Model {
+        private final String version;
+        private final Email.EmailIntent[] labels;
+        private final double[] logPrior;
+        private final float[][] logLikelihood;
+        private final int mask;
+
+        private Model(String version, Email.EmailIntent[] labels, double[] logPrior, float[][] logLikelihood, int mask) {
+            this.version = version;
+            this.labels = labels;
+            this.logPrior = logPrior;
+            this.logLikelihood = logLikelihood;
+            this.mask = mask;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.EmailRequest;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.ParseException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Turns a MIME message into an {@link EmailRequest} by walking its part tree. Over IMAP each part
+ * is fetched only when it is read: the first text/plain and text/html parts are read up to
+ * {@code email.imap.max-text-bytes}, and every other leaf part is streamed straight into GridFS
+ * as an attachment, so a large message is never held in memory.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MimeMessageParser {
+
+    private static final String NO_SUBJECT = "(no subject)";
+
+    private final AttachmentService attachmentService;
+
+    @Value("${email.imap.max-text-bytes:1048576}")
+    private int maxTextBytes;
+
+    /**
+     * @param fallbackMessageId used when the message has no Message-ID, so re-reading it after a
+     *                          failure is still recognised as a duplicate
+     */
+    public EmailRequest parse(MimeMessage message, String fallbackMessageId) throws MessagingException, IOException {
+        Content content = new Content();
+        walk(message, content);
+
+        String messageId = message.getMessageID();
+        String references = message.getHeader("References", " ");
+        return EmailRequest.builder()
+                .messageId(messageId != null ? messageId : fallbackMessageId)
+                .inReplyTo(message.getHeader("In-Reply-To", null))
+                .references(references != null ? Arrays.asList(references.trim().split("\\s+")) : null)
+                .from(firstAddress(message.getFrom()))
+                .to(addresses(message.getRecipients(Message.RecipientType.TO)))
+                .cc(addresses(message.getRecipients(Message.RecipientType.CC)))
+                .subject(message.getSubject() != null ? message.getSubject() : NO_SUBJECT)
+                .body(content.text != null ? content.text : "")
+                .htmlBody(content.html)
+                .attachments(content.attachmentIds.isEmpty() ? null : content.attachmentIds)
+                .build();
+    }
+
+    private void walk(Part part, Content content) throws MessagingException, IOException {
+        if (part.isMimeType("multipart/*")) {
+            // Built from the BODYSTRUCTURE; no part content has been downloaded yet
+            Multipart multipart = (Multipart) part.getContent();
+            for (int i = 0; i < multipart.getCount(); i++) {
+                walk(multipart.getBodyPart(i), content);
+            }
+        } else if (!isAttachment(part) && part.isMimeType("text/plain") && content.text == null) {
+            content.text = readText(part);
+        } else if (!isAttachment(part) && part.isMimeType("text/html") && content.html == null) {
+            content.html = readText(part);
+        } else {
+            // Attachments, inline images, forwarded messages and any further text alternatives
+            try (InputStream in = part.getInputStream()) {
+                content.attachmentIds.add(attachmentService.store(in, filename(part), baseType(part), null).getFileId());
+            }
+        }
+    }
+
+    private static boolean isAttachment(Part part) throws MessagingException {
+        return Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition()) || part.getFileName() != null;
+    }
+
+    private String readText(Part part) throws MessagingException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(Math.max(part.getSize(), 256), maxTextBytes));
+        try (InputStream in = part.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while (out.size() < maxTextBytes && (n = in.read(buffer, 0, Math.min(buffer.length, maxTextBytes - out.size()))) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toString(charset(part));
+    }
+
+    private static Charset charset(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset));
+            }
+        } catch (MessagingException | IllegalArgumentException e) {
+            log.debug("Unusable charset on MIME part, reading it as UTF-8: {}", e.getMessage());
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String filename(Part part) throws MessagingException {
+        String filename = part.getFileName();
+        if (filename == null) {
+            return part.isMimeType("message/rfc822") ? "forwarded-message.eml" : null;
+        }
+        try {
+            return MimeUtility.decodeText(filename);
+        } catch (UnsupportedEncodingException e) {
+            return filename;
+        }
+    }
+
+    private static String baseType(Part part) throws MessagingException {
+        try {
+            return new ContentType(part.getContentType()).getBaseType();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static String firstAddress(Address[] addresses) {
+        if (addresses == null || addresses.length == 0) {
+            return null;
+        }
+        return addresses[0] instanceof InternetAddress address ? address.getAddress() : addresses[0].toString();
+    }
+
+    private static String addresses(Address[] addresses) {
+        if (addresses == null || addresses.length == 0) {
+            return null;
+        }
+        StringJoiner joined = new StringJoiner(", ");
+        for (Address address : addresses) {
+            joined.add(address instanceof InternetAddress internet ? internet.getAddress() : address.toString());
+        }
+        return joined.toString();
+    }
+
+    private static final class Content {
+        private String text;
+        private String html;
+        private final List<String> attachmentIds = new ArrayList<>();
+    }
+}
@@ -0,0 +1,10 @@
+package com.emailassistant.service;
+
+/**
+ * Capability/cost class of a model; each provider maps every tier to one of its models
+ */
+public enum ModelTier {
+    FAST,
+    STANDARD,
+    STRONG
+}
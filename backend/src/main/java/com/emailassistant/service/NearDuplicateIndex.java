@@ -0,0 +1,298 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailMetadata;
+import com.emailassistant.repository.EmailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * SimHash index of recently ingested emails, used to spot near-duplicates (e.g. outage floods)
+ * so they can reuse an earlier triage and be handled as one cluster.
+ *
+ * Signatures are split into bands for LSH lookup: with {@code BANDS} bands, any two signatures
+ * within {@code BANDS - 1} bits share at least one band exactly. Entries older than the window
+ * or beyond the size cap are evicted oldest-first.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NearDuplicateIndex {
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final long FNV64_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+    private static final long NUMBER_TOKEN = 0x6a09e667f3bcc909L;
+
+    private final EmailRepository emailRepository;
+
+    @Value("${dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dedup.max-hamming-distance:3}")
+    private int maxHammingDistance;
+
+    @Value("${dedup.window-minutes:120}")
+    private long windowMinutes;
+
+    @Value("${dedup.max-entries:200000}")
+    private int maxEntries;
+
+    @Value("${dedup.min-tokens:8}")
+    private int minTokens;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Map<Integer, List<Entry>> bands = new HashMap<>();
+    private final Map<String, Entry> entriesByEmailId = new HashMap<>();
+
+    /**
+     * Compute the SimHash signature of an email, or null if it is too short to compare reliably
+     */
+    public Long signature(String subject, String body) {
+        if (!enabled) {
+            return null;
+        }
+        int[] weights = new int[64];
+        int tokens = accumulate(subject, weights) + accumulate(body, weights);
+        if (tokens < minTokens) {
+            return null;
+        }
+        long signature = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                signature |= 1L << bit;
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Find the closest recent email within the Hamming threshold; prefers one whose triage is known
+     */
+    public synchronized Match findNearDuplicate(long signature) {
+        evictExpired(System.currentTimeMillis());
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> bucket = bands.get(bandKey(signature, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry candidate : bucket) {
+                int distance = Long.bitCount(candidate.signature ^ signature);
+                if (distance > maxHammingDistance) {
+                    continue;
+                }
+                boolean better = best == null
+                        || (candidate.intent != null && best.intent == null)
+                        || ((candidate.intent != null) == (best.intent != null) && distance < bestDistance);
+                if (better) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best == null ? null : new Match(best.emailId, best.clusterId, bestDistance, best.intent, best.sentiment);
+    }
+
+    /**
+     * Add a freshly saved email to the index
+     */
+    public synchronized void register(String emailId, long signature, String clusterId, long receivedAtMs) {
+        if (entriesByEmailId.containsKey(emailId)) {
+            return;
+        }
+        evictExpired(System.currentTimeMillis());
+        Entry entry = new Entry(emailId, signature, clusterId, receivedAtMs);
+        entries.addLast(entry);
+        entriesByEmailId.put(emailId, entry);
+        for (int band = 0; band < BANDS; band++) {
+            bands.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>(2)).add(entry);
+        }
+        while (entries.size() > maxEntries) {
+            remove(entries.pollFirst());
+        }
+    }
+
+    /**
+     * Attach the triage outcome of an indexed email so later duplicates can inherit it
+     */
+    public synchronized void recordTriage(String emailId, Email.IntentAnalysisResult intent,
+                                          Email.SentimentAnalysisResult sentiment) {
+        Entry entry = entriesByEmailId.get(emailId);
+        if (entry != null && intent != null && intent.getIntent() != Email.EmailIntent.UNKNOWN) {
+            entry.intent = intent;
+            entry.sentiment = sentiment;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now().minusMinutes(windowMinutes);
+        try (Stream<Email> recent = emailRepository.streamRecentForDeduplication(since)) {
+            recent.forEach(email -> {
+                String clusterId = email.getDuplicateClusterId() != null ? email.getDuplicateClusterId() : email.getId();
+                register(email.getId(), email.getSimHash(), clusterId, toEpochMillis(email.getReceivedAt()));
+                if (email.getIntent() != null) {
+                    recordTriage(email.getId(), toIntentResult(email), toSentimentResult(email.getMetadata()));
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to rebuild near-duplicate index: {}", e.getMessage(), e);
+        }
+        log.info("Near-duplicate index rebuilt with {} recent emails", size());
+    }
+
+    private void evictExpired(long nowMs) {
+        long cutoff = nowMs - windowMinutes * 60_000L;
+        while (!entries.isEmpty() && entries.peekFirst().receivedAtMs < cutoff) {
+            remove(entries.pollFirst());
+        }
+    }
+
+    private void remove(Entry entry) {
+        entriesByEmailId.remove(entry.emailId);
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(entry.signature, band);
+            List<Entry> bucket = bands.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    bands.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add hashed unigram and bigram features to the per-bit weights; digit runs are collapsed
+     * so "order #123" and "order #456" produce the same features.
+     */
+    private static int accumulate(String text, int[] weights) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        long previous = 0L;
+        long hash = FNV64_OFFSET;
+        boolean inToken = false;
+        boolean numeric = true;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char ch = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                if (!Character.isDigit(ch)) {
+                    numeric = false;
+                }
+                hash = (hash ^ Character.toLowerCase(ch)) * FNV64_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                long token = numeric ? NUMBER_TOKEN : hash;
+                addFeature(mix(token), weights);
+                if (previous != 0L) {
+                    addFeature(mix(previous * 31 + token), weights);
+                }
+                previous = token;
+                tokens++;
+                hash = FNV64_OFFSET;
+                inToken = false;
+                numeric = true;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addFeature(long feature, int[] weights) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((feature >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int bandKey(long signature, int band) {
+        int bits = (int) ((signature >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+        return (band << BAND_BITS) | bits;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : System.currentTimeMillis();
+    }
+
+    private static Email.IntentAnalysisResult toIntentResult(Email email) {
+        return Email.IntentAnalysisResult.builder()
+                .intent(email.getIntent())
+                .confidence(email.getIntentConfidence())
+                .reasoning("Inherited from near-duplicate email")
+                .build();
+    }
+
+    private static Email.SentimentAnalysisResult toSentimentResult(EmailMetadata metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        return Email.SentimentAnalysisResult.builder()
+                .sentiment(metadata.getSentiment())
+                .score(metadata.getSentimentScore())
+                .urgency(metadata.getUrgency())
+                .language(metadata.getLanguage())
+                .customerTier(metadata.getCustomerTier())
+                .modelUsed(metadata.getSentimentModelUsed())
+                .build();
+    }
+
+    /**
+     * A near-duplicate hit; the triage fields are null while the original is still being processed
+     */
+    public record Match(String emailId, String clusterId, int distance,
+                        Email.IntentAnalysisResult intent, Email.SentimentAnalysisResult sentiment) {
+
+        public boolean hasTriage() {
+            return intent != null && sentiment != null;
+        }
+    }
+
+    private static final class Entry {
+        private final String emailId;
+        private final long signature;
+        private final String clusterId;
+        private final long receivedAtMs;
+        private Email.IntentAnalysisResult intent;
+        private Email.SentimentAnalysisResult sentiment;
+
+        private Entry(String emailId, long signature, String clusterId, long receivedAtMs) {
+            this.emailId = emailId;
+            this.signature = signature;
+            this.clusterId = clusterId;
+            this.receivedAtMs = receivedAtMs;
+        }
+    }
+}
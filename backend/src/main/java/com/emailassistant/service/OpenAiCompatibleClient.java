@@ -0,0 +1,215 @@
+package com.emailassistant.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Client for any server exposing the OpenAI chat completions API (OpenAI, Azure OpenAI, vLLM,
+ * Ollama, LiteLLM, ...). JSON mode uses {@code response_format: json_object}; the Gemini-style
+ * schema is not translated, the prompt already spells out the expected shape.
+ */
+public class OpenAiCompatibleClient implements LlmProvider {
+
+    private final String name;
+    private final String completionsUrl;
+    private final String apiKey;
+    private final Map<ModelTier, String> models = new EnumMap<>(ModelTier.class);
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final RestTemplate restTemplate;
+    private final JsonFactory jsonFactory;
+
+    private final ThreadLocal<GeminiApiClient.RequestBuffer> requestBuffers =
+            ThreadLocal.withInitial(GeminiApiClient.RequestBuffer::new);
+
+    public OpenAiCompatibleClient(String name, String baseUrl, String apiKey,
+                                  String fastModel, String standardModel, String strongModel,
+                                  int maxConcurrency, int queueCapacity) {
+        this.name = name;
+        this.completionsUrl = baseUrl.endsWith("/") ? baseUrl + "chat/completions" : baseUrl + "/chat/completions";
+        this.apiKey = apiKey;
+        this.models.put(ModelTier.FAST, fastModel);
+        this.models.put(ModelTier.STANDARD, standardModel);
+        this.models.put(ModelTier.STRONG, strongModel);
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+        this.restTemplate = new RestTemplate();
+        this.jsonFactory = AiResponseParser.MAPPER.getFactory();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getModel(ModelTier tier) {
+        return models.get(tier);
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public LlmCompletion getChatCompletion(ModelTier tier, String systemInstruction, String prompt) {
+        return complete(models.get(tier), systemInstruction, prompt, false);
+    }
+
+    @Override
+    public LlmCompletion getJsonCompletion(ModelTier tier, String systemInstruction, String prompt, String responseSchema) {
+        return complete(models.get(tier), systemInstruction, prompt, true);
+    }
+
+    private LlmCompletion complete(String model, String systemInstruction, String prompt, boolean jsonMode) {
+        GeminiApiClient.RequestBuffer body = requestBuffers.get();
+        try {
+            writeRequest(body, model, systemInstruction, prompt, jsonMode);
+            LlmCompletion completion = restTemplate.execute(completionsUrl, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        request.getHeaders().setContentLength(body.size());
+                        if (apiKey != null && !apiKey.isBlank()) {
+                            request.getHeaders().setBearerAuth(apiKey);
+                        }
+                        body.writeTo(request.getBody());
+                    },
+                    response -> {
+                        if (response.getStatusCode() != HttpStatus.OK) {
+                            throw new RuntimeException(name + " API call failed: " + response.getStatusCode());
+                        }
+                        return readResponse(response.getBody());
+                    });
+            if (completion == null || completion.text() == null) {
+                throw new RuntimeException(name + " response contained no message content");
+            }
+            return completion;
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * The system message goes first so servers with automatic prefix caching can reuse it
+     */
+    private void writeRequest(GeminiApiClient.RequestBuffer body, String model, String systemInstruction,
+                              String prompt, boolean jsonMode) {
+        body.reset();
+        try (JsonGenerator generator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", model);
+            generator.writeArrayFieldStart("messages");
+            if (systemInstruction != null) {
+                generator.writeStartObject();
+                generator.writeStringField("role", "system");
+                generator.writeStringField("content", systemInstruction);
+                generator.writeEndObject();
+            }
+            generator.writeStartObject();
+            generator.writeStringField("role", "user");
+            generator.writeStringField("content", prompt);
+            generator.writeEndObject();
+            generator.writeEndArray();
+            if (jsonMode) {
+                generator.writeObjectFieldStart("response_format");
+                generator.writeStringField("type", "json_object");
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize " + name + " request", e);
+        }
+    }
+
+    /**
+     * Stream through the response, keeping only choices[0].message.content and the usage counts
+     */
+    private LlmCompletion readResponse(InputStream in) throws IOException {
+        String content = null;
+        Integer promptTokens = null;
+        Integer cachedTokens = null;
+        Integer completionTokens = null;
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected " + name + " response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    if (parser.nextToken() == JsonToken.START_OBJECT) {
+                        content = readChoice(parser);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String usageField = parser.currentName();
+                        JsonToken usageValue = parser.nextToken();
+                        if ("prompt_tokens".equals(usageField) && usageValue == JsonToken.VALUE_NUMBER_INT) {
+                            promptTokens = parser.getIntValue();
+                        } else if ("completion_tokens".equals(usageField) && usageValue == JsonToken.VALUE_NUMBER_INT) {
+                            completionTokens = parser.getIntValue();
+                        } else if ("prompt_tokens_details".equals(usageField) && usageValue == JsonToken.START_OBJECT) {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                JsonToken detailValue = parser.nextToken();
+                                if ("cached_tokens".equals(parser.currentName()) && detailValue == JsonToken.VALUE_NUMBER_INT) {
+                                    cachedTokens = parser.getIntValue();
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new LlmCompletion(content, promptTokens, cachedTokens, completionTokens);
+    }
+
+    private static String readChoice(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String messageField = parser.currentName();
+                    JsonToken messageValue = parser.nextToken();
+                    if ("content".equals(messageField) && messageValue == JsonToken.VALUE_STRING) {
+                        content = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+}
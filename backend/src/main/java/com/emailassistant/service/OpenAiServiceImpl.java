@@ -422,10 +422,14 @@ package com.emailassistant.service;
 import com.emailassistant.dto.AiReplyRequest;
 import com.emailassistant.dto.AiReplyResponse;
 import com.emailassistant.model.Email;
+import com.emailassistant.model.LlmCallRecord;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -435,7 +439,50 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 public class OpenAiServiceImpl implements AiService {
 
-    private final GeminiApiClient geminiApiClient;
+    private final LlmRouter llmRouter;
+    private final LocalIntentClassifier localIntentClassifier;
+    private final SentimentScorer sentimentScorer;
+    private final ReplyRetrievalIndex replyRetrievalIndex;
+    private final PipelineMetrics pipelineMetrics;
+
+    // Per-prompt token budgets for the email text pasted into each prompt
+    @Value("${ai.prompt.budget.intent-tokens:800}")
+    private int intentBudgetTokens;
+
+    @Value("${ai.prompt.budget.sentiment-tokens:500}")
+    private int sentimentBudgetTokens;
+
+    @Value("${ai.prompt.budget.reply-tokens:1500}")
+    private int replyBudgetTokens;
+
+    @Value("${ai.prompt.budget.quality-tokens:1500}")
+    private int qualityBudgetTokens;
+
+    @Value("${ai.prompt.budget.example-tokens:400}")
+    private int exampleBudgetTokens;
+
+    // A past reply this similar is returned as the draft; above example-similarity it guides the LLM
+    @Value("${ai.reply-cache.reuse-similarity:0.9}")
+    private double reuseSimilarity;
+
+    @Value("${ai.reply-cache.example-similarity:0.5}")
+    private double exampleSimilarity;
+
+    // Triage runs on the cheapest tier and only escalates when the answer is unusable or unsure
+    @Value("${llm.routing.triage-tier:FAST}")
+    private ModelTier triageTier;
+
+    @Value("${llm.routing.escalation-tier:STRONG}")
+    private ModelTier escalationTier;
+
+    @Value("${llm.routing.reply-tier:STANDARD}")
+    private ModelTier replyTier;
+
+    @Value("${llm.routing.quality-tier:FAST}")
+    private ModelTier qualityTier;
+
+    @Value("${llm.routing.escalation-confidence:0.7}")
+    private double escalationConfidence;
 
     // Simulate team members' loads
     private static final List<String> TEAM_MEMBERS =
@@ -463,57 +510,113 @@ public class OpenAiServiceImpl implements AiService {
 
     @Override
     public Email.IntentAnalysisResult analyzeIntent(String subject, String body) {
+        // Obvious emails are settled locally; everything else cascades to Gemini
+        Email.IntentAnalysisResult localResult = localIntentClassifier.classify(subject, body);
+        if (localResult != null) {
+            return localResult;
+        }
+        // Paid calls are kept even when no usable answer comes out of them
+        List<LlmCallRecord> calls = new ArrayList<>(2);
         try {
             String prompt = buildIntentAnalysisPrompt(subject, body);
-            String response = geminiApiClient.getChatCompletion(prompt);
-            return parseIntentResponse(response);
+            Email.IntentAnalysisResult result = null;
+            String escalationReason;
+            try {
+                LlmRouter.Result response = llmRouter.json(triageTier, AiSystemInstructions.INTENT, prompt, AiResponseSchemas.INTENT);
+                calls.add(callRecord("intent", response, null));
+                result = AiResponseParser.parseIntent(response.text());
+                result.setModelUsed(response.model());
+                double confidence = confidenceOf(result);
+                escalationReason = confidence < escalationConfidence ? "low-confidence:" + confidence : null;
+            } catch (IOException e) {
+                log.warn("Unparseable intent response from {} tier: {}", triageTier, e.getMessage());
+                escalationReason = "parse-failure";
+            } catch (RuntimeException e) {
+                log.warn("Intent analysis on {} tier failed: {}", triageTier, e.getMessage());
+                escalationReason = "call-failure";
+            }
+
+            if (escalationReason != null && escalationTier != triageTier) {
+                try {
+                    LlmRouter.Result response = llmRouter.json(escalationTier, AiSystemInstructions.INTENT, prompt, AiResponseSchemas.INTENT);
+                    calls.add(callRecord("intent", response, escalationReason));
+                    Email.IntentAnalysisResult escalated = AiResponseParser.parseIntent(response.text());
+                    escalated.setModelUsed(response.model());
+                    if (result == null || confidenceOf(escalated) >= confidenceOf(result)) {
+                        result = escalated;
+                    }
+                } catch (Exception e) {
+                    if (result == null) {
+                        throw e;
+                    }
+                    // The low-confidence fast-tier answer still beats UNKNOWN, and its call was paid for
+                    log.warn("Intent escalation to {} tier failed, keeping the {} tier result: {}",
+                            escalationTier, triageTier, e.getMessage());
+                }
+            } else if (result == null) {
+                throw new RuntimeException("Intent analysis failed: " + escalationReason);
+            }
+            result.setLlmCalls(calls);
+            return result;
         } catch (Exception e) {
             log.error("Error analyzing intent: {}", e.getMessage(), e);
             return Email.IntentAnalysisResult.builder()
                     .intent(Email.EmailIntent.UNKNOWN)
                     .confidence(0.0)
                     .reasoning("Error in analysis")
+                    .llmCalls(calls)
                     .build();
         }
     }
 
     @Override
     public AiReplyResponse generateReply(AiReplyRequest request, Email email) {
-        try {
+        return reply(request, email, true);
+    }
+
+    @Override
+    public AiReplyResponse draftReply(AiReplyRequest request, Email email) {
+        return reply(request, email, false);
+    }
+
+    private AiReplyResponse reply(AiReplyRequest request, Email email, boolean assign) {
+        try (PipelineMetrics.Stage stage = pipelineMetrics.stage(PipelineMetrics.REPLY,
+                email != null ? email.getIntent() : null, email != null ? email.getMessageId() : null)) {
             if (email == null) {
                 throw new RuntimeException("Email cannot be null");
             }
-            // Assign email to team member
-            String assignedTo = assignToTeamMember();
-            incrementLoad(assignedTo);
-
-            String prompt = buildReplyGenerationPrompt(email, request);
-            String generatedReply = geminiApiClient.getChatCompletion(prompt);
-
-            // For feedback, you could still call Gemini, but here it's kept simple as original
-            List<AiReplyResponse.FeedbackItem> toneFeedback = new ArrayList<>();
-            List<AiReplyResponse.FeedbackItem> clarityFeedback = new ArrayList<>();
-
-            if (Boolean.TRUE.equals(request.getIncludeToneFeedback())) {
-                toneFeedback = analyzeTone(generatedReply);
+            // Assign email to team member; speculative drafts must not skew the load balance
+            String assignedTo = null;
+            if (assign) {
+                assignedTo = assignToTeamMember();
+                incrementLoad(assignedTo);
             }
 
-            if (Boolean.TRUE.equals(request.getIncludeClarityFeedback())) {
-                clarityFeedback = analyzeClarity(generatedReply);
+            // A draft pre-generated with the same parameters is served as is
+            Email.ReplyDraft draft = email.getSpeculativeDraft();
+            if (draft != null && email.getAiGeneratedReply() != null
+                    && Objects.equals(draft.getParametersKey(), ReplyPregenerator.parametersKey(request))) {
+                AiReplyResponse response = buildReplyResponse(request, email.getAiGeneratedReply(),
+                        draft.getModelUsed(), 0.85, assignedTo, List.of(), null);
+                response.setPrecomputed(true);
+                return timed(response, stage, "precomputed");
             }
 
-            return AiReplyResponse.builder()
-                    .emailId(request.getEmailId())
-                    .generatedReply(generatedReply)
-                    .tone(request.getTone())
-                    .style(request.getStyle())
-                    .toneFeedback(toneFeedback)
-                    .clarityFeedback(clarityFeedback)
-                    .confidenceScore(0.85)
-                    .modelUsed("Gemini-Free")
-                    .processingTimeMs(System.currentTimeMillis())
-                    .assignedTo(assignedTo)                         // add this field to your DTO if not present
-                    .build();
+            ReplyRetrievalIndex.Match similar = replyRetrievalIndex.findSimilar(
+                    email.getSubject(), email.getCleanBody() != null ? email.getCleanBody() : email.getBody(),
+                    email.getIntent(), exampleSimilarity);
+            // Custom context means the caller wants something new, not last week's answer
+            if (similar != null && similar.similarity() >= reuseSimilarity && request.getAdditionalContext() == null) {
+                log.info("Reusing reply to {} for email {} (similarity {})",
+                        similar.emailId(), email.getId(), similar.similarity());
+                return timed(buildReplyResponse(request, similar.reply(), ReplyRetrievalIndex.MODEL_NAME,
+                        similar.similarity(), assignedTo, List.of(), similar.emailId()), stage, "reused");
+            }
+            String prompt = buildReplyGenerationPrompt(email, request, similar);
+            LlmRouter.Result response = llmRouter.chat(replyTier, AiSystemInstructions.REPLY, prompt);
+            String generatedReply = response.text();
+            return timed(buildReplyResponse(request, generatedReply, response.model(), 0.85, assignedTo,
+                    List.of(callRecord("reply", response, null)), null), stage, "generated");
 
         } catch (Exception e) {
             log.error("Error generating reply: {}", e.getMessage(), e);
@@ -521,12 +624,75 @@ public class OpenAiServiceImpl implements AiService {
         }
     }
 
+    /**
+     * Stamp the reply with how long it took; the stage records it when it closes
+     */
+    private static AiReplyResponse timed(AiReplyResponse response, PipelineMetrics.Stage stage, String outcome) {
+        stage.complete(response.getModelUsed(), response.getLlmCalls() != null ? response.getLlmCalls().size() : 0, outcome);
+        response.setProcessingTimeMs(stage.elapsedMs());
+        return response;
+    }
+
+    private AiReplyResponse buildReplyResponse(AiReplyRequest request, String generatedReply, String modelUsed,
+                                               double confidenceScore, String assignedTo,
+                                               List<LlmCallRecord> llmCalls, String reusedFromEmailId) {
+        // For feedback, you could still call Gemini, but here it's kept simple as original
+        List<AiReplyResponse.FeedbackItem> toneFeedback = new ArrayList<>();
+        List<AiReplyResponse.FeedbackItem> clarityFeedback = new ArrayList<>();
+
+        if (Boolean.TRUE.equals(request.getIncludeToneFeedback())) {
+            toneFeedback = analyzeTone(generatedReply);
+        }
+
+        if (Boolean.TRUE.equals(request.getIncludeClarityFeedback())) {
+            clarityFeedback = analyzeClarity(generatedReply);
+        }
+
+        return AiReplyResponse.builder()
+                .emailId(request.getEmailId())
+                .generatedReply(generatedReply)
+                .tone(request.getTone())
+                .style(request.getStyle())
+                .toneFeedback(toneFeedback)
+                .clarityFeedback(clarityFeedback)
+                .confidenceScore(confidenceScore)
+                .modelUsed(modelUsed)
+                .assignedTo(assignedTo)                         // add this field to your DTO if not present
+                .llmCalls(llmCalls)
+                .reusedFromEmailId(reusedFromEmailId)
+                .build();
+    }
+
     @Override
     public Email.SentimentAnalysisResult analyzeSentiment(String content) {
+        // The LLM is only a fallback for text the local scorer finds ambiguous
+        Email.SentimentAnalysisResult localResult = sentimentScorer.score(content);
+        if (localResult != null) {
+            return localResult;
+        }
         try {
             String prompt = buildSentimentAnalysisPrompt(content);
-            String response = geminiApiClient.getChatCompletion(prompt);
-            return parseSentimentResponse(response);
+            List<LlmCallRecord> calls = new ArrayList<>(2);
+            Email.SentimentAnalysisResult result;
+            LlmRouter.Result response;
+            try {
+                response = llmRouter.json(triageTier, AiSystemInstructions.SENTIMENT, prompt, AiResponseSchemas.SENTIMENT);
+                calls.add(callRecord("sentiment", response, null));
+                result = AiResponseParser.parseSentiment(response.text());
+            } catch (IOException | RuntimeException e) {
+                // Sentiment has no confidence to judge, so only an unusable answer escalates
+                if (escalationTier == triageTier) {
+                    throw e;
+                }
+                String reason = e instanceof IOException ? "parse-failure" : "call-failure";
+                log.warn("Sentiment analysis on {} tier escalating after {}: {}", triageTier, reason, e.getMessage());
+                response = llmRouter.json(escalationTier, AiSystemInstructions.SENTIMENT, prompt, AiResponseSchemas.SENTIMENT);
+                calls.add(callRecord("sentiment", response, reason));
+                result = parseSentimentResponse(response.text());
+            }
+            result.setModelUsed(response.model());
+            result.setLlmCalls(calls);
+            return result;
         } catch (Exception e) {
             log.error("Error analyzing sentiment: {}", e.getMessage(), e);
             return Email.SentimentAnalysisResult.builder()
@@ -543,8 +709,8 @@ public class OpenAiServiceImpl implements AiService {
     public List<AiReplyResponse.FeedbackItem> analyzeReplyQuality(String reply, String originalEmail) {
         try {
             String prompt = buildQualityAnalysisPrompt(reply, originalEmail);
-            String response = geminiApiClient.getChatCompletion(prompt);
-            return parseQualityFeedback(response);
+            LlmRouter.Result response = llmRouter.json(qualityTier, AiSystemInstructions.QUALITY, prompt, AiResponseSchemas.QUALITY);
+            return parseQualityFeedback(response.text());
         } catch (Exception e) {
             log.error("Error analyzing reply quality: {}", e.getMessage(), e);
             return new ArrayList<>();
@@ -554,41 +720,15 @@ public class OpenAiServiceImpl implements AiService {
     // Builders, Parsers (unchanged, but make sure to update parseIntentResponse to also parse the values from Gemini's response format)
     // Reuse existing prompt builders
 
-    private String buildIntentAnalysisPrompt(String subject, String body) {
+    String buildIntentAnalysisPrompt(String subject, String body) {
         return String.format("""
-            Analyze the following email and determine the customer's intent:
-
             Subject: %s
             Body: %s
-
-            Intent categories:
-            - REFUND_REQUEST: Customer wants a refund
-            - BUG_REPORT: Customer reports a bug or technical issue
-            - FEATURE_INQUIRY: Customer asks about features or capabilities
-            - GENERAL_SUPPORT: General customer support questions
-            - BILLING_ISSUE: Billing or payment related issues
-            - TECHNICAL_SUPPORT: Technical problems or questions
-            - COMPLAINT: Customer complaints or dissatisfaction
-            - FEEDBACK: Customer feedback or suggestions
-
-            Respond strictly in JSON format:
-            {
-                "intent": "INTENT_CATEGORY",
-                "confidence": 0.95,
-                "reasoning": "Brief explanation",
-                "intentScores": {
-                    "REFUND_REQUEST": 0.1,
-                    "BUG_REPORT": 0.8,
-                    "FEATURE_INQUIRY": 0.05
-                }
-            }
-            """, subject, body);
+            """, subject, TokenEstimator.truncate(body, intentBudgetTokens));
     }
 
-    private String buildReplyGenerationPrompt(Email email, AiReplyRequest request) {
-        return String.format("""
-            Generate a professional reply to this customer email:
-
+    String buildReplyGenerationPrompt(Email email, AiReplyRequest request, ReplyRetrievalIndex.Match example) {
+        String prompt = String.format("""
             Original Email:
             From: %s
             Subject: %s
@@ -600,118 +740,81 @@ public class OpenAiServiceImpl implements AiService {
             - Tone: %s
             - Style: %s
             - Additional Context: %s
-
-            Generate a helpful, professional, and empathetic reply that addresses the customer's needs.
             """, 
             email.getFrom(), 
             email.getSubject(), 
-            email.getBody(),
+            TokenEstimator.truncate(email.getCleanBody() != null ? email.getCleanBody() : email.getBody(), replyBudgetTokens),
             email.getIntent(),
             request.getTone() != null ? request.getTone() : "professional",
             request.getStyle() != null ? request.getStyle() : "detailed",
             request.getAdditionalContext() != null ? request.getAdditionalContext() : "none"
         );
+        if (example == null) {
+            return prompt;
+        }
+        return prompt + String.format("""
+
+            A similar email was answered before. Use the reply as a guide to facts and policy, adapted to this email:
+            Subject: %s
+            Reply: %s
+            """, example.subject(), TokenEstimator.truncate(example.reply(), exampleBudgetTokens));
     }
 
-    private String buildSentimentAnalysisPrompt(String content) {
+    String buildSentimentAnalysisPrompt(String content) {
         return String.format("""
-            Analyze the sentiment and urgency of this text:
-
             Text: %s
-
-            Respond in JSON format:
-            {
-                "sentiment": "positive|negative|neutral",
-                "score": 0.85,
-                "urgency": "low|medium|high|urgent",
-                "language": "en",
-                "customerTier": "standard|premium|enterprise"
-            }
-            """, content);
+            """, TokenEstimator.truncate(content, sentimentBudgetTokens));
     }
 
-    private String buildQualityAnalysisPrompt(String reply, String originalEmail) {
+    String buildQualityAnalysisPrompt(String reply, String originalEmail) {
         return String.format("""
-            Analyze the quality of this reply to the original email:
-
             Original Email: %s
             Reply: %s
-
-            Provide feedback on tone and clarity. Respond in JSON format:
-            {
-                "toneFeedback": [
-                    {
-                        "category": "professionalism",
-                        "suggestion": "Consider using more formal language",
-                        "reason": "The tone is too casual for a business context",
-                        "severity": "medium"
-                    }
-                ],
-                "clarityFeedback": [
-                    {
-                        "category": "structure",
-                        "suggestion": "Break down the response into bullet points",
-                        "reason": "The response is too long and dense",
-                        "severity": "high"
-                    }
-                ]
-            }
-            """, originalEmail, reply);
+            """, TokenEstimator.truncate(originalEmail, qualityBudgetTokens), TokenEstimator.truncate(reply, qualityBudgetTokens));
     }
 
-    // Use same simple JSON parsing methods as before
-    private Email.IntentAnalysisResult parseIntentResponse(String response) {
-        try {
-            String intent = extractJsonValue(response, "intent");
-            String confidence = extractJsonValue(response, "confidence");
-            String reasoning = extractJsonValue(response, "reasoning");
-
-            Email.EmailIntent emailIntent;
-            try {
-                emailIntent = (intent != null && !intent.trim().isEmpty())
-                        ? Email.EmailIntent.valueOf(intent.toUpperCase())
-                        : Email.EmailIntent.UNKNOWN;
-            } catch (IllegalArgumentException e) {
-                emailIntent = Email.EmailIntent.UNKNOWN;
-            }
+    private static double confidenceOf(Email.IntentAnalysisResult result) {
+        return result.getConfidence() != null ? result.getConfidence() : 0.0;
+    }
 
-            double confidenceValue = 0.0;
-            if (confidence != null && !confidence.trim().isEmpty()) {
-                try { confidenceValue = Double.parseDouble(confidence); }
-                catch (NumberFormatException ignored) {}
-            }
+    private static LlmCallRecord callRecord(String task, LlmRouter.Result response, String escalationReason) {
+        return LlmCallRecord.builder()
+                .task(task)
+                .tier(response.tier().name())
+                .provider(response.provider())
+                .model(response.model())
+                .latencyMs(response.latencyMs())
+                .inputTokens(response.inputTokens())
+                .cachedTokens(response.cachedTokens())
+                .outputTokens(response.outputTokens())
+                .tokensEstimated(!response.usageReported())
+                .costUsd(response.costUsd())
+                .hedged(response.hedged())
+                .escalated(escalationReason != null)
+                .escalationReason(escalationReason)
+                .calledAt(LocalDateTime.now())
+                .build();
+    }
 
-            return Email.IntentAnalysisResult.builder()
-                    .intent(emailIntent)
-                    .confidence(confidenceValue)
-                    .reasoning(reasoning != null ? reasoning : "AI analysis completed")
-                    .intentScores(new HashMap<>())
-                    .build();
-        } catch (Exception e) {
+    Email.IntentAnalysisResult parseIntentResponse(String response) {
+        try {
+            return AiResponseParser.parseIntent(response);
+        } catch (IOException e) {
+            log.warn("Unparseable intent response: {}", e.getMessage());
             return Email.IntentAnalysisResult.builder()
                     .intent(Email.EmailIntent.UNKNOWN)
                     .confidence(0.0)
                     .reasoning("Error parsing response: " + e.getMessage())
+                    .intentScores(Map.of())
                     .build();
         }
     }
 
-    private Email.SentimentAnalysisResult parseSentimentResponse(String response) {
+    Email.SentimentAnalysisResult parseSentimentResponse(String response) {
         try {
-            String sentiment = extractJsonValue(response, "sentiment");
-            String score = extractJsonValue(response, "score");
-            String urgency = extractJsonValue(response, "urgency");
-            String language = extractJsonValue(response, "language");
-            String customerTier = extractJsonValue(response, "customerTier");
-
-            return Email.SentimentAnalysisResult.builder()
-                    .sentiment(sentiment)
-                    .score(score != null && !score.isEmpty() ? Double.parseDouble(score) : 0.0)
-                    .urgency(urgency)
-                    .language(language)
-                    .customerTier(customerTier)
-                    .build();
-        } catch (Exception e) {
+            return AiResponseParser.parseSentiment(response);
+        } catch (IOException e) {
+            log.warn("Unparseable sentiment response: {}", e.getMessage());
             return Email.SentimentAnalysisResult.builder()
                     .sentiment("neutral")
                     .score(0.0)
@@ -723,14 +826,17 @@ public class OpenAiServiceImpl implements AiService {
     }
 
     private List<AiReplyResponse.FeedbackItem> parseQualityFeedback(String response) {
-        List<AiReplyResponse.FeedbackItem> feedback = new ArrayList<>();
-        feedback.add(AiReplyResponse.FeedbackItem.builder()
-                .category("tone")
-                .suggestion("Consider the tone")
-                .reason("AI analysis")
-                .severity("medium")
-                .build());
-        return feedback;
+        try {
+            AiResponseParser.QualityFeedback parsed = AiResponseParser.parseQualityFeedback(response);
+            List<AiReplyResponse.FeedbackItem> feedback =
+                    new ArrayList<>(parsed.toneFeedback().size() + parsed.clarityFeedback().size());
+            feedback.addAll(parsed.toneFeedback());
+            feedback.addAll(parsed.clarityFeedback());
+            return feedback;
+        } catch (IOException e) {
+            log.warn("Unparseable reply quality response: {}", e.getMessage());
+            return new ArrayList<>();
+        }
     }
 
     private List<AiReplyResponse.FeedbackItem> analyzeTone(String reply) {
@@ -759,21 +865,4 @@ public class OpenAiServiceImpl implements AiService {
         return feedback;
     }
 
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
-        }
-        // Try to extract numeric values
-        pattern = "\"" + key + "\"\\s*:\\s*([0-9.]+)";
-        p = java.util.regex.Pattern.compile(pattern);
-        m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
-        }
-        return "";
-    }
-
 }
@@ -0,0 +1,170 @@
+package com.emailassistant.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over whole-word phrases, compiled into a dense DFA.
+ *
+ * Text is folded to a small alphabet (letters, digits, apostrophe, separator) and runs of
+ * separators are collapsed, so phrases match on word boundaries regardless of punctuation
+ * and spacing. Scanning allocates nothing; matches are reported through a callback.
+ */
+public final class PhraseAutomaton {
+
+    private static final int SEPARATOR = 0;
+    private static final int ALPHABET = 39;
+
+    private final int[] transitions;
+    private final int[] patternAt;
+    private final int[] outputLink;
+
+    private PhraseAutomaton(int[] transitions, int[] patternAt, int[] outputLink) {
+        this.transitions = transitions;
+        this.patternAt = patternAt;
+        this.outputLink = outputLink;
+    }
+
+    /**
+     * Compile phrases; the id reported for a match is the phrase's index in the list
+     */
+    public static PhraseAutomaton compile(List<String> phrases) {
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(newNode());
+        terminal.add(-1);
+
+        for (int id = 0; id < phrases.size(); id++) {
+            int[] symbols = fold(phrases.get(id));
+            int state = 0;
+            for (int symbol : symbols) {
+                int next = trie.get(state)[symbol];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newNode());
+                    terminal.add(-1);
+                    trie.get(state)[symbol] = next;
+                }
+                state = next;
+            }
+            terminal.set(state, id);
+        }
+
+        int states = trie.size();
+        int[] transitions = new int[states * ALPHABET];
+        int[] fail = new int[states];
+        int[] patternAt = new int[states];
+        int[] outputLink = new int[states];
+        Arrays.fill(outputLink, -1);
+        for (int s = 0; s < states; s++) {
+            patternAt[s] = terminal.get(s);
+        }
+
+        // Breadth-first: resolve failure links into full DFA transitions
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int child = trie.get(0)[symbol];
+            if (child < 0) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = child;
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failState = fail[state];
+            outputLink[state] = patternAt[failState] >= 0 ? failState : outputLink[failState];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = trie.get(state)[symbol];
+                if (child < 0) {
+                    transitions[state * ALPHABET + symbol] = transitions[failState * ALPHABET + symbol];
+                } else {
+                    transitions[state * ALPHABET + symbol] = child;
+                    fail[child] = transitions[failState * ALPHABET + symbol];
+                    queue.add(child);
+                }
+            }
+        }
+        return new PhraseAutomaton(transitions, patternAt, outputLink);
+    }
+
+    /**
+     * Scan text, reporting every phrase match together with the number of words seen so far
+     */
+    public void scan(CharSequence text, MatchListener listener) {
+        int state = transitions[SEPARATOR];
+        boolean separated = true;
+        int words = 0;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            int symbol = i < length ? symbolOf(text.charAt(i)) : SEPARATOR;
+            if (symbol == SEPARATOR) {
+                if (separated) {
+                    continue;
+                }
+                separated = true;
+                words++;
+            } else {
+                separated = false;
+            }
+            state = transitions[state * ALPHABET + symbol];
+            if (symbol == SEPARATOR) {
+                for (int s = patternAt[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                    listener.onMatch(patternAt[s], words);
+                }
+            }
+        }
+    }
+
+    public int stateCount() {
+        return patternAt.length;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static int[] fold(String phrase) {
+        int[] buffer = new int[phrase.length() + 2];
+        int size = 0;
+        buffer[size++] = SEPARATOR;
+        for (int i = 0; i < phrase.length(); i++) {
+            int symbol = symbolOf(phrase.charAt(i));
+            if (symbol == SEPARATOR && buffer[size - 1] == SEPARATOR) {
+                continue;
+            }
+            buffer[size++] = symbol;
+        }
+        if (buffer[size - 1] != SEPARATOR) {
+            buffer[size++] = SEPARATOR;
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private static int symbolOf(char ch) {
+        if (ch >= 'a' && ch <= 'z') {
+            return 1 + (ch - 'a');
+        }
+        if (ch >= 'A' && ch <= 'Z') {
+            return 1 + (ch - 'A');
+        }
+        if (ch >= '0' && ch <= '9') {
+            return 27 + (ch - '0');
+        }
+        if (ch == '\'' || ch == '\u2019') {
+            return 37;
+        }
+        return ch > 127 && Character.isLetter(ch) ? 38 : SEPARATOR;
+    }
+
+    @FunctionalInterface
+    public interface MatchListener {
+        void onMatch(int phraseId, int wordIndex);
+    }
+}
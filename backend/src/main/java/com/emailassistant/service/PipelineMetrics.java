@@ -0,0 +1,250 @@
+package com.emailassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer timers for the email pipeline, exposed at /actuator/prometheus.
+ *
+ * {@code email.stage.duration} times each stage (dedup, save, sentiment, intent, assignment,
+ * final-save, reply) tagged by stage, intent, model and outcome; {@code email.triage.duration}
+ * times a whole ingestion tagged by intent, path (fresh, follow-up, duplicate) and outcome, and
+ * {@code email.stage.llm.calls} counts the LLM calls each stage made. Triage stages are buffered
+ * in a {@link Run} and published together when the email's intent is known, so sentiment, which
+ * runs before intent, is still tagged with it. Every stage is also a
+ * {@link FlightRecorderEvents.PipelineStage} flight recorder event, committed as it closes, and a
+ * span that is current while the stage runs, so LLM and Mongo spans nest under it.
+ */
+@Component
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    public static final String DEDUP = "dedup";
+    public static final String SAVE = "save";
+    public static final String SENTIMENT = "sentiment";
+    public static final String INTENT = "intent";
+    public static final String ASSIGNMENT = "assignment";
+    public static final String FINAL_SAVE = "final-save";
+    public static final String REPLY = "reply";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+    private final Tracer tracer;
+
+    /**
+     * Start timing one email's ingestion
+     */
+    public Run begin() {
+        return new Run(System.nanoTime());
+    }
+
+    /**
+     * Time a stage outside triage, e.g. a reply generation; published as soon as it closes
+     */
+    public Stage stage(String name, Object intent, String messageId) {
+        return new Stage(null, name, intent != null ? intent.toString() : null, messageId);
+    }
+
+    private void record(String stage, long nanos, String intent, String model, String outcome, int llmCalls) {
+        Timer.builder("email.stage.duration")
+                .description("Time spent in one stage of the email pipeline")
+                .tag("stage", stage)
+                .tag("intent", tag(intent))
+                .tag("model", tag(model))
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (llmCalls > 0) {
+            Counter.builder("email.stage.llm.calls")
+                    .description("LLM calls made by a pipeline stage, escalations included")
+                    .tag("stage", stage)
+                    .tag("model", tag(model))
+                    .register(registry)
+                    .increment(llmCalls);
+        }
+    }
+
+    private static String tag(String value) {
+        return value != null && !value.isBlank() ? value : NONE;
+    }
+
+    /**
+     * Timings of one email's way through triage. Each stage is a try-with-resources block that
+     * counts as failed unless {@link Stage#complete} is called before it closes.
+     */
+    public final class Run {
+
+        private final long startNanos;
+        // The request's span, which outlives the stage spans
+        private final Span requestSpan = tracer.currentSpan();
+        private final List<StageTiming> stages = new ArrayList<>(8);
+        private final Map<String, Long> durationsMs = new LinkedHashMap<>();
+        private String path = "fresh";
+        private String messageId;
+        private boolean finished;
+
+        private Run(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        public Stage stage(String name) {
+            return new Stage(this, name, null, null);
+        }
+
+        /**
+         * Also tags the request span, so the trace can be found by Message-ID
+         */
+        public Run messageId(String messageId) {
+            this.messageId = messageId;
+            tagRequestSpan(RecentSpanExporter.MESSAGE_ID, messageId);
+            return this;
+        }
+
+        public Run emailId(String emailId) {
+            tagRequestSpan(RecentSpanExporter.EMAIL_ID, emailId);
+            return this;
+        }
+
+        private void tagRequestSpan(String key, String value) {
+            if (requestSpan != null && value != null) {
+                requestSpan.tag(key, value);
+            }
+        }
+
+        public Run path(String path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * Milliseconds per stage so far; a stage that ran twice is summed
+         */
+        public Map<String, Long> durationsMs() {
+            return durationsMs;
+        }
+
+        public long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Publish every stage and the end-to-end time; later calls are ignored
+         */
+        public void finish(Object intent, String outcome) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            String intentTag = intent != null ? intent.toString() : null;
+            for (StageTiming timing : stages) {
+                record(timing.stage, timing.nanos, intentTag, timing.model, timing.outcome, timing.llmCalls);
+            }
+            Timer.builder("email.triage.duration")
+                    .description("Time from receiving an email to its triage being saved")
+                    .tag("intent", tag(intentTag))
+                    .tag("path", path)
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void add(StageTiming timing) {
+            stages.add(timing);
+            durationsMs.merge(timing.stage, TimeUnit.NANOSECONDS.toMillis(timing.nanos), Long::sum);
+        }
+    }
+
+    public final class Stage implements AutoCloseable {
+
+        private final Run run;
+        private final String name;
+        private final String intent;
+        private final String messageId;
+        private final FlightRecorderEvents.PipelineStage event = new FlightRecorderEvents.PipelineStage();
+        private final Span span;
+        private final Tracer.SpanInScope spanScope;
+        private final long startNanos;
+        private String model;
+        private String outcome;
+        private int llmCalls;
+
+        private Stage(Run run, String name, String intent, String messageId) {
+            this.run = run;
+            this.name = name;
+            this.intent = intent;
+            this.messageId = messageId;
+            event.begin();
+            span = tracer.nextSpan().name("email." + name).start();
+            if (messageId != null) {
+                span.tag(RecentSpanExporter.MESSAGE_ID, messageId);
+            }
+            spanScope = tracer.withSpan(span);
+            this.startNanos = System.nanoTime();
+        }
+
+        public long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        public void complete() {
+            complete(null, 0);
+        }
+
+        public void complete(String model, int llmCalls) {
+            complete(model, llmCalls, "success");
+        }
+
+        /**
+         * e.g. "local" when a local model answered, "existing" when the lookup found the email
+         */
+        public void complete(String model, int llmCalls, String outcome) {
+            this.model = model;
+            this.llmCalls = llmCalls;
+            this.outcome = outcome;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            String finalOutcome = outcome != null ? outcome : "error";
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = name;
+                event.messageId = run != null ? run.messageId : messageId;
+                event.model = model;
+                event.outcome = finalOutcome;
+                event.llmCalls = llmCalls;
+                event.commit();
+            }
+            spanScope.close();
+            if (model != null) {
+                span.tag("llm.model", model);
+            }
+            span.tag("outcome", finalOutcome).tag("llm.calls", llmCalls);
+            if (outcome == null) {
+                span.error(new IllegalStateException("Stage " + name + " did not complete"));
+            }
+            span.end();
+            if (run != null) {
+                run.add(new StageTiming(name, nanos, model, finalOutcome, llmCalls));
+            } else {
+                record(name, nanos, intent, model, finalOutcome, llmCalls);
+            }
+        }
+    }
+
+    private record StageTiming(String stage, long nanos, String model, String outcome, int llmCalls) {
+    }
+}
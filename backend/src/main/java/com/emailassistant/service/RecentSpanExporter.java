@@ -0,0 +1,172 @@
+package com.emailassistant.service;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory exporter keeping the spans of the most recent traces, so tail latency can be pinned
+ * to a stage of one email straight from the running service. Traces are looked up by id or by the
+ * email id / Message-ID the pipeline tags them with; the oldest trace is evicted past the limit.
+ */
+@Component
+public class RecentSpanExporter implements SpanExporter {
+
+    public static final String EMAIL_ID = "email.id";
+    public static final String MESSAGE_ID = "email.message_id";
+
+    @Value("${tracing.recent.max-traces:2000}")
+    private int maxTraces;
+
+    // traceId -> spans, in arrival order so the eldest entry is the oldest trace
+    private final LinkedHashMap<String, List<SpanData>> traces = new LinkedHashMap<>(256, 0.75f, false);
+    private final Map<String, String> traceByEmail = new HashMap<>();
+    private boolean shutdown;
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        if (shutdown) {
+            return CompletableResultCode.ofFailure();
+        }
+        for (SpanData span : spans) {
+            traces.computeIfAbsent(span.getTraceId(), id -> new ArrayList<>()).add(span);
+            index(span, EMAIL_ID);
+            index(span, MESSAGE_ID);
+        }
+        while (traces.size() > maxTraces) {
+            String eldest = traces.keySet().iterator().next();
+            for (SpanData span : traces.remove(eldest)) {
+                unindex(span, EMAIL_ID);
+                unindex(span, MESSAGE_ID);
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        shutdown = true;
+        traces.clear();
+        traceByEmail.clear();
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * Spans of one trace ordered by start time, or null if it is not (or no longer) held
+     */
+    public synchronized List<Map<String, Object>> getTrace(String traceId) {
+        List<SpanData> spans = traces.get(traceId);
+        if (spans == null) {
+            return null;
+        }
+        long traceStart = spans.stream().mapToLong(SpanData::getStartEpochNanos).min().orElse(0);
+        return spans.stream()
+                .sorted(Comparator.comparingLong(SpanData::getStartEpochNanos))
+                .map(span -> describe(span, traceStart))
+                .toList();
+    }
+
+    /**
+     * Trace of an email, by email id or Message-ID
+     */
+    public synchronized List<Map<String, Object>> getEmailTrace(String emailIdOrMessageId) {
+        String traceId = traceByEmail.get(emailIdOrMessageId);
+        return traceId != null ? getTrace(traceId) : null;
+    }
+
+    /**
+     * Summaries of the slowest traces held, longest first
+     */
+    public synchronized List<Map<String, Object>> getSlowestTraces(int limit) {
+        List<Map<String, Object>> summaries = new ArrayList<>(traces.size());
+        for (Map.Entry<String, List<SpanData>> trace : traces.entrySet()) {
+            List<SpanData> spans = trace.getValue();
+            SpanData root = spans.stream()
+                    .filter(span -> !span.getParentSpanContext().isValid())
+                    .findFirst()
+                    .orElse(spans.get(0));
+            long start = spans.stream().mapToLong(SpanData::getStartEpochNanos).min().orElse(0);
+            long end = spans.stream().mapToLong(SpanData::getEndEpochNanos).max().orElse(0);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("traceId", trace.getKey());
+            summary.put("root", root.getName());
+            summary.put("durationMs", TimeUnit.NANOSECONDS.toMillis(end - start));
+            summary.put("spans", spans.size());
+            summary.put("emailId", attribute(spans, EMAIL_ID));
+            summary.put("messageId", attribute(spans, MESSAGE_ID));
+            summary.put("slowestStage", spans.stream()
+                    .filter(span -> span != root)
+                    .max(Comparator.comparingLong(span -> span.getEndEpochNanos() - span.getStartEpochNanos()))
+                    .map(SpanData::getName)
+                    .orElse(null));
+            summaries.add(summary);
+        }
+        summaries.sort(Comparator.comparingLong((Map<String, Object> summary) -> (Long) summary.get("durationMs")).reversed());
+        return summaries.subList(0, Math.min(limit, summaries.size()));
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("traces", traces.size());
+        statistics.put("maxTraces", maxTraces);
+        statistics.put("emailsIndexed", traceByEmail.size());
+        return statistics;
+    }
+
+    private void index(SpanData span, String key) {
+        String value = span.getAttributes().get(AttributeKey.stringKey(key));
+        if (value != null) {
+            traceByEmail.put(value, span.getTraceId());
+        }
+    }
+
+    private void unindex(SpanData span, String key) {
+        String value = span.getAttributes().get(AttributeKey.stringKey(key));
+        if (value != null) {
+            traceByEmail.remove(value, span.getTraceId());
+        }
+    }
+
+    private static String attribute(List<SpanData> spans, String key) {
+        for (SpanData span : spans) {
+            String value = span.getAttributes().get(AttributeKey.stringKey(key));
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> describe(SpanData span, long traceStart) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("spanId", span.getSpanId());
+        entry.put("parentSpanId", span.getParentSpanContext().isValid() ? span.getParentSpanId() : null);
+        entry.put("name", span.getName());
+        entry.put("kind", span.getKind());
+        entry.put("startOffsetMs", (span.getStartEpochNanos() - traceStart) / 1_000_000.0);
+        entry.put("durationMs", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000.0);
+        entry.put("error", span.getStatus().getStatusCode() == StatusCode.ERROR);
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+        entry.put("attributes", attributes);
+        return entry;
+    }
+}
@@ -0,0 +1,273 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.AiReplyRequest;
+import com.emailassistant.dto.AiReplyResponse;
+import com.emailassistant.model.Email;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Speculatively drafts replies for newly triaged high-priority emails, so an agent opening one
+ * gets the draft instantly instead of waiting on the LLM.
+ *
+ * Drafts run as {@link LlmWorkClass#BATCH} work and only use spare quota: nothing starts while
+ * interactive LLM work is queued or in flight, shortly after some, or while the primary provider
+ * is busy. Interactive work arriving mid-draft abandons the draft and requeues the email.
+ * Each draft is traced as a child of the request that triaged the email.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReplyPregenerator {
+
+    private static final long POLL_MS = 100;
+
+    private static final Comparator<Candidate> ORDER = Comparator
+            .comparing((Candidate candidate) -> candidate.priority().ordinal()).reversed()
+            .thenComparingLong(Candidate::queuedAt);
+
+    private final EmailService emailService;
+    private final AiService aiService;
+    private final LlmRouter llmRouter;
+    private final LlmScheduler llmScheduler;
+    private final Tracer tracer;
+
+    @Value("${ai.pregeneration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.pregeneration.priorities:URGENT,HIGH}")
+    private Set<Email.Priority> priorities;
+
+    @Value("${ai.pregeneration.tone:professional}")
+    private String tone;
+
+    @Value("${ai.pregeneration.style:detailed}")
+    private String style;
+
+    // Share of the primary provider's slots above which no draft is started
+    @Value("${ai.pregeneration.max-utilisation:0.5}")
+    private double maxUtilisation;
+
+    // Quiet period after an interactive request before drafting resumes
+    @Value("${ai.pregeneration.interactive-quiet-ms:2000}")
+    private long interactiveQuietMs;
+
+    @Value("${ai.pregeneration.max-queued:500}")
+    private int maxQueued;
+
+    @Value("${ai.pregeneration.max-age-minutes:60}")
+    private long maxAgeMinutes;
+
+    @Value("${ai.pregeneration.max-attempts:3}")
+    private int maxAttempts;
+
+    private final PriorityBlockingQueue<Candidate> queue = new PriorityBlockingQueue<>(64, ORDER);
+    private volatile boolean running;
+    private Thread scheduler;
+    private ExecutorService drafter;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong preempted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        drafter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reply-pregeneration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = new Thread(this::run, "reply-pregeneration-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.interrupt();
+        }
+        if (drafter != null) {
+            drafter.shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void onEmailTriaged(EmailTriagedEvent event) {
+        if (!running || event.priority() == null || !priorities.contains(event.priority())) {
+            return;
+        }
+        if (queue.size() >= maxQueued) {
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(new Candidate(event.emailId(), event.priority(), System.currentTimeMillis(), 0,
+                tracer.currentSpan()));
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Key of the reply parameters a draft was generated with; a request only gets the draft on an exact match
+     */
+    public static String parametersKey(AiReplyRequest request) {
+        if (request.getAdditionalContext() != null && !request.getAdditionalContext().isBlank()) {
+            return null;
+        }
+        String requestTone = request.getTone() != null ? request.getTone() : "professional";
+        String requestStyle = request.getStyle() != null ? request.getStyle() : "detailed";
+        return requestTone.trim().toLowerCase(Locale.ROOT) + "|" + requestStyle.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Drafting statistics for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queueSize", queue.size());
+        stats.put("queued", queued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("generated", generated.get());
+        stats.put("preempted", preempted.get());
+        stats.put("skipped", skipped.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Candidate candidate = queue.take();
+                if (System.currentTimeMillis() - candidate.queuedAt() > TimeUnit.MINUTES.toMillis(maxAgeMinutes)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                while (!canDraft()) {
+                    Thread.sleep(POLL_MS);
+                }
+                draft(candidate);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Reply pre-generation loop error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean canDraft() {
+        return llmScheduler.demand(LlmWorkClass.INTERACTIVE) == 0
+                && System.currentTimeMillis() - llmScheduler.lastOpenedAt(LlmWorkClass.INTERACTIVE) >= interactiveQuietMs
+                && llmRouter.hasSpareCapacity(maxUtilisation);
+    }
+
+    private void draft(Candidate candidate) throws InterruptedException {
+        Future<Boolean> task = drafter.submit(() -> generate(candidate));
+        while (true) {
+            try {
+                if (task.get(POLL_MS, TimeUnit.MILLISECONDS)) {
+                    generated.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                }
+                return;
+            } catch (TimeoutException e) {
+                if (llmScheduler.demand(LlmWorkClass.INTERACTIVE) > 0) {
+                    task.cancel(true);
+                    preempted.incrementAndGet();
+                    if (candidate.attempts() + 1 < maxAttempts) {
+                        queue.offer(new Candidate(candidate.emailId(), candidate.priority(),
+                                candidate.queuedAt(), candidate.attempts() + 1, candidate.origin()));
+                    }
+                    log.debug("Pre-empted reply draft for email {}", candidate.emailId());
+                    return;
+                }
+            } catch (CancellationException | ExecutionException e) {
+                failed.incrementAndGet();
+                log.warn("Reply pre-generation failed for email {}: {}", candidate.emailId(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draft and store a reply, unless the email has moved on or already has one
+     */
+    private boolean generate(Candidate candidate) {
+        Span span = (candidate.origin() != null ? tracer.nextSpan(candidate.origin()) : tracer.nextSpan())
+                .name("email.pregenerate-reply")
+                .tag(RecentSpanExporter.EMAIL_ID, candidate.emailId())
+                .tag("attempt", candidate.attempts())
+                .start();
+        try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+            boolean stored = generate(candidate.emailId());
+            span.tag("stored", stored);
+            return stored;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private boolean generate(String emailId) {
+        Email email = emailService.getEmailById(emailId).orElse(null);
+        if (email == null || email.getAiGeneratedReply() != null || email.getFinalReply() != null) {
+            return false;
+        }
+        AiReplyRequest request = AiReplyRequest.builder()
+                .emailId(emailId)
+                .tone(tone)
+                .style(style)
+                .build();
+        AiReplyResponse response;
+        try (LlmScheduler.Scope scope = llmScheduler.open(LlmWorkClass.BATCH, "team:" + email.getAssignedTeam())) {
+            response = aiService.draftReply(request, email);
+        }
+        if (Thread.interrupted()) {
+            // Pre-empted after the LLM answered: the draft is abandoned, its cost is not. The flag
+            // is cleared first so the Mongo driver does not abort the write, then restored
+            try {
+                emailService.recordDiscardedReply(emailId, response);
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+        return emailService.recordSpeculativeReply(emailId, response, parametersKey(request));
+    }
+
+    private record Candidate(String emailId, Email.Priority priority, long queuedAt, int attempts, Span origin) {
+    }
+}
@@ -0,0 +1,392 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.repository.EmailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Similar-ticket retrieval over answered emails, so a reply can start from how a near-identical
+ * question was answered before.
+ *
+ * Emails are TF-IDF vectors over the same hashed unigram/bigram features as the local intent
+ * classifier, L2-normalised so a dot product is the cosine similarity. The index is an inverted
+ * file from feature to (document, weight); a query only walks the postings of its heaviest
+ * features, which keeps lookups cheap and exact enough without an approximate graph. Replies sent since
+ * the last rebuild are scanned directly until the next rebuild folds them in.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReplyRetrievalIndex {
+
+    public static final String MODEL_NAME = "reply-cache";
+
+    private static final int RERANK_CANDIDATES = 8;
+
+    private final EmailRepository emailRepository;
+    private final EmailBodyService emailBodyService;
+
+    @Value("${ai.reply-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.reply-cache.max-documents:50000}")
+    private int maxDocuments;
+
+    @Value("${ai.reply-cache.max-pending:5000}")
+    private int maxPending;
+
+    // Heaviest query features whose postings are walked; the rest barely move the ranking
+    @Value("${ai.reply-cache.query-features:32}")
+    private int queryFeatures;
+
+    @Value("${ai.reply-cache.min-features:6}")
+    private int minFeatures;
+
+    private volatile Index index = Index.EMPTY;
+    private final List<Document> pending = new ArrayList<>();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong matches = new AtomicLong();
+
+    /**
+     * Closest answered email at or above the given cosine similarity, or null. Emails with the
+     * same intent are preferred when both intents are known.
+     */
+    public Match findSimilar(String subject, String body, Email.EmailIntent intent, double minSimilarity) {
+        if (!enabled) {
+            return null;
+        }
+        lookups.incrementAndGet();
+        Index current = index;
+        SparseVector query = vectorize(subject, body, current);
+        if (query == null) {
+            return null;
+        }
+
+        Document best = null;
+        double bestScore = 0.0;
+        if (current.size() > 0) {
+            float[] scores = new float[current.size()];
+            int[] order = query.heaviestFirst(queryFeatures);
+            for (int i : order) {
+                Posting posting = current.postings.get(query.features[i]);
+                if (posting == null) {
+                    continue;
+                }
+                float weight = query.weights[i];
+                for (int p = 0; p < posting.size; p++) {
+                    scores[posting.documents[p]] += weight * posting.weights[p];
+                }
+            }
+            // Partial scores only rank candidates; the few best are rescored exactly
+            int[] candidates = topCandidates(scores, RERANK_CANDIDATES);
+            for (int d : candidates) {
+                Document document = current.documents[d];
+                double score = adjust(query.dot(document.vector), document, intent);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = document;
+                }
+            }
+        }
+        synchronized (pending) {
+            for (Document document : pending) {
+                double score = adjust(query.dot(document.vector), document, intent);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = document;
+                }
+            }
+        }
+        if (best == null || bestScore < minSimilarity) {
+            return null;
+        }
+
+        String reply = emailRepository.findFinalReplyById(best.emailId)
+                .map(Email::getFinalReply)
+                .orElse(null);
+        if (reply == null || reply.isBlank()) {
+            return null;
+        }
+        matches.incrementAndGet();
+        return new Match(best.emailId, best.subject, reply, Math.min(1.0, bestScore));
+    }
+
+    /**
+     * Make a just-sent reply retrievable before the next rebuild
+     */
+    public void add(Email email) {
+        if (!enabled || email.getFinalReply() == null || email.getFinalReply().isBlank()) {
+            return;
+        }
+        SparseVector vector = vectorize(email.getSubject(), textOf(email), index);
+        if (vector == null) {
+            return;
+        }
+        synchronized (pending) {
+            if (pending.size() < maxPending) {
+                pending.add(new Document(email.getId(), email.getSubject(), email.getIntent(), vector));
+            }
+        }
+    }
+
+    /**
+     * Rebuild from the most recently answered emails, recomputing document frequencies
+     */
+    @Scheduled(initialDelayString = "${ai.reply-cache.initial-delay-ms:45000}",
+               fixedDelayString = "${ai.reply-cache.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<Email> answered = new ArrayList<>();
+        List<int[]> termCounts = new ArrayList<>();
+        Map<Integer, int[]> documentFrequency = new HashMap<>();
+        try (Stream<Email> emails = emailBodyService.withText(emailRepository.streamAnsweredEmails())) {
+            emails.limit(maxDocuments).forEach(email -> {
+                int[] features = features(email.getSubject(), textOf(email));
+                if (distinct(features) < minFeatures) {
+                    return;
+                }
+                answered.add(email);
+                termCounts.add(features);
+                int previous = 0;
+                for (int i = 0; i < features.length; i++) {
+                    if (i == 0 || features[i] != previous) {
+                        documentFrequency.computeIfAbsent(features[i], f -> new int[1])[0]++;
+                    }
+                    previous = features[i];
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to load answered emails for the reply index: {}", e.getMessage(), e);
+            return;
+        }
+
+        int n = answered.size();
+        Map<Integer, Float> idf = new HashMap<>(documentFrequency.size() * 2);
+        documentFrequency.forEach((feature, df) -> idf.put(feature, (float) Math.log((1.0 + n) / (1.0 + df[0]) + 1.0)));
+        float defaultIdf = (float) Math.log(1.0 + n + 1.0);
+
+        Document[] documents = new Document[n];
+        Map<Integer, Posting> postings = new HashMap<>(idf.size() * 2);
+        for (int d = 0; d < n; d++) {
+            Email email = answered.get(d);
+            SparseVector vector = SparseVector.of(termCounts.get(d), idf, defaultIdf);
+            documents[d] = new Document(email.getId(), email.getSubject(), email.getIntent(), vector);
+            for (int i = 0; i < vector.features.length; i++) {
+                postings.computeIfAbsent(vector.features[i], f -> new Posting()).add(d, vector.weights[i]);
+            }
+            termCounts.set(d, null);
+        }
+
+        index = new Index(documents, postings, idf, defaultIdf);
+        synchronized (pending) {
+            pending.clear();
+        }
+        log.info("Reply retrieval index rebuilt with {} answered emails ({} features) in {} ms",
+                n, postings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Index statistics for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("documents", index.size());
+        synchronized (pending) {
+            stats.put("pending", pending.size());
+        }
+        stats.put("lookups", lookups.get());
+        stats.put("matches", matches.get());
+        return stats;
+    }
+
+    private SparseVector vectorize(String subject, String body, Index current) {
+        int[] features = features(subject, body);
+        if (distinct(features) < minFeatures) {
+            return null;
+        }
+        return SparseVector.of(features, current.idf, current.defaultIdf);
+    }
+
+    /**
+     * Same-intent matches keep their score; a known intent mismatch is penalised, not excluded
+     */
+    private static double adjust(double score, Document document, Email.EmailIntent intent) {
+        if (intent != null && document.intent != null && intent != document.intent
+                && intent != Email.EmailIntent.UNKNOWN && document.intent != Email.EmailIntent.UNKNOWN) {
+            return score * 0.8;
+        }
+        return score;
+    }
+
+    private static int[] topCandidates(float[] scores, int limit) {
+        int[] top = new int[limit];
+        int size = 0;
+        for (int d = 0; d < scores.length; d++) {
+            if (scores[d] <= 0f || (size == limit && scores[d] <= scores[top[size - 1]])) {
+                continue;
+            }
+            int i = size < limit ? size++ : size - 1;
+            while (i > 0 && scores[top[i - 1]] < scores[d]) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = d;
+        }
+        return Arrays.copyOf(top, size);
+    }
+
+    private static String textOf(Email email) {
+        return email.getCleanBody() != null ? email.getCleanBody() : email.getBody();
+    }
+
+    /**
+     * Sorted hashed features, with repeats, so term counts are run lengths
+     */
+    private static int[] features(String subject, String body) {
+        int[][] buffer = {new int[256]};
+        int[] size = {0};
+        LocalIntentClassifier.FeatureSink sink = feature -> {
+            if (size[0] == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+            }
+            buffer[0][size[0]++] = feature;
+        };
+        // Subject and body share a feature space here: a question asked in either place is the same question
+        LocalIntentClassifier.extractFeatures(subject, 0, sink);
+        LocalIntentClassifier.extractFeatures(body, 0, sink);
+        int[] features = Arrays.copyOf(buffer[0], size[0]);
+        Arrays.sort(features);
+        return features;
+    }
+
+    private static int distinct(int[] sortedFeatures) {
+        int count = 0;
+        for (int i = 0; i < sortedFeatures.length; i++) {
+            if (i == 0 || sortedFeatures[i] != sortedFeatures[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A past answered email similar to the one being replied to
+     */
+    public record Match(String emailId, String subject, String reply, double similarity) {
+    }
+
+    private record Document(String emailId, String subject, Email.EmailIntent intent, SparseVector vector) {
+    }
+
+    /**
+     * L2-normalised TF-IDF vector with sublinear term frequency, features in ascending order
+     */
+    private static final class SparseVector {
+        private final int[] features;
+        private final float[] weights;
+
+        private SparseVector(int[] features, float[] weights) {
+            this.features = features;
+            this.weights = weights;
+        }
+
+        static SparseVector of(int[] sortedFeatures, Map<Integer, Float> idf, float defaultIdf) {
+            int[] features = new int[distinct(sortedFeatures)];
+            float[] weights = new float[features.length];
+            int k = -1;
+            int run = 0;
+            for (int i = 0; i <= sortedFeatures.length; i++) {
+                if (i < sortedFeatures.length && i > 0 && sortedFeatures[i] == sortedFeatures[i - 1]) {
+                    run++;
+                    continue;
+                }
+                if (k >= 0) {
+                    weights[k] = (float) (1.0 + Math.log(run)) * idf.getOrDefault(features[k], defaultIdf);
+                }
+                if (i < sortedFeatures.length) {
+                    features[++k] = sortedFeatures[i];
+                    run = 1;
+                }
+            }
+            double norm = 0.0;
+            for (float weight : weights) {
+                norm += weight * weight;
+            }
+            float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] *= scale;
+            }
+            return new SparseVector(features, weights);
+        }
+
+        double dot(SparseVector other) {
+            double sum = 0.0;
+            int i = 0;
+            int j = 0;
+            while (i < features.length && j < other.features.length) {
+                if (features[i] == other.features[j]) {
+                    sum += weights[i++] * other.weights[j++];
+                } else if (features[i] < other.features[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return sum;
+        }
+
+        int[] heaviestFirst(int limit) {
+            Integer[] order = new Integer[features.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(weights[b], weights[a]));
+            int[] top = new int[Math.min(limit, order.length)];
+            for (int i = 0; i < top.length; i++) {
+                top[i] = order[i];
+            }
+            return top;
+        }
+    }
+
+    private static final class Posting {
+        private int[] documents = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        void add(int document, float weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            documents[size] = document;
+            weights[size++] = weight;
+        }
+    }
+
+    private record Index(Document[] documents, Map<Integer, Posting> postings, Map<Integer, Float> idf, float defaultIdf) {
+        static final Index EMPTY = new Index(new Document[0], Map.of(), Map.of(), 1f);
+
+        int size() {
+            return documents.length;
+        }
+    }
+}
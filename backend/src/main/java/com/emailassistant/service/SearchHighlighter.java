@@ -0,0 +1,92 @@
+package com.emailassistant.service;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds short highlighted snippets for full-text search results
+ */
+final class SearchHighlighter {
+
+    private static final int CONTEXT_CHARS = 80;
+
+    private SearchHighlighter() {
+    }
+
+    /**
+     * Extract the positive terms of a Mongo $text query (quotes stripped, negations dropped)
+     */
+    static List<String> terms(String query) {
+        List<String> terms = new ArrayList<>();
+        for (String token : query.toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (token.startsWith("-")) {
+                continue;
+            }
+            String term = token.replace("\"", "").replaceAll("^\\p{Punct}+|\\p{Punct}+$", "");
+            if (term.length() >= 2 && !terms.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Snippet around the first term occurrence with every occurrence wrapped in &lt;em&gt;,
+     * or null if no term occurs in the text. The email text itself is HTML-escaped, so the
+     * &lt;em&gt; tags are the only markup in the snippet.
+     */
+    static String highlight(String text, List<String> terms) {
+        if (text == null || text.isEmpty() || terms.isEmpty()) {
+            return null;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int first = -1;
+        for (String term : terms) {
+            int index = lower.indexOf(term);
+            if (index >= 0 && (first < 0 || index < first)) {
+                first = index;
+            }
+        }
+        if (first < 0) {
+            return null;
+        }
+
+        int start = Math.max(0, first - CONTEXT_CHARS);
+        int end = Math.min(text.length(), first + CONTEXT_CHARS * 2);
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        if (start > 0) {
+            snippet.append("...");
+        }
+        int position = start;
+        while (position < end) {
+            int matchAt = -1;
+            int matchLength = 0;
+            for (String term : terms) {
+                int index = lower.indexOf(term, position);
+                if (index >= 0 && index < end && (matchAt < 0 || index < matchAt)) {
+                    matchAt = index;
+                    matchLength = term.length();
+                }
+            }
+            if (matchAt < 0) {
+                snippet.append(escape(text, position, end));
+                break;
+            }
+            int matchEnd = Math.min(end, matchAt + matchLength);
+            snippet.append(escape(text, position, matchAt))
+                    .append("<em>").append(escape(text, matchAt, matchEnd)).append("</em>");
+            position = matchEnd;
+        }
+        if (end < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    private static String escape(String text, int start, int end) {
+        return HtmlUtils.htmlEscape(text.substring(start, end));
+    }
+}
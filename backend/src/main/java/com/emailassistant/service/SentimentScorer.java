@@ -0,0 +1,19 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+
+/**
+ * Local sentiment and urgency scoring, consulted before falling back to the LLM
+ */
+public interface SentimentScorer {
+
+    /**
+     * Score sentiment and urgency; returns null when the text is too ambiguous to call locally
+     */
+    Email.SentimentAnalysisResult score(String content);
+
+    /**
+     * Name recorded as the model that produced the result
+     */
+    String getModelName();
+}
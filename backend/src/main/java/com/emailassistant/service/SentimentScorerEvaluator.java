@@ -0,0 +1,85 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.repository.EmailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Offline comparison of the local sentiment scorer against past LLM labels
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SentimentScorerEvaluator {
+
+    private static final List<String> URGENCY_LEVELS = List.of("low", "medium", "high", "urgent");
+
+    private final EmailRepository emailRepository;
+    private final EmailBodyService emailBodyService;
+    private final SentimentScorer sentimentScorer;
+
+    /**
+     * Replay up to {@code limit} LLM-labelled emails through the local scorer
+     */
+    public Map<String, Object> evaluate(int limit) {
+        long start = System.currentTimeMillis();
+        long[] counters = new long[5]; // total, covered, sentiment hits, urgency hits, urgency within one level
+        Map<String, Long> confusion = new TreeMap<>();
+
+        try (Stream<Email> samples = emailBodyService.withText(
+                emailRepository.streamSentimentLabelledSamples(sentimentScorer.getModelName()))) {
+            samples.limit(limit).forEach(email -> {
+                counters[0]++;
+                Email.SentimentAnalysisResult local = sentimentScorer.score(
+                        email.getCleanBody() != null ? email.getCleanBody() : email.getBody());
+                if (local == null) {
+                    return;
+                }
+                counters[1]++;
+
+                String expectedSentiment = normalize(email.getMetadata().getSentiment());
+                if (expectedSentiment.equals(local.getSentiment())) {
+                    counters[2]++;
+                }
+                confusion.merge(expectedSentiment + "->" + local.getSentiment(), 1L, Long::sum);
+
+                int expectedUrgency = URGENCY_LEVELS.indexOf(normalize(email.getMetadata().getUrgency()));
+                int actualUrgency = URGENCY_LEVELS.indexOf(local.getUrgency());
+                if (expectedUrgency == actualUrgency) {
+                    counters[3]++;
+                }
+                if (expectedUrgency >= 0 && Math.abs(expectedUrgency - actualUrgency) <= 1) {
+                    counters[4]++;
+                }
+            });
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("model", sentimentScorer.getModelName());
+        report.put("samples", counters[0]);
+        report.put("coverage", ratio(counters[1], counters[0]));
+        report.put("sentimentAccuracy", ratio(counters[2], counters[1]));
+        report.put("urgencyAccuracy", ratio(counters[3], counters[1]));
+        report.put("urgencyWithinOneLevel", ratio(counters[4], counters[1]));
+        report.put("sentimentConfusion", confusion);
+        report.put("durationMs", System.currentTimeMillis() - start);
+        log.info("Sentiment scorer evaluation: {}", report);
+        return report;
+    }
+
+    private static String normalize(String label) {
+        return label != null ? label.trim().toLowerCase() : "";
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return denominator > 0 ? (double) numerator / denominator : 0.0;
+    }
+}
@@ -0,0 +1,236 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.repository.EmailRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Tracks an SLA deadline for every open email in a hierarchical timing wheel and
+ * escalates overdue emails in bulk, instead of polling the collection.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlaService {
+
+    private static final Set<Email.EmailStatus> OPEN_STATUSES = EnumSet.of(
+            Email.EmailStatus.RECEIVED,
+            Email.EmailStatus.PROCESSING,
+            Email.EmailStatus.INTENT_DETECTED,
+            Email.EmailStatus.ASSIGNED,
+            Email.EmailStatus.IN_PROGRESS);
+
+    private static final int BULK_CHUNK_SIZE = 1000;
+
+    private final EmailRepository emailRepository;
+
+    @Value("${sla.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sla.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${sla.wheel-size:64}")
+    private int wheelSize;
+
+    @Value("${sla.levels:4}")
+    private int levels;
+
+    @Value("${sla.deadline-minutes.URGENT:60}")
+    private long urgentMinutes;
+
+    @Value("${sla.deadline-minutes.HIGH:240}")
+    private long highMinutes;
+
+    @Value("${sla.deadline-minutes.MEDIUM:1440}")
+    private long mediumMinutes;
+
+    @Value("${sla.deadline-minutes.LOW:4320}")
+    private long lowMinutes;
+
+    @Value("${sla.fast-track-intents:COMPLAINT,ACCOUNT_ACCESS,REFUND_REQUEST}")
+    private List<Email.EmailIntent> fastTrackIntents;
+
+    @Value("${sla.fast-track-factor:0.5}")
+    private double fastTrackFactor;
+
+    private HierarchicalTimingWheel<SlaTicket> wheel;
+
+    // Tickets whose deadline had already passed when they were tracked
+    private final List<SlaTicket> overdue = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        wheel = new HierarchicalTimingWheel<>(tickMs, wheelSize, levels, System.currentTimeMillis());
+    }
+
+    /**
+     * Compute the SLA deadline for an email from its priority and intent
+     */
+    public LocalDateTime computeDeadline(Email.Priority priority, Email.EmailIntent intent, LocalDateTime from) {
+        long minutes = switch (priority != null ? priority : Email.Priority.MEDIUM) {
+            case URGENT -> urgentMinutes;
+            case HIGH -> highMinutes;
+            case MEDIUM -> mediumMinutes;
+            case LOW -> lowMinutes;
+        };
+        Duration budget = Duration.ofMinutes(minutes);
+        if (intent != null && fastTrackIntents.contains(intent)) {
+            budget = Duration.ofMillis((long) (budget.toMillis() * fastTrackFactor));
+        }
+        return (from != null ? from : LocalDateTime.now()).plus(budget);
+    }
+
+    /**
+     * Start, move or stop the SLA timer for an email according to its current state
+     */
+    public synchronized void track(Email email) {
+        if (!enabled || email.getId() == null) {
+            return;
+        }
+        if (!OPEN_STATUSES.contains(email.getStatus()) || email.getSlaDeadline() == null) {
+            wheel.cancel(email.getId());
+            return;
+        }
+        SlaTicket ticket = new SlaTicket(email.getId(), email.getPriority(), email.getIntent());
+        if (!wheel.schedule(email.getId(), toEpochMillis(email.getSlaDeadline()), ticket)) {
+            overdue.add(ticket);
+        }
+    }
+
+    /**
+     * Stop the SLA timer for an email
+     */
+    public synchronized void cancel(String emailId) {
+        wheel.cancel(emailId);
+    }
+
+    public synchronized int getTrackedCount() {
+        return wheel.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Rebuilding SLA timers from open emails...");
+        long[] restored = {0};
+        try (Stream<Email> openEmails = emailRepository.streamOpenEmailsForSla()) {
+            openEmails.forEach(email -> {
+                email.setStatus(Email.EmailStatus.RECEIVED); // projection omits status; query only returns open emails
+                if (email.getSlaDeadline() == null) {
+                    email.setSlaDeadline(computeDeadline(email.getPriority(), email.getIntent(), email.getReceivedAt()));
+                }
+                track(email);
+                restored[0]++;
+            });
+        } catch (Exception e) {
+            log.error("Failed to rebuild SLA timers: {}", e.getMessage(), e);
+        }
+        log.info("SLA timers rebuilt for {} open emails", restored[0]);
+    }
+
+    @Scheduled(fixedDelayString = "${sla.tick-ms:1000}")
+    public void processExpiredDeadlines() {
+        if (!enabled || wheel == null) {
+            return;
+        }
+        List<SlaTicket> expired = new ArrayList<>();
+        synchronized (this) {
+            wheel.advanceTo(System.currentTimeMillis(), expired::add);
+            expired.addAll(overdue);
+            overdue.clear();
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        Map<SlaBucket, List<String>> buckets = new HashMap<>();
+        for (SlaTicket ticket : expired) {
+            Email.Priority priority = ticket.priority() != null ? ticket.priority() : Email.Priority.MEDIUM;
+            buckets.computeIfAbsent(new SlaBucket(priority, ticket.intent()), k -> new ArrayList<>())
+                    .add(ticket.emailId());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        buckets.forEach((bucket, emailIds) -> {
+            try {
+                if (bucket.priority() == Email.Priority.URGENT) {
+                    escalate(bucket, emailIds);
+                } else {
+                    reprioritize(bucket, emailIds, now);
+                }
+            } catch (Exception e) {
+                log.error("Failed to apply SLA breach for {} emails ({}): {}",
+                        emailIds.size(), bucket, e.getMessage(), e);
+            }
+        });
+    }
+
+    private void escalate(SlaBucket bucket, List<String> emailIds) {
+        long escalated = 0;
+        for (List<String> chunk : chunks(emailIds)) {
+            escalated += emailRepository.escalateOpenEmails(chunk, bucket.priority());
+        }
+        log.warn("SLA breached for {} URGENT emails, {} escalated", emailIds.size(), escalated);
+    }
+
+    private void reprioritize(SlaBucket bucket, List<String> emailIds, LocalDateTime now) {
+        Email.Priority next = Email.Priority.values()[bucket.priority().ordinal() + 1];
+        LocalDateTime deadline = computeDeadline(next, bucket.intent(), now);
+        List<String> raised = new ArrayList<>();
+        for (List<String> chunk : chunks(emailIds)) {
+            if (emailRepository.reprioritizeOpenEmails(chunk, bucket.priority(), next, deadline) > 0) {
+                emailRepository.findReprioritized(chunk, next, deadline).forEach(email -> raised.add(email.getId()));
+            }
+        }
+        // Emails closed or reprioritized behind our back matched nothing and keep whatever track() left
+        long deadlineMs = toEpochMillis(deadline);
+        synchronized (this) {
+            for (String emailId : raised) {
+                // A timer set by track() since the update is newer still
+                if (!wheel.contains(emailId)) {
+                    wheel.schedule(emailId, deadlineMs, new SlaTicket(emailId, next, bucket.intent()));
+                }
+            }
+        }
+        log.info("SLA breached for {} {} emails, {} raised to {}", emailIds.size(), bucket.priority(), raised.size(), next);
+    }
+
+    private static List<List<String>> chunks(List<String> ids) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += BULK_CHUNK_SIZE) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + BULK_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record SlaTicket(String emailId, Email.Priority priority, Email.EmailIntent intent) {
+    }
+
+    private record SlaBucket(Email.Priority priority, Email.EmailIntent intent) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.emailassistant.service;
+
+/**
+ * Cheap, tokenizer-free estimate of LLM token counts.
+ *
+ * Word pieces of up to six letters or digits count as one token, punctuation counts one token
+ * per character and non-Latin letters count one token each, which tracks SentencePiece/BPE
+ * tokenizers closely enough for budgeting prompts without calling the countTokens API.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_WORD_PIECE = 6;
+    private static final String TRUNCATION_MARKER = "\n[...]";
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimated token count of the text
+     */
+    public static int estimate(CharSequence text) {
+        return text == null ? 0 : count(text);
+    }
+
+    /**
+     * Text cut at a word boundary so that it fits within {@code maxTokens}, or unchanged if it already fits
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return text;
+        }
+        int end = prefixWithin(text, maxTokens);
+        if (end >= text.length()) {
+            return text;
+        }
+        int cut = end;
+        while (cut > 0 && !Character.isWhitespace(text.charAt(cut - 1))) {
+            cut--;
+        }
+        if (cut == 0) {
+            cut = end;
+        }
+        return text.substring(0, cut).stripTrailing() + TRUNCATION_MARKER;
+    }
+
+    private static int count(CharSequence text) {
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch < 128 && Character.isLetterOrDigit(ch)) {
+                if (run++ % CHARS_PER_WORD_PIECE == 0) {
+                    tokens++;
+                }
+                continue;
+            }
+            run = 0;
+            if (!Character.isWhitespace(ch)) {
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Length of the longest prefix whose estimate stays within {@code maxTokens}
+     */
+    private static int prefixWithin(CharSequence text, int maxTokens) {
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            boolean startsToken;
+            if (ch < 128 && Character.isLetterOrDigit(ch)) {
+                startsToken = run++ % CHARS_PER_WORD_PIECE == 0;
+            } else {
+                run = 0;
+                startsToken = !Character.isWhitespace(ch);
+            }
+            if (startsToken && ++tokens > maxTokens) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+}
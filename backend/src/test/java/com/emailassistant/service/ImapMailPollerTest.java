@@ -0,0 +1,194 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.EmailRequest;
+import com.emailassistant.model.MailboxSyncState;
+import com.emailassistant.repository.MailboxSyncStateRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the poller against an in-process GreenMail IMAP server, with the ingestion pipeline and
+ * the sync state collection replaced by in-memory fakes
+ */
+class ImapMailPollerTest {
+
+    private static final String USER = "support@localhost";
+    private static final String PASSWORD = "secret";
+    private static final String STATE_ID = USER + "@localhost/INBOX";
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP_IMAP);
+
+    private final Map<String, MailboxSyncState> states = new ConcurrentHashMap<>();
+    private final List<String> ingested = new ArrayList<>();
+    private ImapMailPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        greenMail.setUser(USER, USER, PASSWORD);
+
+        MailboxSyncStateRepository repository = mock(MailboxSyncStateRepository.class);
+        when(repository.findById(any())).thenAnswer(call ->
+                Optional.ofNullable(states.get(call.<String>getArgument(0))).map(ImapMailPollerTest::copy));
+        when(repository.save(any())).thenAnswer(call -> {
+            MailboxSyncState state = call.getArgument(0);
+            states.put(state.getId(), copy(state));
+            return state;
+        });
+
+        EmailService emailService = mock(EmailService.class);
+        when(emailService.processIncomingEmails(anyList())).thenAnswer(call -> {
+            List<EmailRequest> requests = call.getArgument(0);
+            synchronized (ingested) {
+                requests.forEach(request -> ingested.add(request.getMessageId()));
+            }
+            return List.of();
+        });
+
+        MimeMessageParser parser = new MimeMessageParser(mock(AttachmentService.class));
+        ReflectionTestUtils.setField(parser, "maxTextBytes", 1024 * 1024);
+
+        poller = new ImapMailPoller(parser, emailService, repository);
+        ReflectionTestUtils.setField(poller, "enabled", true);
+        ReflectionTestUtils.setField(poller, "protocol", "imap");
+        ReflectionTestUtils.setField(poller, "host", "localhost");
+        ReflectionTestUtils.setField(poller, "port", ServerSetupTest.IMAP.getPort());
+        ReflectionTestUtils.setField(poller, "username", USER);
+        ReflectionTestUtils.setField(poller, "password", PASSWORD);
+        ReflectionTestUtils.setField(poller, "folderName", "INBOX");
+        // Plain UID-range polling keeps the test independent of the server's IDLE support
+        ReflectionTestUtils.setField(poller, "idle", false);
+        ReflectionTestUtils.setField(poller, "idleRefreshMinutes", 1L);
+        ReflectionTestUtils.setField(poller, "initialSync", "all");
+        ReflectionTestUtils.setField(poller, "reconnectDelayMs", 200L);
+        ReflectionTestUtils.setField(poller, "pollIntervalMs", 100L);
+        ReflectionTestUtils.setField(poller, "batchSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        poller.stop();
+    }
+
+    @Test
+    void firstSyncIngestsTheFolderAndPersistsTheHighWaterUid() {
+        send(3);
+
+        poller.start();
+
+        await(() -> lastUid() == 3);
+        assertThat(ingestedIds()).hasSize(3).doesNotHaveDuplicates();
+        MailboxSyncState state = states.get(STATE_ID);
+        assertThat(state.getUidValidity()).isNotNull();
+        assertThat(state.getMessagesIngested()).isEqualTo(3);
+        assertThat(state.getLastSyncAt()).isNotNull();
+    }
+
+    @Test
+    void pollingIngestsOnlyMessagesAboveTheHighWaterUid() throws InterruptedException {
+        send(2);
+        poller.start();
+        await(() -> lastUid() == 2);
+
+        send(1);
+        await(() -> lastUid() == 3);
+        // A few more polls of an unchanged folder must not re-ingest anything
+        Thread.sleep(500);
+
+        assertThat(ingestedIds()).hasSize(3).doesNotHaveDuplicates();
+        assertThat(states.get(STATE_ID).getMessagesIngested()).isEqualTo(3);
+    }
+
+    @Test
+    void idleWakesUpForNewMail() {
+        ReflectionTestUtils.setField(poller, "idle", true);
+        // Long enough that only the server's EXISTS response can end the IDLE in time
+        ReflectionTestUtils.setField(poller, "pollIntervalMs", 60_000L);
+        send(1);
+        poller.start();
+        await(() -> lastUid() == 1);
+
+        send(1);
+
+        await(() -> lastUid() == 2);
+        assertThat(ingestedIds()).hasSize(2).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void uidValidityChangeRescansTheFolder() {
+        send(2);
+        long staleValidity = 1;
+        states.put(STATE_ID, MailboxSyncState.builder()
+                .id(STATE_ID)
+                .uidValidity(staleValidity)
+                .lastUid(50L)
+                .messagesIngested(50L)
+                .build());
+
+        poller.start();
+
+        await(() -> lastUid() == 2);
+        assertThat(ingestedIds()).hasSize(2);
+        MailboxSyncState state = states.get(STATE_ID);
+        assertThat(state.getUidValidity()).isNotEqualTo(staleValidity);
+        assertThat(state.getMessagesIngested()).isEqualTo(52);
+    }
+
+    private void send(int count) {
+        int offset = greenMail.getReceivedMessages().length;
+        for (int i = 1; i <= count; i++) {
+            GreenMailUtil.sendTextEmailTest(USER, "customer@example.com", "Order " + (offset + i), "Where is my order?");
+        }
+        assertThat(greenMail.waitForIncomingEmail(5000, offset + count)).isTrue();
+    }
+
+    private long lastUid() {
+        MailboxSyncState state = states.get(STATE_ID);
+        return state != null && state.getLastUid() != null ? state.getLastUid() : -1;
+    }
+
+    private List<String> ingestedIds() {
+        synchronized (ingested) {
+            return new ArrayList<>(ingested);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 10 s");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("Interrupted while waiting", e);
+            }
+        }
+    }
+
+    private static MailboxSyncState copy(MailboxSyncState state) {
+        return new MailboxSyncState(state.getId(), state.getUidValidity(), state.getLastUid(),
+                state.getMessagesIngested(), state.getLastSyncAt());
+    }
+}
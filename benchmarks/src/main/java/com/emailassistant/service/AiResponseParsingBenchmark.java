@@ -0,0 +1,92 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing of intent and sentiment answers: the original per-field regex extraction
+ * ({@code extractJsonValue}) against the Jackson readers behind {@link OpenAiServiceImpl}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AiResponseParsingBenchmark {
+
+    private OpenAiServiceImpl service;
+    private String intentJson;
+    private String sentimentJson;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkData.aiService();
+        intentJson = BenchmarkData.intentJson();
+        sentimentJson = BenchmarkData.sentimentJson();
+    }
+
+    @Benchmark
+    public Email.IntentAnalysisResult legacyIntent() {
+        String intent = extractJsonValue(intentJson, "intent");
+        String confidence = extractJsonValue(intentJson, "confidence");
+        String reasoning = extractJsonValue(intentJson, "reasoning");
+        return Email.IntentAnalysisResult.builder()
+                .intent(Email.EmailIntent.valueOf(intent.toUpperCase()))
+                .confidence(Double.parseDouble(confidence))
+                .reasoning(reasoning)
+                .intentScores(new HashMap<>())
+                .build();
+    }
+
+    @Benchmark
+    public Email.IntentAnalysisResult intent() {
+        return service.parseIntentResponse(intentJson);
+    }
+
+    @Benchmark
+    public Email.SentimentAnalysisResult legacySentiment() {
+        return Email.SentimentAnalysisResult.builder()
+                .sentiment(extractJsonValue(sentimentJson, "sentiment"))
+                .score(Double.parseDouble(extractJsonValue(sentimentJson, "score")))
+                .urgency(extractJsonValue(sentimentJson, "urgency"))
+                .language(extractJsonValue(sentimentJson, "language"))
+                .customerTier(extractJsonValue(sentimentJson, "customerTier"))
+                .build();
+    }
+
+    @Benchmark
+    public Email.SentimentAnalysisResult sentiment() {
+        return service.parseSentimentResponse(sentimentJson);
+    }
+
+    /**
+     * The original extraction: a pattern compiled per field and call, string values first, then numbers
+     * (here also negative ones, which the original missed)
+     */
+    private static String extractJsonValue(String json, String key) {
+        Matcher m = Pattern.compile("\"" + key + "\"\\s*:\\s*\"([^\"]+)\"").matcher(json);
+        if (m.find()) {
+            return m.group(1);
+        }
+        m = Pattern.compile("\"" + key + "\"\\s*:\\s*(-?[0-9.]+)").matcher(json);
+        if (m.find()) {
+            return m.group(1);
+        }
+        return "";
+    }
+}
@@ -0,0 +1,152 @@
+package com.emailassistant.service;
+
+import com.emailassistant.model.Email;
+import com.emailassistant.model.EmailAttachment;
+import com.emailassistant.model.EmailMetadata;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Deterministic sample data shared by the benchmarks
+ */
+final class BenchmarkData {
+
+    private static final String[] PARAGRAPHS = {
+            "Hi team,\n\nI was charged twice for my \"Pro\" subscription this month and I'd like a refund "
+                    + "for the duplicate payment as soon as possible.\n",
+            "The invoice INV-2024-0042 shows two identical line items. I've attached a screenshot of my "
+                    + "bank statement (C:\\Users\\me\\statement.png) for reference.\n",
+            "When I tried to log in to the billing portal it failed with: {\"error\": \"session expired\"}\t"
+                    + "and a red banner.\n",
+            "Could you please look into this today? It's the third time I'm writing about it.\n",
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Email-like text of exactly {@code chars} characters, including quotes, backslashes and control characters
+     */
+    static String emailText(int chars) {
+        StringBuilder text = new StringBuilder(chars + 256);
+        for (int i = 0; text.length() < chars; i++) {
+            text.append(PARAGRAPHS[i % PARAGRAPHS.length]);
+        }
+        text.setLength(chars);
+        return text.toString();
+    }
+
+    /**
+     * A JSON-mode intent answer as Gemini returns it in the candidate text
+     */
+    static String intentJson() {
+        return "{\"intent\": \"BILLING_ISSUE\", \"confidence\": 0.93, "
+                + "\"reasoning\": \"Customer reports a duplicate charge and asks for a refund\", "
+                + "\"intentScores\": {\"REFUND_REQUEST\": 0.31, \"BUG_REPORT\": 0.02, \"FEATURE_REQUEST\": 0.0, "
+                + "\"GENERAL_INQUIRY\": 0.01, \"BILLING_ISSUE\": 0.93, \"TECHNICAL_SUPPORT\": 0.03, "
+                + "\"COMPLAINT\": 0.12, \"ACCOUNT_ACCESS\": 0.04}}";
+    }
+
+    /**
+     * A JSON-mode sentiment answer as Gemini returns it in the candidate text
+     */
+    static String sentimentJson() {
+        return "{\"sentiment\": \"negative\", \"score\": -0.62, \"urgency\": \"high\", "
+                + "\"language\": \"en\", \"customerTier\": \"premium\"}";
+    }
+
+    /**
+     * A triaged, assigned email with metadata, as it is stored after processing
+     */
+    static Email email(int bodyChars) {
+        String body = emailText(bodyChars);
+        LocalDateTime receivedAt = LocalDateTime.of(2024, 3, 14, 9, 26, 53);
+        return Email.builder()
+                .id("65f2c1a9e4b0a1b2c3d4e5f6")
+                .messageId("<CAF=duplicate.charge.42@mail.example.com>")
+                .threadId("65f2c1a9e4b0a1b2c3d4e5f0")
+                .from("Jane Doe <jane.doe@example.com>")
+                .to("support@emailassistant.com")
+                .subject("Charged twice for my Pro subscription")
+                .body(body)
+                .cleanBody(body)
+                .status(Email.EmailStatus.ASSIGNED)
+                .intent(Email.EmailIntent.BILLING_ISSUE)
+                .intentConfidence(0.93)
+                .assignedTeam("billing")
+                .assignedUser("alice@example.com")
+                .priority(Email.Priority.HIGH)
+                .receivedAt(receivedAt)
+                .processedAt(receivedAt.plusSeconds(2))
+                .assignedAt(receivedAt.plusSeconds(2))
+                .metadata(EmailMetadata.builder()
+                        .emailId("65f2c1a9e4b0a1b2c3d4e5f6")
+                        .language("en")
+                        .sentiment("negative")
+                        .sentimentScore(-0.62)
+                        .urgency("high")
+                        .customerTier("premium")
+                        .processingTime("1843ms")
+                        .build())
+                .attachments(List.of(EmailAttachment.builder()
+                        .fileId("65f2c1a9e4b0a1b2c3d4e5f7")
+                        .filename("statement.png")
+                        .contentType("image/png")
+                        .size(184_320L)
+                        .uploadedAt(receivedAt)
+                        .build()))
+                .build();
+    }
+
+    /**
+     * One sentiment result for every branch of the priority rules
+     */
+    static Email.SentimentAnalysisResult[] sentimentResults() {
+        return new Email.SentimentAnalysisResult[] {
+                sentiment("negative", -0.8, "medium"),
+                sentiment("negative", -0.3, "low"),
+                sentiment("neutral", 0.0, "urgent"),
+                sentiment("neutral", 0.1, "high"),
+                sentiment("positive", 0.6, "medium"),
+                sentiment("positive", 0.9, "low"),
+                sentiment("neutral", 0.0, "medium"),
+                sentiment("negative", -0.55, "high"),
+        };
+    }
+
+    /**
+     * An AI service for prompt building and parsing only; budgets are the application.yml defaults
+     */
+    static OpenAiServiceImpl aiService() {
+        OpenAiServiceImpl service = new OpenAiServiceImpl(null, null, null, null, null);
+        setField(service, "intentBudgetTokens", 800);
+        setField(service, "sentimentBudgetTokens", 500);
+        setField(service, "replyBudgetTokens", 1500);
+        setField(service, "qualityBudgetTokens", 1500);
+        setField(service, "exampleBudgetTokens", 400);
+        return service;
+    }
+
+    private static Email.SentimentAnalysisResult sentiment(String sentiment, double score, String urgency) {
+        return Email.SentimentAnalysisResult.builder()
+                .sentiment(sentiment)
+                .score(score)
+                .urgency(urgency)
+                .language("en")
+                .customerTier("standard")
+                .build();
+    }
+
+    // The budgets are injected with @Value, which does not run outside Spring
+    private static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name, e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.emailassistant.service;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Entry point of the benchmarks jar: runs JMH with the GC profiler always on, then compares time
+ * and allocation per operation against the checked-in baseline.
+ *
+ * Takes the usual JMH arguments. System properties: {@code baseline.file} (default
+ * {@code baseline.csv}), {@code baseline.update=true} to rewrite it from this run, and
+ * {@code baseline.time-tolerance} / {@code baseline.alloc-tolerance} (0.15 and 0.05) for the
+ * relative slowdown and allocation growth reported as a regression. Exits with 1 on regressions.
+ */
+public final class BenchmarkMain {
+
+    private static final String HEADER = "benchmark,score,unit,allocBytesPerOp";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        if (results.isEmpty()) {
+            return;
+        }
+
+        Path baselineFile = Path.of(System.getProperty("baseline.file", "baseline.csv"));
+        Map<String, Row> current = new LinkedHashMap<>();
+        for (RunResult result : results) {
+            Row row = Row.of(result);
+            current.put(row.benchmark(), row);
+        }
+
+        if (Boolean.getBoolean("baseline.update")) {
+            write(baselineFile, current.values());
+            System.out.println("Baseline written to " + baselineFile.toAbsolutePath());
+        } else if (Files.exists(baselineFile)) {
+            double timeTolerance = Double.parseDouble(System.getProperty("baseline.time-tolerance", "0.15"));
+            double allocTolerance = Double.parseDouble(System.getProperty("baseline.alloc-tolerance", "0.05"));
+            if (compare(read(baselineFile), current, timeTolerance, allocTolerance) > 0) {
+                System.exit(1);
+            }
+        } else {
+            System.out.println("No baseline at " + baselineFile.toAbsolutePath()
+                    + "; run with -Dbaseline.update=true to record one");
+        }
+    }
+
+    private static int compare(Map<String, Row> baseline, Map<String, Row> current,
+                               double timeTolerance, double allocTolerance) {
+        int regressions = 0;
+        System.out.printf("%n%-75s %14s %14s %8s %12s %12s%n",
+                "Benchmark", "baseline", "current", "change", "base B/op", "B/op");
+        for (Row row : current.values()) {
+            Row base = baseline.get(row.benchmark());
+            if (base == null) {
+                System.out.printf("%-75s %14s %14.3f %8s %12s %12.0f  NEW%n",
+                        row.benchmark(), "-", row.score(), "-", "-", row.allocBytesPerOp());
+                continue;
+            }
+            double change = row.score() / base.score() - 1;
+            // A few bytes of noise per operation is normal for the GC profiler's estimate
+            boolean slower = change > timeTolerance;
+            boolean allocates = row.allocBytesPerOp() > base.allocBytesPerOp() * (1 + allocTolerance) + 16;
+            String verdict = slower && allocates ? "  SLOWER, MORE ALLOCATION"
+                    : slower ? "  SLOWER" : allocates ? "  MORE ALLOCATION" : "";
+            if (!verdict.isEmpty()) {
+                regressions++;
+            }
+            System.out.printf("%-75s %14.3f %14.3f %+7.1f%% %12.0f %12.0f%s%n", row.benchmark(), base.score(),
+                    row.score(), change * 100, base.allocBytesPerOp(), row.allocBytesPerOp(), verdict);
+        }
+        System.out.printf("%d regression(s) against the baseline%n", regressions);
+        return regressions;
+    }
+
+    private static Map<String, Row> read(Path file) throws IOException {
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#") || line.equals(HEADER)) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            rows.put(fields[0], new Row(fields[0], Double.parseDouble(fields[1]), fields[2], Double.parseDouble(fields[3])));
+        }
+        return rows;
+    }
+
+    private static void write(Path file, Collection<Row> rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# JMH baseline: average time per operation and gc.alloc.rate.norm; JDK "
+                + System.getProperty("java.version") + ", " + System.getProperty("os.arch") + ", "
+                + Runtime.getRuntime().availableProcessors() + " CPUs");
+        lines.add(HEADER);
+        for (Row row : rows) {
+            lines.add(String.format(Locale.ROOT, "%s,%.3f,%s,%.0f", row.benchmark(), row.score(), row.unit(), row.allocBytesPerOp()));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private record Row(String benchmark, double score, String unit, double allocBytesPerOp) {
+
+        static Row of(RunResult result) {
+            String name = result.getParams().getBenchmark();
+            StringBuilder benchmark = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+            for (String key : result.getParams().getParamsKeys()) {
+                benchmark.append(';').append(key).append('=').append(result.getParams().getParam(key));
+            }
+            Map<String, Result> secondary = result.getSecondaryResults();
+            Result alloc = secondary.containsKey("gc.alloc.rate.norm")
+                    ? secondary.get("gc.alloc.rate.norm") : secondary.get("\u00b7gc.alloc.rate.norm");
+            return new Row(benchmark.toString(), result.getPrimaryResult().getScore(),
+                    result.getPrimaryResult().getScoreUnit(), alloc != null ? alloc.getScore() : Double.NaN);
+        }
+    }
+}
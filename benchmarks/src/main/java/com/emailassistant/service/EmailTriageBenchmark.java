@@ -0,0 +1,54 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.EmailResponse;
+import com.emailassistant.model.Email;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU-only steps of {@link EmailServiceImpl} that run for every email: priority rules and
+ * the entity-to-DTO conversion behind every list and detail endpoint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EmailTriageBenchmark {
+
+    private Email.SentimentAnalysisResult[] sentiments;
+    private Email email;
+
+    @Setup
+    public void setUp() {
+        sentiments = BenchmarkData.sentimentResults();
+        email = BenchmarkData.email(4000);
+    }
+
+    /**
+     * All priority branches per call; divide by the number of sentiment results for a single decision
+     */
+    @Benchmark
+    public void determinePriority(Blackhole blackhole) {
+        for (Email.SentimentAnalysisResult sentiment : sentiments) {
+            blackhole.consume(EmailServiceImpl.determinePriority(sentiment));
+        }
+    }
+
+    @Benchmark
+    public EmailResponse convertToEmailResponse() {
+        return EmailServiceImpl.convertToEmailResponse(email);
+    }
+}
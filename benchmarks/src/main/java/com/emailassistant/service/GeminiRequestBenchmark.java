@@ -0,0 +1,106 @@
+package com.emailassistant.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gemini request serialisation and response extraction: the original string-concatenation and
+ * tree-model code against the streaming JsonGenerator/JsonParser path in {@link GeminiApiClient}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GeminiRequestBenchmark {
+
+    @Param({"500", "4000", "32000"})
+    private int promptChars;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private GeminiApiClient client;
+    private GeminiApiClient.RequestBuffer buffer;
+    private String prompt;
+    private byte[] responseBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        client = new GeminiApiClient("benchmark-key");
+        buffer = new GeminiApiClient.RequestBuffer();
+        prompt = BenchmarkData.emailText(promptChars);
+
+        ObjectNode response = objectMapper.createObjectNode();
+        ObjectNode candidate = response.putArray("candidates").addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", BenchmarkData.intentJson());
+        content.put("role", "model");
+        candidate.put("finishReason", "STOP");
+        ArrayNode safetyRatings = candidate.putArray("safetyRatings");
+        for (String category : new String[] {"HARASSMENT", "HATE_SPEECH", "SEXUALLY_EXPLICIT", "DANGEROUS_CONTENT"}) {
+            safetyRatings.addObject()
+                    .put("category", "HARM_CATEGORY_" + category)
+                    .put("probability", "NEGLIGIBLE");
+        }
+        response.putObject("usageMetadata")
+                .put("promptTokenCount", promptChars / 4)
+                .put("candidatesTokenCount", 60)
+                .put("totalTokenCount", promptChars / 4 + 60);
+        response.put("modelVersion", "gemini-1.5-flash-002");
+        responseBytes = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] legacyRequest() {
+        String requestBody = "{ \"contents\": [ { \"parts\": [ { \"text\": \""
+                + prompt.replace("\"", "\\\"") + "\" } ] } ] }";
+        return requestBody.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int streamingRequest() {
+        client.writeRequest(buffer, null, null, prompt, AiResponseSchemas.INTENT);
+        int size = buffer.size();
+        buffer.release();
+        return size;
+    }
+
+    @Benchmark
+    public int streamingRequestWithInstruction() {
+        client.writeRequest(buffer, null, AiSystemInstructions.INTENT, prompt, AiResponseSchemas.INTENT);
+        int size = buffer.size();
+        buffer.release();
+        return size;
+    }
+
+    @Benchmark
+    public String legacyResponse() throws IOException {
+        // RestTemplate decoded the body to a String before it was parsed into a tree
+        String body = new String(responseBytes, StandardCharsets.UTF_8);
+        JsonNode root = objectMapper.readTree(body);
+        return root.path("candidates").get(0).path("content").path("parts").get(0).path("text").asText();
+    }
+
+    @Benchmark
+    public String streamingResponse() throws IOException {
+        return client.readCandidateText(new ByteArrayInputStream(responseBytes));
+    }
+}
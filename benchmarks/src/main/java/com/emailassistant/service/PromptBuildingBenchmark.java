@@ -0,0 +1,78 @@
+package com.emailassistant.service;
+
+import com.emailassistant.dto.AiReplyRequest;
+import com.emailassistant.model.Email;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-email prompt building in {@link OpenAiServiceImpl}: budget truncation and formatting of the
+ * per-email part of each prompt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PromptBuildingBenchmark {
+
+    @Param({"500", "4000", "32000"})
+    private int bodyChars;
+
+    private OpenAiServiceImpl service;
+    private Email email;
+    private AiReplyRequest request;
+    private ReplyRetrievalIndex.Match example;
+    private String reply;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkData.aiService();
+        email = BenchmarkData.email(bodyChars);
+        request = AiReplyRequest.builder()
+                .emailId(email.getId())
+                .tone("professional")
+                .style("detailed")
+                .build();
+        reply = BenchmarkData.emailText(1200);
+        example = new ReplyRetrievalIndex.Match("65f2c1a9e4b0a1b2c3d4e5a1",
+                "Double charge on my invoice", reply, 0.74);
+    }
+
+    @Benchmark
+    public String intentPrompt() {
+        return service.buildIntentAnalysisPrompt(email.getSubject(), email.getCleanBody());
+    }
+
+    @Benchmark
+    public String sentimentPrompt() {
+        return service.buildSentimentAnalysisPrompt(email.getCleanBody());
+    }
+
+    @Benchmark
+    public String replyPrompt() {
+        return service.buildReplyGenerationPrompt(email, request, null);
+    }
+
+    @Benchmark
+    public String replyPromptWithExample() {
+        return service.buildReplyGenerationPrompt(email, request, example);
+    }
+
+    @Benchmark
+    public String qualityPrompt() {
+        return service.buildQualityAnalysisPrompt(reply, email.getCleanBody());
+    }
+}
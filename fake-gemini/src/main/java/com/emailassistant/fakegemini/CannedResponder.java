@@ -0,0 +1,195 @@
+package com.emailassistant.fakegemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Deterministic answers shaped after the backend's prompts: the same prompt always gets the same
+ * answer, whatever the order or concurrency of calls.
+ *
+ * Intent and sentiment are picked from keywords in the email, falling back to a hash of the prompt,
+ * so a generated corpus spreads over every category. Enum values come from the request's
+ * responseSchema; any other schema is filled in generically, and free-text calls get a short
+ * reply quoting the email subject.
+ */
+public class CannedResponder implements Responder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Map<String, String[]> INTENT_KEYWORDS = new LinkedHashMap<>();
+    static {
+        INTENT_KEYWORDS.put("REFUND_REQUEST", new String[] {"refund", "money back", "reimburse"});
+        INTENT_KEYWORDS.put("ACCOUNT_ACCESS", new String[] {"password", "log in", "login", "locked out", "2fa"});
+        INTENT_KEYWORDS.put("BILLING_ISSUE", new String[] {"invoice", "charged", "billing", "payment", "subscription"});
+        INTENT_KEYWORDS.put("BUG_REPORT", new String[] {"bug", "error", "crash", "broken", "exception"});
+        INTENT_KEYWORDS.put("FEATURE_REQUEST", new String[] {"feature", "would be great", "could you add", "suggestion"});
+        INTENT_KEYWORDS.put("COMPLAINT", new String[] {"complaint", "unacceptable", "disappointed", "terrible"});
+        INTENT_KEYWORDS.put("TECHNICAL_SUPPORT", new String[] {"how do i", "configure", "install", "integration", "api"});
+    }
+
+    private static final String[] NEGATIVE = {"unacceptable", "terrible", "angry", "disappointed", "worst",
+            "broken", "cancel", "frustrated", "refund"};
+    private static final String[] POSITIVE = {"thank", "great", "love", "appreciate", "excellent"};
+    private static final String[] URGENT = {"urgent", "asap", "immediately", "outage", "down", "critical"};
+
+    @Override
+    public String respond(GenerateRequest request) {
+        String prompt = request.prompt() != null ? request.prompt() : "";
+        String text = prompt.toLowerCase(Locale.ROOT);
+        int hash = mix(prompt.hashCode());
+        JsonNode properties = request.responseSchema() != null ? request.responseSchema().path("properties") : null;
+        if (properties == null) {
+            return reply(prompt);
+        }
+        ObjectNode answer;
+        if (properties.has("intent")) {
+            answer = intent(properties, text, hash);
+        } else if (properties.has("sentiment")) {
+            answer = sentiment(properties, text, hash);
+        } else {
+            answer = (ObjectNode) fill(request.responseSchema(), hash);
+        }
+        return answer.toString();
+    }
+
+    private ObjectNode intent(JsonNode properties, String text, int hash) {
+        List<String> intents = enumValues(properties.path("intent"));
+        intents.remove("UNKNOWN");
+        String intent = null;
+        String matched = null;
+        for (Map.Entry<String, String[]> entry : INTENT_KEYWORDS.entrySet()) {
+            matched = firstMatch(text, entry.getValue());
+            if (matched != null && intents.contains(entry.getKey())) {
+                intent = entry.getKey();
+                break;
+            }
+        }
+        if (intent == null) {
+            intent = intents.isEmpty() ? "GENERAL_INQUIRY" : intents.get(Math.floorMod(hash, intents.size()));
+        }
+        double confidence = round(0.70 + Math.floorMod(hash >>> 8, 28) / 100.0);
+
+        ObjectNode answer = MAPPER.createObjectNode();
+        answer.put("intent", intent);
+        answer.put("confidence", confidence);
+        answer.put("reasoning", matched != null
+                ? "Canned answer: the email mentions '" + matched + "'"
+                : "Canned answer: no keyword matched, picked by prompt hash");
+        ObjectNode scores = answer.putObject("intentScores");
+        double rest = intents.size() > 1 ? round((1 - confidence) / (intents.size() - 1)) : 0;
+        for (String candidate : intents) {
+            scores.put(candidate, candidate.equals(intent) ? confidence : rest);
+        }
+        return answer;
+    }
+
+    private ObjectNode sentiment(JsonNode properties, String text, int hash) {
+        String sentiment = firstMatch(text, NEGATIVE) != null ? "negative"
+                : firstMatch(text, POSITIVE) != null ? "positive" : "neutral";
+        double magnitude = 0.3 + Math.floorMod(hash, 60) / 100.0;
+        double score = sentiment.equals("negative") ? -magnitude : sentiment.equals("positive") ? magnitude : 0.0;
+
+        String urgency;
+        if (firstMatch(text, URGENT) != null) {
+            urgency = "urgent";
+        } else if (sentiment.equals("negative") || text.contains("!!")) {
+            urgency = "high";
+        } else {
+            urgency = Math.floorMod(hash >>> 4, 3) == 0 ? "medium" : "low";
+        }
+
+        List<String> tiers = enumValues(properties.path("customerTier"));
+        String customerTier = text.contains("enterprise") && tiers.contains("enterprise") ? "enterprise"
+                : tiers.isEmpty() ? "standard" : tiers.get(Math.floorMod(hash >>> 12, Math.min(2, tiers.size())));
+
+        ObjectNode answer = MAPPER.createObjectNode();
+        answer.put("sentiment", sentiment);
+        answer.put("score", round(score));
+        answer.put("urgency", urgency);
+        answer.put("language", "en");
+        answer.put("customerTier", customerTier);
+        return answer;
+    }
+
+    /**
+     * A value satisfying an arbitrary Gemini schema, for calls this responder has no canned shape for
+     */
+    private JsonNode fill(JsonNode schema, int hash) {
+        List<String> values = enumValues(schema);
+        if (!values.isEmpty()) {
+            return MAPPER.getNodeFactory().textNode(values.get(Math.floorMod(hash, values.size())));
+        }
+        switch (schema.path("type").asText("STRING").toUpperCase(Locale.ROOT)) {
+            case "OBJECT": {
+                ObjectNode node = MAPPER.createObjectNode();
+                schema.path("properties").fields().forEachRemaining(
+                        field -> node.set(field.getKey(), fill(field.getValue(), mix(hash + field.getKey().hashCode()))));
+                return node;
+            }
+            case "ARRAY": {
+                ArrayNode node = MAPPER.createArrayNode();
+                node.add(fill(schema.path("items"), hash));
+                return node;
+            }
+            case "NUMBER":
+                return MAPPER.getNodeFactory().numberNode(round(Math.floorMod(hash, 100) / 100.0));
+            case "INTEGER":
+                return MAPPER.getNodeFactory().numberNode(Math.floorMod(hash, 100));
+            case "BOOLEAN":
+                return MAPPER.getNodeFactory().booleanNode((hash & 1) == 1);
+            default:
+                return MAPPER.getNodeFactory().textNode("Canned text " + Integer.toHexString(hash));
+        }
+    }
+
+    private String reply(String prompt) {
+        String subject = "your request";
+        for (String line : prompt.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("Subject:") && trimmed.length() > "Subject:".length()) {
+                subject = "\"" + trimmed.substring("Subject:".length()).trim() + "\"";
+                break;
+            }
+        }
+        return "Dear Customer,\n\n"
+                + "Thank you for reaching out about " + subject + ". We have reviewed your message and "
+                + "our team is looking into it. We will follow up with the next steps shortly.\n\n"
+                + "If you have any further details to share, simply reply to this email.\n\n"
+                + "Best regards,\nCustomer Support Team";
+    }
+
+    private static List<String> enumValues(JsonNode schema) {
+        List<String> values = new ArrayList<>();
+        schema.path("enum").forEach(value -> values.add(value.asText()));
+        return values;
+    }
+
+    private static String firstMatch(String text, String[] keywords) {
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    // String.hashCode is stable across JVMs but clusters on similar prompts; spread its bits
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
@@ -0,0 +1,40 @@
+package com.emailassistant.fakegemini;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the fake server standalone, for load tests against a separately started backend.
+ *
+ * Options: {@code --port=8089 --latency=lognormal:800/4000 --per-token-ms=2
+ * --faults=429=0.02,500=0.01,503=0.01,rps=50 --seed=42}
+ */
+public final class FakeGeminiMain {
+
+    private FakeGeminiMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        FakeGeminiServer.Builder builder = FakeGeminiServer.builder().port(8089);
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            switch (option[0]) {
+                case "host" -> builder.host(option[1]);
+                case "port" -> builder.port(Integer.parseInt(option[1]));
+                case "seed" -> builder.seed(Long.parseLong(option[1]));
+                case "latency" -> builder.latency(LatencyDistribution.parse(option[1]));
+                case "per-token-ms" -> builder.perOutputTokenLatency(Duration.ofMillis(Long.parseLong(option[1])));
+                case "faults" -> builder.faults(FaultProfile.parse(option[1]));
+                default -> throw new IllegalArgumentException("Unknown option: " + option[0]);
+            }
+        }
+        FakeGeminiServer server = builder.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Fake Gemini listening on " + server.baseUrl()
+                + " (statistics at http://localhost:" + server.port() + "/fake/statistics)");
+        new CountDownLatch(1).await();
+    }
+}
@@ -0,0 +1,510 @@
+package com.emailassistant.fakegemini;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process stand-in for the Gemini API, so the triage pipeline can be load- and chaos-tested
+ * without network access or quota. Point {@code GeminiApiClient} at {@link #baseUrl()}.
+ *
+ * Serves {@code models/{model}:generateContent}, {@code :streamGenerateContent} (a JSON array, or
+ * server-sent events with {@code alt=sse}) and enough of {@code cachedContents} for the context
+ * cache to work. Answers come from a {@link Responder}, {@link CannedResponder} by default, and
+ * carry usageMetadata estimated at four characters per token.
+ *
+ * Each call waits a sample of the latency distribution before the first byte, plus a per-token
+ * delay spread over the output, and may instead fail per the {@link FaultProfile}. Latency and
+ * faults are drawn from a random seeded with the server seed and the call's sequence number, so a
+ * run replays exactly when calls arrive in the same order. Both can be changed while running.
+ */
+public class FakeGeminiServer implements AutoCloseable {
+
+    public static final String API_PATH = "/v1beta/";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int STREAM_CHUNK_CHARS = 80;
+    private static final int[] TRACKED_STATUSES = {200, 400, 403, 404, 429, 500, 503};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Responder responder;
+    private final long seed;
+    private volatile LatencyDistribution latency;
+    private volatile Duration perOutputTokenLatency;
+    private volatile FaultProfile faults;
+
+    private final Map<String, CachedContent> cachedContents = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(TRACKED_STATUSES.length);
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong outputTokens = new AtomicLong();
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger callsThisSecond = new AtomicInteger();
+
+    private FakeGeminiServer(Builder builder) throws IOException {
+        this.responder = builder.responder;
+        this.seed = builder.seed;
+        this.latency = builder.latency;
+        this.perOutputTokenLatency = builder.perOutputTokenLatency;
+        this.faults = builder.faults;
+        this.server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), builder.backlog);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-gemini");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(API_PATH, this::handle);
+        server.createContext("/fake/statistics", exchange -> send(exchange, 200, statisticsJson()));
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Base URL to configure as {@code llm.providers.gemini.base-url}
+     */
+    public String baseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort() + API_PATH;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void setLatency(LatencyDistribution latency, Duration perOutputTokenLatency) {
+        this.latency = latency;
+        this.perOutputTokenLatency = perOutputTokenLatency;
+    }
+
+    public void setFaults(FaultProfile faults) {
+        this.faults = faults;
+    }
+
+    public long requestCount() {
+        return sequence.get();
+    }
+
+    /**
+     * Calls answered with the given HTTP status so far
+     */
+    public long count(int status) {
+        for (int i = 0; i < TRACKED_STATUSES.length; i++) {
+            if (TRACKED_STATUSES[i] == status) {
+                return statusCounts.get(i);
+            }
+        }
+        return 0;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("requests", sequence.get());
+        statistics.put("inFlight", inFlight.get());
+        statistics.put("maxInFlight", maxInFlight.get());
+        Map<String, Long> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < TRACKED_STATUSES.length; i++) {
+            statuses.put(String.valueOf(TRACKED_STATUSES[i]), statusCounts.get(i));
+        }
+        statistics.put("statuses", statuses);
+        statistics.put("promptTokens", promptTokens.get());
+        statistics.put("outputTokens", outputTokens.get());
+        statistics.put("cachedContents", cachedContents.size());
+        statistics.put("latency", latency.toString());
+        statistics.put("faults", faults.toString());
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            String path = exchange.getRequestURI().getPath().substring(API_PATH.length());
+            String method = exchange.getRequestMethod();
+            if (apiKey(exchange) == null) {
+                sendError(exchange, 403, "PERMISSION_DENIED", "Method doesn't allow unregistered callers");
+            } else if (path.startsWith("models/") && path.endsWith(":generateContent") && method.equals("POST")) {
+                generate(exchange, modelOf(path, ":generateContent"), false);
+            } else if (path.startsWith("models/") && path.endsWith(":streamGenerateContent") && method.equals("POST")) {
+                generate(exchange, modelOf(path, ":streamGenerateContent"), true);
+            } else if (path.startsWith("cachedContents")) {
+                cachedContent(exchange, path, method);
+            } else {
+                sendError(exchange, 404, "NOT_FOUND", "Unknown path: " + path);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            sendError(exchange, 400, "INVALID_ARGUMENT", String.valueOf(e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void generate(HttpExchange exchange, String model, boolean streaming)
+            throws IOException, InterruptedException {
+        long callNumber = sequence.incrementAndGet();
+        Random random = new Random(mix(seed * 0x9E3779B97F4A7C15L + callNumber));
+        JsonNode body = readJson(exchange);
+
+        String systemInstruction = textOf(body.path("systemInstruction"));
+        String cachedName = body.path("cachedContent").asText(null);
+        int cachedTokens = 0;
+        if (cachedName != null) {
+            CachedContent cached = cachedContents.get(cachedName);
+            if (cached == null || cached.expiresAt.isBefore(Instant.now())) {
+                sendError(exchange, 404, "NOT_FOUND", "CachedContent not found (or permission denied)");
+                return;
+            }
+            systemInstruction = cached.systemInstruction;
+            cachedTokens = tokens(cached.systemInstruction);
+        }
+        String prompt = textOf(body.path("contents").path(0));
+        JsonNode schema = body.path("generationConfig").path("responseSchema");
+        GenerateRequest request = new GenerateRequest(model, systemInstruction, prompt,
+                schema.isMissingNode() ? null : schema);
+
+        Thread.sleep(latency.sampleMillis(random));
+        if (injectFault(exchange, random)) {
+            return;
+        }
+
+        String text = responder.respond(request);
+        int inputTokens = tokens(prompt) + tokens(systemInstruction);
+        int candidateTokens = tokens(text);
+        promptTokens.addAndGet(inputTokens);
+        outputTokens.addAndGet(candidateTokens);
+        ObjectNode usage = MAPPER.createObjectNode();
+        usage.put("promptTokenCount", inputTokens);
+        if (cachedTokens > 0) {
+            usage.put("cachedContentTokenCount", cachedTokens);
+        }
+        usage.put("candidatesTokenCount", candidateTokens);
+        usage.put("totalTokenCount", inputTokens + candidateTokens);
+
+        if (!streaming) {
+            Thread.sleep(perOutputTokenLatency.toMillis() * candidateTokens);
+            send(exchange, 200, response(model, text, true, usage).toString());
+            return;
+        }
+
+        boolean sse = "sse".equals(queryParameter(exchange.getRequestURI(), "alt"));
+        exchange.getResponseHeaders().set("Content-Type", sse ? "text/event-stream" : "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        record(200);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (!sse) {
+                out.write('[');
+            }
+            for (int start = 0; start < text.length(); start += STREAM_CHUNK_CHARS) {
+                String chunk = text.substring(start, Math.min(text.length(), start + STREAM_CHUNK_CHARS));
+                boolean last = start + STREAM_CHUNK_CHARS >= text.length();
+                Thread.sleep(perOutputTokenLatency.toMillis() * tokens(chunk));
+                String event = response(model, chunk, last, last ? usage : null).toString();
+                if (sse) {
+                    out.write(("data: " + event + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                } else {
+                    out.write(((start > 0 ? ",\r\n" : "") + event).getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            }
+            if (!sse) {
+                out.write(']');
+            }
+        }
+    }
+
+    /**
+     * Answer with an error instead of a candidate when the fault profile or the per-second quota says so
+     */
+    private boolean injectFault(HttpExchange exchange, Random random) throws IOException {
+        FaultProfile profile = faults;
+        if (profile.requestsPerSecond() > 0) {
+            long second = System.currentTimeMillis() / 1000;
+            long previous = currentSecond.get();
+            if (previous != second && currentSecond.compareAndSet(previous, second)) {
+                callsThisSecond.set(0);
+            }
+            if (callsThisSecond.incrementAndGet() > profile.requestsPerSecond()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 429, "RESOURCE_EXHAUSTED", "Resource has been exhausted (e.g. check quota).");
+                return true;
+            }
+        }
+        double roll = random.nextDouble();
+        if (roll < profile.rateLimited()) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(1 + random.nextInt(5)));
+            sendError(exchange, 429, "RESOURCE_EXHAUSTED", "Resource has been exhausted (e.g. check quota).");
+            return true;
+        }
+        roll -= profile.rateLimited();
+        if (roll < profile.serverError()) {
+            sendError(exchange, 500, "INTERNAL", "An internal error has occurred.");
+            return true;
+        }
+        roll -= profile.serverError();
+        if (roll < profile.unavailable()) {
+            sendError(exchange, 503, "UNAVAILABLE", "The model is overloaded. Please try again later.");
+            return true;
+        }
+        return false;
+    }
+
+    private void cachedContent(HttpExchange exchange, String path, String method) throws IOException {
+        if (path.equals("cachedContents") && method.equals("POST")) {
+            JsonNode body = readJson(exchange);
+            String name = "cachedContents/" + UUID.randomUUID().toString().replace("-", "");
+            CachedContent cached = new CachedContent(body.path("model").asText(),
+                    textOf(body.path("systemInstruction")), Instant.now().plus(ttlOf(body)));
+            cachedContents.put(name, cached);
+            send(exchange, 200, cachedJson(name, cached).toString());
+            return;
+        }
+        CachedContent cached = cachedContents.get(path);
+        if (cached == null) {
+            sendError(exchange, 404, "NOT_FOUND", "CachedContent not found (or permission denied)");
+        } else if (method.equals("PATCH")) {
+            CachedContent renewed = new CachedContent(cached.model, cached.systemInstruction,
+                    Instant.now().plus(ttlOf(readJson(exchange))));
+            cachedContents.put(path, renewed);
+            send(exchange, 200, cachedJson(path, renewed).toString());
+        } else if (method.equals("DELETE")) {
+            cachedContents.remove(path);
+            send(exchange, 200, "{}");
+        } else if (method.equals("GET")) {
+            send(exchange, 200, cachedJson(path, cached).toString());
+        } else {
+            sendError(exchange, 400, "INVALID_ARGUMENT", "Unsupported method " + method);
+        }
+    }
+
+    private static ObjectNode response(String model, String text, boolean last, ObjectNode usage) {
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode candidates = response.putArray("candidates");
+        ObjectNode candidate = candidates.addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", text);
+        content.put("role", "model");
+        if (last) {
+            candidate.put("finishReason", "STOP");
+        }
+        candidate.put("index", 0);
+        if (usage != null) {
+            response.set("usageMetadata", usage);
+        }
+        response.put("modelVersion", model);
+        return response;
+    }
+
+    private static ObjectNode cachedJson(String name, CachedContent cached) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("name", name);
+        node.put("model", cached.model);
+        node.put("expireTime", cached.expiresAt.toString());
+        node.putObject("usageMetadata").put("totalTokenCount", tokens(cached.systemInstruction));
+        return node;
+    }
+
+    private static Duration ttlOf(JsonNode body) {
+        String ttl = body.path("ttl").asText("3600s");
+        return Duration.ofMillis(Math.round(Double.parseDouble(ttl.replace("s", "")) * 1000));
+    }
+
+    private String statisticsJson() {
+        return MAPPER.valueToTree(getStatistics()).toString();
+    }
+
+    private void sendError(HttpExchange exchange, int status, String reason, String message) throws IOException {
+        ObjectNode error = MAPPER.createObjectNode();
+        error.putObject("error")
+                .put("code", status)
+                .put("message", message)
+                .put("status", reason);
+        send(exchange, status, error.toString());
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        record(status);
+    }
+
+    private void record(int status) {
+        for (int i = 0; i < TRACKED_STATUSES.length; i++) {
+            if (TRACKED_STATUSES[i] == status) {
+                statusCounts.incrementAndGet(i);
+                return;
+            }
+        }
+    }
+
+    private static JsonNode readJson(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonNode body = MAPPER.readTree(in);
+            if (body == null || !body.isObject()) {
+                throw new IllegalArgumentException("Request body must be a JSON object");
+            }
+            return body;
+        }
+    }
+
+    /**
+     * Concatenated text parts of a Content
+     */
+    private static String textOf(JsonNode content) {
+        if (content.isMissingNode() || content.isNull()) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        content.path("parts").forEach(part -> text.append(part.path("text").asText("")));
+        return text.toString();
+    }
+
+    private static String apiKey(HttpExchange exchange) {
+        String key = queryParameter(exchange.getRequestURI(), "key");
+        if (key == null || key.isBlank()) {
+            key = exchange.getRequestHeaders().getFirst("x-goog-api-key");
+        }
+        return key == null || key.isBlank() ? null : key;
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return pair.substring(separator + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String modelOf(String path, String suffix) {
+        return path.substring("models/".length(), path.length() - suffix.length());
+    }
+
+    // Random's first draws are correlated for consecutive seeds, so scramble the seed first
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    private static int tokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    private record CachedContent(String model, String systemInstruction, Instant expiresAt) {
+    }
+
+    public static final class Builder {
+        private String host = "127.0.0.1";
+        private int port;
+        private int backlog = 1024;
+        private long seed = 42;
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private Duration perOutputTokenLatency = Duration.ZERO;
+        private FaultProfile faults = FaultProfile.none();
+        private Responder responder = new CannedResponder();
+
+        private Builder() {
+        }
+
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Port to listen on; 0, the default, picks a free one
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Generation time per output token, added after the first byte and spread over streamed chunks
+         */
+        public Builder perOutputTokenLatency(Duration perOutputTokenLatency) {
+            this.perOutputTokenLatency = perOutputTokenLatency;
+            return this;
+        }
+
+        public Builder faults(FaultProfile faults) {
+            this.faults = faults;
+            return this;
+        }
+
+        public Builder responder(Responder responder) {
+            this.responder = responder;
+            return this;
+        }
+
+        public FakeGeminiServer start() throws IOException {
+            return new FakeGeminiServer(this);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.emailassistant.fakegemini;
+
+/**
+ * Share of generateContent calls answered with an error instead of a candidate.
+ *
+ * @param rateLimited share answered 429 RESOURCE_EXHAUSTED with a Retry-After header
+ * @param serverError share answered 500 INTERNAL
+ * @param unavailable share answered 503 UNAVAILABLE
+ * @param requestsPerSecond quota above which calls in the same second get 429; 0 for none
+ */
+public record FaultProfile(double rateLimited, double serverError, double unavailable, int requestsPerSecond) {
+
+    public FaultProfile {
+        if (rateLimited < 0 || serverError < 0 || unavailable < 0 || rateLimited + serverError + unavailable > 1) {
+            throw new IllegalArgumentException("Fault rates must be non-negative and add up to at most 1");
+        }
+    }
+
+    public static FaultProfile none() {
+        return new FaultProfile(0, 0, 0, 0);
+    }
+
+    /**
+     * Parse {@code 429=0.02,500=0.01,503=0.01,rps=50}; missing entries are 0
+     */
+    public static FaultProfile parse(String spec) {
+        double rateLimited = 0;
+        double serverError = 0;
+        double unavailable = 0;
+        int requestsPerSecond = 0;
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed fault entry: " + entry);
+            }
+            switch (parts[0].trim()) {
+                case "429" -> rateLimited = Double.parseDouble(parts[1].trim());
+                case "500" -> serverError = Double.parseDouble(parts[1].trim());
+                case "503" -> unavailable = Double.parseDouble(parts[1].trim());
+                case "rps" -> requestsPerSecond = Integer.parseInt(parts[1].trim());
+                default -> throw new IllegalArgumentException("Unknown fault: " + parts[0]);
+            }
+        }
+        return new FaultProfile(rateLimited, serverError, unavailable, requestsPerSecond);
+    }
+}
@@ -0,0 +1,12 @@
+package com.emailassistant.fakegemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The parts of a generateContent request a {@link Responder} can base its answer on
+ *
+ * @param systemInstruction inline or cached system instruction, null if there was none
+ * @param responseSchema generationConfig.responseSchema, null for free-text calls
+ */
+public record GenerateRequest(String model, String systemInstruction, String prompt, JsonNode responseSchema) {
+}
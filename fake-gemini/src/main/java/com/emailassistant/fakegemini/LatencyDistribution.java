@@ -0,0 +1,94 @@
+package com.emailassistant.fakegemini;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Time to first byte of a fake Gemini response
+ */
+public abstract class LatencyDistribution {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    public abstract long sampleMillis(Random random);
+
+    public static LatencyDistribution none() {
+        return fixed(Duration.ZERO);
+    }
+
+    public static LatencyDistribution fixed(Duration latency) {
+        long millis = latency.toMillis();
+        return describe(random -> millis, "fixed:" + millis);
+    }
+
+    public static LatencyDistribution uniform(Duration min, Duration max) {
+        long lower = min.toMillis();
+        long upper = max.toMillis();
+        if (upper < lower) {
+            throw new IllegalArgumentException("Uniform latency upper bound is below the lower bound");
+        }
+        return describe(random -> lower + (long) (random.nextDouble() * (upper - lower)),
+                "uniform:" + lower + "-" + upper);
+    }
+
+    /**
+     * Long-tailed latency with the given median and 99th percentile, the usual shape of LLM response times
+     */
+    public static LatencyDistribution logNormal(Duration median, Duration p99) {
+        double medianMillis = median.toMillis();
+        if (medianMillis <= 0 || p99.toMillis() < medianMillis) {
+            throw new IllegalArgumentException("Log-normal latency needs 0 < median <= p99");
+        }
+        double sigma = Math.log(p99.toMillis() / medianMillis) / Z_99;
+        return describe(random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian())),
+                "lognormal:" + median.toMillis() + "/" + p99.toMillis());
+    }
+
+    /**
+     * Parse {@code none}, {@code fixed:200}, {@code uniform:100-400} or {@code lognormal:800/4000} (milliseconds)
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        try {
+            switch (parts[0].toLowerCase()) {
+                case "none":
+                    return none();
+                case "fixed":
+                    return fixed(Duration.ofMillis(Long.parseLong(parts[1].trim())));
+                case "uniform": {
+                    String[] bounds = parts[1].split("-");
+                    return uniform(Duration.ofMillis(Long.parseLong(bounds[0].trim())),
+                            Duration.ofMillis(Long.parseLong(bounds[1].trim())));
+                }
+                case "lognormal": {
+                    String[] bounds = parts[1].split("/");
+                    return logNormal(Duration.ofMillis(Long.parseLong(bounds[0].trim())),
+                            Duration.ofMillis(Long.parseLong(bounds[1].trim())));
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed latency distribution: " + spec, e);
+        }
+    }
+
+    private static LatencyDistribution describe(Sampler sampler, String description) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis(Random random) {
+                return Math.max(0, sampler.sample(random));
+            }
+
+            @Override
+            public String toString() {
+                return description;
+            }
+        };
+    }
+
+    private interface Sampler {
+        long sample(Random random);
+    }
+}
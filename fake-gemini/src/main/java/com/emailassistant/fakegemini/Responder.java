@@ -0,0 +1,10 @@
+package com.emailassistant.fakegemini;
+
+/**
+ * Produces the candidate text for a fake generateContent call
+ */
+@FunctionalInterface
+public interface Responder {
+
+    String respond(GenerateRequest request);
+}
@@ -0,0 +1,104 @@
+package com.emailassistant.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic stream of POST /api/emails bodies: the same seed gives the same emails in the same
+ * order. Mixes new conversations across intents and sender domains with follow-ups in earlier
+ * threads and near-duplicates of earlier emails, so threading and duplicate detection get exercised.
+ */
+final class EmailCorpus {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[][] TOPICS = {
+            {"Refund for order #%d", "I returned order #%d two weeks ago and still have not received my refund. Please process it."},
+            {"Charged twice this month", "My card was charged twice for invoice INV-%d. Please fix the duplicate payment on my subscription."},
+            {"App crashes on startup", "Since the last update the app crashes with an error on startup (build %d). This bug blocks my work."},
+            {"Feature suggestion: dark mode", "It would be great if you could add a dark mode. Request #%d from our design team."},
+            {"Cannot log in", "I am locked out of my account after the password reset, ticket %d. Login keeps failing."},
+            {"How do I configure the API?", "How do I configure the API integration for workspace %d? The docs are unclear."},
+            {"Unacceptable service", "This is the third time I write about case %d. Your support has been terrible and I am disappointed."},
+            {"Question about plans", "Could you tell me the difference between the plans? We are %d people."},
+    };
+
+    private static final String[] DOMAINS = {"example.com", "acme.io", "globex.net", "initech.org", "umbrella.co",
+            "hooli.com", "stark.industries", "wayne.enterprises"};
+
+    private static final String FILLER = " We have been customers for years and rely on the product daily."
+            + " Thanks for looking into it, and let me know if you need any further details from our side.";
+
+    private final Random random;
+    private final int bodyChars;
+    private final double followUpShare;
+    private final double duplicateShare;
+    private final List<String[]> sent = new ArrayList<>();
+    private long sequence;
+
+    EmailCorpus(long seed, int bodyChars, double followUpShare, double duplicateShare) {
+        this.random = new Random(seed);
+        this.bodyChars = bodyChars;
+        this.followUpShare = followUpShare;
+        this.duplicateShare = duplicateShare;
+    }
+
+    synchronized byte[] next() {
+        long id = ++sequence;
+        String messageId = "<load-" + id + "@loadtest.local>";
+        double roll = random.nextDouble();
+        String from;
+        String subject;
+        String body;
+        String inReplyTo = null;
+        if (!sent.isEmpty() && roll < followUpShare) {
+            String[] parent = sent.get(random.nextInt(sent.size()));
+            from = parent[0];
+            subject = parent[1].startsWith("Re: ") ? parent[1] : "Re: " + parent[1];
+            body = "Any update on this? " + parent[2];
+            inReplyTo = parent[3];
+        } else if (!sent.isEmpty() && roll < followUpShare + duplicateShare) {
+            String[] original = sent.get(random.nextInt(sent.size()));
+            from = "customer" + random.nextInt(5000) + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            subject = original[1];
+            body = original[2] + " (sent again)";
+        } else {
+            String[] topic = TOPICS[random.nextInt(TOPICS.length)];
+            int number = 1000 + random.nextInt(90000);
+            from = "customer" + random.nextInt(5000) + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            subject = String.format(topic[0], number);
+            body = pad(String.format(topic[1], number));
+        }
+        if (sent.size() < 10_000) {
+            sent.add(new String[] {from, subject, body, messageId});
+        } else {
+            sent.set(random.nextInt(sent.size()), new String[] {from, subject, body, messageId});
+        }
+
+        ObjectNode request = MAPPER.createObjectNode();
+        request.put("from", from);
+        request.put("to", "support@emailassistant.com");
+        request.put("subject", subject);
+        request.put("body", body);
+        request.put("messageId", messageId);
+        if (inReplyTo != null) {
+            request.put("inReplyTo", inReplyTo);
+            request.putArray("references").add(inReplyTo);
+        }
+        return request.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String pad(String text) {
+        StringBuilder body = new StringBuilder(bodyChars + FILLER.length());
+        body.append(text);
+        while (body.length() < bodyChars) {
+            body.append(FILLER);
+        }
+        return body.toString();
+    }
+}
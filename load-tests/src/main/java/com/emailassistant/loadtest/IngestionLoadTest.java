@@ -0,0 +1,238 @@
+package com.emailassistant.loadtest;
+
+import com.emailassistant.EmailAssistantApplication;
+import com.emailassistant.fakegemini.FakeGeminiServer;
+import com.emailassistant.fakegemini.FaultProfile;
+import com.emailassistant.fakegemini.LatencyDistribution;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end ingestion load test: boots the backend in-process against embedded Mongo (or a local
+ * mongod given with {@code --mongo-uri}) and the fake Gemini server, drives POST /api/emails plus
+ * the list and statistics endpoints at fixed rates, and reports latency percentiles, emails
+ * triaged per second, LLM calls and Mongo commands per email.
+ *
+ * Options ({@code --name=value}): rate (emails/s, 50), list-rate (2), statistics-rate (1),
+ * duration-seconds (60), warmup-seconds (15), seed (42), body-chars (1200), follow-up-share (0.15),
+ * duplicate-share (0.05), max-in-flight (2000), gemini-latency (lognormal:400/2000),
+ * gemini-per-token-ms (0), gemini-faults (none), mongo-uri (embedded), log-level (WARN),
+ * histogram-dir (none; writes one .hgrm percentile file per endpoint).
+ */
+public final class IngestionLoadTest {
+
+    private static final String DATABASE = "email_assistant_loadtest";
+    private static final String INGEST = LoadTarget.endpointOf("POST", "/api/emails");
+    private static final String LIST = LoadTarget.endpointOf("GET", "/api/emails");
+    private static final String STATISTICS = LoadTarget.endpointOf("GET", "/api/emails/statistics");
+
+    private IngestionLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "50"));
+        double listRate = Double.parseDouble(options.getOrDefault("list-rate", "2"));
+        double statisticsRate = Double.parseDouble(options.getOrDefault("statistics-rate", "1"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration-seconds", "60"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "15"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "2000"));
+        String geminiLatency = options.getOrDefault("gemini-latency", "lognormal:400/2000");
+        String geminiFaults = options.getOrDefault("gemini-faults", "");
+        EmailCorpus corpus = new EmailCorpus(seed, Integer.parseInt(options.getOrDefault("body-chars", "1200")),
+                Double.parseDouble(options.getOrDefault("follow-up-share", "0.15")),
+                Double.parseDouble(options.getOrDefault("duplicate-share", "0.05")));
+
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = null;
+        String mongoUri = options.get("mongo-uri");
+        if (mongoUri == null) {
+            mongod = Mongod.instance().start(Version.Main.V6_0);
+            ServerAddress address = mongod.current().getServerAddress();
+            mongoUri = "mongodb://" + address.getHost() + ":" + address.getPort() + "/" + DATABASE;
+        }
+        // Every run starts from an empty database so results compare across runs
+        try (MongoClient client = MongoClients.create(mongoUri)) {
+            client.getDatabase(DATABASE).drop();
+        }
+
+        MongoCommandCounter mongoCommands = new MongoCommandCounter();
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (FakeGeminiServer gemini = FakeGeminiServer.builder()
+                .seed(seed)
+                .latency(LatencyDistribution.parse(geminiLatency))
+                .perOutputTokenLatency(Duration.ofMillis(Long.parseLong(options.getOrDefault("gemini-per-token-ms", "0"))))
+                .faults(FaultProfile.parse(geminiFaults))
+                .start();
+             ConfigurableApplicationContext backend = startBackend(mongoUri, gemini.baseUrl(), mongoCommands,
+                     options.getOrDefault("log-level", "WARN"))) {
+
+            String baseUrl = "http://127.0.0.1:" + ((WebServerApplicationContext) backend).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .build();
+            List<LoadTarget> targets = List.of(
+                    new LoadTarget(INGEST, rate, maxInFlight,
+                            () -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/emails"))
+                                    .header("Content-Type", "application/json")
+                                    .POST(HttpRequest.BodyPublishers.ofByteArray(corpus.next()))
+                                    .build(),
+                            response -> response.body().contains("\"intent\":\"")),
+                    new LoadTarget(LIST, listRate, maxInFlight,
+                            () -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/emails")).GET().build(), null),
+                    new LoadTarget(STATISTICS, statisticsRate, maxInFlight,
+                            () -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/emails/statistics")).GET().build(), null));
+
+            System.out.printf("Offering %.1f emails/s, %.1f list/s, %.1f statistics/s for %d s after %d s warm-up "
+                            + "(seed %d, Gemini %s, faults '%s', Mongo %s)%n",
+                    rate, listRate, statisticsRate, durationSeconds, warmupSeconds, seed, geminiLatency,
+                    geminiFaults, mongod != null ? "embedded" : mongoUri);
+            long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+            targets.forEach(target -> target.measure(measureFrom, measureUntil));
+            targets.forEach(target -> target.start(scheduler, client));
+
+            sleepUntil(measureFrom);
+            mongoCommands.start();
+            long geminiCallsBefore = gemini.requestCount();
+            while (System.nanoTime() < measureUntil) {
+                Thread.sleep(Math.min(10_000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(measureUntil - System.nanoTime()))));
+                Histogram interval = targets.get(0).interval();
+                System.out.printf("  %s: %d completed, p50 %.1f ms, p99 %.1f ms%n", INGEST, interval.getTotalCount(),
+                        interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0);
+            }
+            targets.forEach(LoadTarget::stop);
+            // Let requests due inside the window finish before counting
+            long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (!targets.stream().allMatch(LoadTarget::idle) && System.nanoTime() < drainDeadline) {
+                Thread.sleep(100);
+            }
+            mongoCommands.stop();
+            long geminiCalls = gemini.requestCount() - geminiCallsBefore;
+
+            report(System.out, targets, mongoCommands, geminiCalls, durationSeconds);
+            String histogramDir = options.get("histogram-dir");
+            if (histogramDir != null) {
+                writeHistograms(Path.of(histogramDir), targets);
+            }
+        } finally {
+            scheduler.shutdownNow();
+            clientExecutor.shutdownNow();
+            if (mongod != null) {
+                mongod.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startBackend(String mongoUri, String geminiBaseUrl,
+                                                               MongoCommandCounter mongoCommands, String logLevel) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.data.mongodb.uri", mongoUri);
+        properties.put("spring.data.mongodb.database", DATABASE);
+        properties.put("GEMINI_API_KEY", "load-test");
+        properties.put("llm.providers.gemini.base-url", geminiBaseUrl);
+        properties.put("logging.level.com.emailassistant", logLevel);
+        return new SpringApplicationBuilder(EmailAssistantApplication.class)
+                .properties(properties)
+                .initializers(context -> {
+                    MongoClientSettingsBuilderCustomizer listener = settings -> settings.addCommandListener(mongoCommands);
+                    FilterRegistrationBean<MongoCommandCounter> filter = new FilterRegistrationBean<>(mongoCommands);
+                    filter.addUrlPatterns("/*");
+                    context.getBeanFactory().registerSingleton("loadTestMongoCommandListener", listener);
+                    context.getBeanFactory().registerSingleton("loadTestMongoCommandFilter", filter);
+                })
+                .run();
+    }
+
+    private static void report(PrintStream out, List<LoadTarget> targets, MongoCommandCounter mongoCommands,
+                               long geminiCalls, long durationSeconds) {
+        out.printf("%n%-30s %9s %9s %7s %8s %9s %9s %9s %9s%n",
+                "Endpoint", "sent", "ok", "failed", "dropped", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (LoadTarget target : targets) {
+            Histogram latency = target.total();
+            out.printf("%-30s %9d %9d %7d %8d %9.1f %9.1f %9.1f %9.1f%n", target.name(), target.sent(),
+                    target.succeeded(), target.failed(), target.dropped(),
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0);
+        }
+
+        LoadTarget ingest = targets.get(0);
+        long emails = Math.max(1, ingest.succeeded());
+        out.printf("%nEmails triaged: %d (%.1f/s)%n", ingest.triaged(), ingest.triaged() / (double) durationSeconds);
+        out.printf("LLM calls per email: %.2f%n", geminiCalls / (double) emails);
+        for (LoadTarget target : targets) {
+            long calls = Math.max(1, target.succeeded() + target.failed());
+            out.printf("Mongo commands per %s: %.2f %s%n", target.name(),
+                    mongoCommands.total(target.name()) / (double) calls, perCall(mongoCommands.commands(target.name()), calls));
+        }
+        out.printf("Background Mongo commands: %d %s%n", mongoCommands.total(MongoCommandCounter.BACKGROUND),
+                mongoCommands.commands(MongoCommandCounter.BACKGROUND));
+    }
+
+    private static Map<String, String> perCall(Map<String, Long> commands, long calls) {
+        Map<String, String> perCall = new LinkedHashMap<>();
+        commands.forEach((name, count) -> perCall.put(name, String.format("%.2f", count / (double) calls)));
+        return perCall;
+    }
+
+    private static void writeHistograms(Path directory, List<LoadTarget> targets) throws IOException {
+        Files.createDirectories(directory);
+        for (LoadTarget target : targets) {
+            Path file = directory.resolve(target.name().replaceAll("[^A-Za-z0-9]+", "_") + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                // Microseconds recorded, milliseconds written
+                target.total().outputPercentileDistribution(out, 1000.0);
+            }
+            System.out.println("Wrote " + file.toAbsolutePath());
+        }
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = nanos - System.nanoTime()) > 0) {
+            Thread.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+        return options;
+    }
+}
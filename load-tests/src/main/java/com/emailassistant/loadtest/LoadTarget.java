@@ -0,0 +1,160 @@
+package com.emailassistant.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop load on one endpoint: requests are issued at a fixed rate whether or not earlier ones
+ * have returned, and latency is measured from when each request was due, not from when it was
+ * sent, so a stalled server shows up in the percentiles instead of silently lowering the rate.
+ */
+final class LoadTarget {
+
+    private final String name;
+    private final double ratePerSecond;
+    private final Supplier<HttpRequest> requests;
+    private final Predicate<HttpResponse<String>> triaged;
+    private final int maxInFlight;
+
+    // Microseconds; auto-resizing with three significant digits
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong triagedCount = new AtomicLong();
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+    private volatile long measureUntilNanos = Long.MAX_VALUE;
+    private ScheduledFuture<?> schedule;
+
+    LoadTarget(String name, double ratePerSecond, int maxInFlight, Supplier<HttpRequest> requests,
+               Predicate<HttpResponse<String>> triaged) {
+        this.name = name;
+        this.ratePerSecond = ratePerSecond;
+        this.maxInFlight = maxInFlight;
+        this.requests = requests;
+        this.triaged = triaged;
+    }
+
+    /**
+     * Endpoint label shared by the load generator and the server-side Mongo command counter
+     */
+    static String endpointOf(String method, String path) {
+        return method + " " + path;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void start(ScheduledExecutorService scheduler, HttpClient client) {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long startNanos = System.nanoTime();
+        AtomicLong tick = new AtomicLong();
+        schedule = scheduler.scheduleAtFixedRate(
+                () -> fire(client, startNanos + tick.getAndIncrement() * periodNanos),
+                0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void stop() {
+        if (schedule != null) {
+            schedule.cancel(false);
+        }
+    }
+
+    /**
+     * Only requests due inside the window count towards the report
+     */
+    void measure(long fromNanos, long untilNanos) {
+        measureFromNanos = fromNanos;
+        measureUntilNanos = untilNanos;
+        recorder.reset();
+    }
+
+    /**
+     * Latencies recorded since the previous call, for progress lines
+     */
+    Histogram interval() {
+        Histogram interval = recorder.getIntervalHistogram();
+        synchronized (total) {
+            total.add(interval);
+        }
+        return interval;
+    }
+
+    Histogram total() {
+        interval();
+        return total;
+    }
+
+    boolean idle() {
+        return inFlight.get() == 0;
+    }
+
+    long sent() {
+        return sent.get();
+    }
+
+    long succeeded() {
+        return succeeded.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    long triaged() {
+        return triagedCount.get();
+    }
+
+    private void fire(HttpClient client, long dueNanos) {
+        boolean measured = dueNanos >= measureFromNanos && dueNanos < measureUntilNanos;
+        if (inFlight.get() >= maxInFlight) {
+            // The client side is saturated; count it rather than queue without bound
+            if (measured) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        inFlight.incrementAndGet();
+        if (measured) {
+            sent.incrementAndGet();
+        }
+        client.sendAsync(requests.get(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    if (!measured) {
+                        return;
+                    }
+                    recorder.recordValue(Math.max(1, (System.nanoTime() - dueNanos) / 1000));
+                    if (error != null || response.statusCode() >= 400) {
+                        failed.incrementAndGet();
+                        return;
+                    }
+                    succeeded.incrementAndGet();
+                    if (triaged != null && triaged.test(response)) {
+                        triagedCount.incrementAndGet();
+                    }
+                });
+    }
+}
@@ -0,0 +1,83 @@
+package com.emailassistant.loadtest;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the Mongo commands each endpoint issues. The synchronous driver reports commands on the
+ * calling thread, so a servlet filter tags the request thread with its endpoint and the listener
+ * attributes every command to it; commands from scheduled jobs land under "background".
+ */
+final class MongoCommandCounter implements CommandListener, Filter {
+
+    static final String BACKGROUND = "background";
+
+    // Connection handshakes and session housekeeping, not work done for a request
+    private static final Set<String> IGNORED = Set.of("hello", "ismaster", "isMaster", "ping", "buildInfo",
+            "buildinfo", "endSessions", "saslStart", "saslContinue", "getLastError");
+
+    private final ThreadLocal<String> endpoint = new ThreadLocal<>();
+    private final Map<String, Map<String, AtomicLong>> counts = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!recording || IGNORED.contains(event.getCommandName())) {
+            return;
+        }
+        String current = endpoint.get();
+        counts.computeIfAbsent(current != null ? current : BACKGROUND, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(event.getCommandName(), key -> new AtomicLong())
+                .incrementAndGet();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest http = (HttpServletRequest) request;
+        endpoint.set(LoadTarget.endpointOf(http.getMethod(), http.getRequestURI()));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            endpoint.remove();
+        }
+    }
+
+    /**
+     * Start counting from zero, e.g. once warm-up is over
+     */
+    void start() {
+        counts.clear();
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+    }
+
+    /**
+     * Commands per command name for an endpoint
+     */
+    Map<String, Long> commands(String endpointName) {
+        Map<String, Long> commands = new TreeMap<>();
+        counts.getOrDefault(endpointName, Map.of()).forEach((name, count) -> commands.put(name, count.get()));
+        return commands;
+    }
+
+    long total(String endpointName) {
+        return commands(endpointName).values().stream().mapToLong(Long::longValue).sum();
+    }
+}